@@ -0,0 +1,57 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.lb.lbjscheme.*;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AnalyzerBenchmark {
+	@Param({ "1000" })
+	public int forms;
+
+	private Analyzer _analyzer;
+	private List<SchemeObject> _program;
+
+	@Setup
+	public void setUp() throws SchemeException {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < forms; ++i)
+			sb.append("(define (g").append(i).append(" a b)")
+					.append(" (let* ((x (* a ").append(i).append(")) (y (+ x b)))")
+					.append("  (cond ((and (< x y) (> y 0)) (let ((z (- y x))) (list x y z)))")
+					.append("        ((or (= x 0) (= y 0)) (when (> a b) 'zero))")
+					.append("        (else (case a ((1 2 3) 'small) ((4 5 6) 'medium) (else 'large))))))");
+		_analyzer = new Analyzer();
+		_program = Programs.readAll(sb.toString());
+	}
+
+	@Benchmark
+	public int analyzeAll() throws SchemeException {
+		int count = 0;
+		for (SchemeObject o : _program)
+			if (_analyzer.analyze(o) != null) ++count;
+		return count;
+	}
+}
@@ -0,0 +1,86 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.Compiler;
+import org.openjdk.jmh.annotations.*;
+
+// Analyzes and compiles many top-level forms into a single CompiledProgram,
+// once as many small rules and once as dispatch chains of deeply nested
+// ifs, which keep many jump labels pending at the same time. The time per
+// form should stay flat as the program grows.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompilerBenchmark {
+	private static final int _clausesPerDispatch = 1000;
+
+	@Param({ "rules", "dispatch" })
+	public String shape;
+
+	@Param({ "10000", "50000" })
+	public int forms;
+
+	private List<SchemeObject> _program;
+
+	@Setup
+	public void setUp() throws SchemeException {
+		_program = Programs.readAll(shape.equals("rules") ? generateRules(forms)
+				: generateDispatch(forms));
+	}
+
+	@Benchmark
+	public int compileAll() throws SchemeException {
+		final Analyzer analyzer = new Analyzer();
+		final CompiledProgram program = new CompiledProgram();
+		final Compiler compiler = new Compiler(program);
+		for (SchemeObject o : _program)
+			compiler.compile(analyzer.analyze(o), false);
+		return program.getNumberOfStatements();
+	}
+
+	private static String generateRules(int numberOfForms) {
+		final StringBuilder ret = new StringBuilder();
+		for (int i = 0; i < numberOfForms; ++i)
+			ret.append("(define (rule").append(i).append(" x y)")
+					.append(" (if (< x ").append(i).append(")")
+					.append("  (if (= y 0) 'low (lambda (z) (if z x y)))")
+					.append("  (list x y (rule").append(i).append(" (- x 1) y))))");
+		return ret.toString();
+	}
+
+	private static String generateDispatch(int numberOfClauses) {
+		final StringBuilder ret = new StringBuilder();
+		for (int i = 0; i < numberOfClauses; i += _clausesPerDispatch) {
+			ret.append("(define (dispatch").append(i).append(" x)");
+			for (int j = 0; j < _clausesPerDispatch; ++j)
+				ret.append(" (if (eq? x 'k").append(j).append(") (handle x ")
+						.append(j).append(")");
+			ret.append(" 'none");
+			for (int j = 0; j < _clausesPerDispatch; ++j)
+				ret.append(')');
+			ret.append(')');
+		}
+		return ret.toString();
+	}
+}
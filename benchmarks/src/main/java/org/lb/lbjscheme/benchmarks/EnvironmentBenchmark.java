@@ -0,0 +1,54 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.lb.lbjscheme.*;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EnvironmentBenchmark {
+	@Benchmark
+	public Environment newInteractionEnvironment() throws SchemeException {
+		return Environment.newInteractionEnvironment(null);
+	}
+
+	@Benchmark
+	public Environment newReportEnvironment() throws SchemeException {
+		return Environment.newReportEnvironment(5, null);
+	}
+
+	@Benchmark
+	public Evaluator newInterpretingEvaluator() throws SchemeException {
+		return Programs.newEvaluator("interpreting");
+	}
+
+	@Benchmark
+	public Evaluator newAnalyzingEvaluator() throws SchemeException {
+		return Programs.newEvaluator("analyzing");
+	}
+
+	@Benchmark
+	public Evaluator newCompilingEvaluator() throws SchemeException {
+		return Programs.newEvaluator("compiling");
+	}
+}
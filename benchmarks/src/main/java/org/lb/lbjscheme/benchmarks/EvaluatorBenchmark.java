@@ -0,0 +1,50 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.lb.lbjscheme.*;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EvaluatorBenchmark {
+	@Param({ "interpreting", "analyzing", "compiling" })
+	public String evaluator;
+
+	@Param({ "fib", "tak", "nqueens", "strings" })
+	public String program;
+
+	private Evaluator _evaluator;
+	private SchemeObject _call;
+
+	@Setup
+	public void setUp() throws SchemeException {
+		_evaluator = Programs.newEvaluator(evaluator);
+		_evaluator.eval(Programs.DEFINITIONS.get(program));
+		_call = Programs.read(Programs.CALLS.get(program));
+	}
+
+	@Benchmark
+	public SchemeObject run() throws SchemeException {
+		return _evaluator.eval(_call);
+	}
+}
@@ -0,0 +1,63 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.benchmarks;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.lb.lbjscheme.*;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JvmBridgeBenchmark {
+	private JvmBridge _bridge;
+	private List<SchemeObject> _noParameters;
+	private List<SchemeObject> _oneParameter;
+	private Evaluator _evaluator;
+	private SchemeObject _schemeCall;
+
+	@Setup
+	public void setUp() throws SchemeException {
+		_bridge = new JvmBridge("The quick brown fox");
+		_noParameters = Collections.emptyList();
+		_oneParameter = new ArrayList<>();
+		_oneParameter.add(JvmBridge.fromJavaObject(4));
+
+		_evaluator = Programs.newEvaluator("analyzing");
+		_evaluator.eval("(define s (sys:new \"java.lang.StringBuilder\" \"The quick brown fox\"))");
+		_schemeCall = Programs.read("(sys:call s \"charAt\" 4)");
+	}
+
+	@Benchmark
+	public SchemeObject callWithoutParameters() throws SchemeException {
+		return _bridge.call("length", _noParameters);
+	}
+
+	@Benchmark
+	public SchemeObject callWithParameter() throws SchemeException {
+		return _bridge.call("charAt", _oneParameter);
+	}
+
+	@Benchmark
+	public SchemeObject callFromScheme() throws SchemeException {
+		return _evaluator.eval(_schemeCall);
+	}
+}
@@ -0,0 +1,115 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.benchmarks;
+
+import java.io.*;
+import java.util.*;
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.Reader;
+
+final class Programs {
+	static final String FIB = "(define (fib n) (if (< n 2) n (+ (fib (- n 1)) (fib (- n 2)))))";
+
+	static final String TAK = "(define (tak x y z) (if (not (< y x)) z"
+			+ " (tak (tak (- x 1) y z) (tak (- y 1) z x) (tak (- z 1) x y))))";
+
+	static final String NQUEENS = "(define (nqueens n)"
+			+ " (define (ok? row dist placed)"
+			+ "  (if (null? placed) #t"
+			+ "   (and (not (= (car placed) (+ row dist)))"
+			+ "        (not (= (car placed) (- row dist)))"
+			+ "        (ok? row (+ dist 1) (cdr placed)))))"
+			+ " (define (try x y z)"
+			+ "  (if (null? x)"
+			+ "   (if (null? y) 1 0)"
+			+ "   (+ (if (ok? (car x) 1 z) (try (append (cdr x) y) '() (cons (car x) z)) 0)"
+			+ "      (try (cdr x) (cons (car x) y) z))))"
+			+ " (try (range 1 n) '() '()))";
+
+	static final String STRINGS = "(define (string-reverse s) (list->string (reverse (string->list s))))"
+			+ "(define (string-ops n acc)"
+			+ " (if (= n 0) (string-length acc)"
+			+ "  (string-ops (- n 1)"
+			+ "   (let ((s (string-append \"abc\" (number->string n) \"xyz\")))"
+			+ "    (if (string<? s acc) (string-append (substring s 1 4) (string-reverse s))"
+			+ "     (string-reverse (substring (string-append acc s) 0 10)))))))";
+
+	static final Map<String, String> DEFINITIONS = new HashMap<>();
+	static final Map<String, String> CALLS = new HashMap<>();
+
+	static {
+		DEFINITIONS.put("fib", FIB);
+		CALLS.put("fib", "(fib 20)");
+		DEFINITIONS.put("tak", TAK);
+		CALLS.put("tak", "(tak 18 12 6)");
+		DEFINITIONS.put("nqueens", NQUEENS);
+		CALLS.put("nqueens", "(nqueens 8)");
+		DEFINITIONS.put("strings", STRINGS);
+		CALLS.put("strings", "(string-ops 1000 \"\")");
+	}
+
+	private Programs() {
+	}
+
+	static Evaluator newEvaluator(String kind) throws SchemeException {
+		switch (kind) {
+		case "interpreting":
+			return new InterpretingEvaluator(newEnvironment());
+		case "analyzing":
+			return new AnalyzingEvaluator(newEnvironment());
+		case "compiling":
+			return new CompilingEvaluator(newInputPort(""), newOutputPort());
+		default:
+			throw new IllegalArgumentException("Unknown evaluator " + kind);
+		}
+	}
+
+	static Environment newEnvironment() throws SchemeException {
+		final Environment ret = Environment.newInteractionEnvironment(null);
+		ret.setInputPort(newInputPort(""));
+		ret.setOutputPort(newOutputPort());
+		return ret;
+	}
+
+	static InputPort newInputPort(String contents) {
+		return new InputPort(new StringReader(contents));
+	}
+
+	static OutputPort newOutputPort() {
+		return new OutputPort(new StringWriter());
+	}
+
+	static SchemeObject read(String expression) throws SchemeException {
+		try {
+			return new Reader(newInputPort(expression)).read();
+		} catch (EOFException ex) {
+			throw new SchemeException("Empty expression");
+		}
+	}
+
+	static List<SchemeObject> readAll(String source) throws SchemeException {
+		final Reader reader = new Reader(newInputPort(source));
+		final List<SchemeObject> ret = new ArrayList<>();
+		while (true) {
+			try {
+				ret.add(reader.read());
+			} catch (EOFException ex) {
+				return ret;
+			}
+		}
+	}
+}
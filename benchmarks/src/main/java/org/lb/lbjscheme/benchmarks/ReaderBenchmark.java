@@ -0,0 +1,84 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.benchmarks;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.Reader;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReaderBenchmark {
+	@Param({ "1000", "10000" })
+	public int forms;
+
+	// code: definitions as found in Scheme sources; data: symbol and number
+	// heavy records as found in S-expression data files
+	@Param({ "code", "data" })
+	public String input;
+
+	private String _source;
+
+	@Setup
+	public void setUp() {
+		_source = input.equals("data") ? buildData() : buildCode();
+	}
+
+	private String buildData() {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < forms; ++i)
+			sb.append("(record (id ").append(i).append(") (name \"item-")
+					.append(i).append("\") (kind widget gadget)\n")
+					.append("  (size ").append(i * 7919L).append(' ')
+					.append(i % 100).append(".5 ").append(1400000000000L + i)
+					.append(") (tags red green blue) (active #t))\n");
+		return sb.toString();
+	}
+
+	private String buildCode() {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < forms; ++i)
+			sb.append("(define (f").append(i).append(" x)\n")
+					.append("  ; a comment\n")
+					.append("  (if (< x ").append(i).append(")\n")
+					.append("      (list 'small x 3.25 -17/4 #\\a #t)\n")
+					.append("      (string-append \"value: \" (number->string (* x ")
+					.append(i * 31).append(")))))\n")
+					.append("#(1 2 3 \"four\" (5 . 6))\n");
+		return sb.toString();
+	}
+
+	@Benchmark
+	public int readAll() throws SchemeException {
+		final Reader reader = new Reader(new InputPort(new StringReader(_source)));
+		int count = 0;
+		while (true) {
+			try {
+				reader.read();
+				++count;
+			} catch (EOFException ex) {
+				return count;
+			}
+		}
+	}
+}
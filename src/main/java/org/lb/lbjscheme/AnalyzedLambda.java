@@ -16,45 +16,59 @@
 
 package org.lb.lbjscheme;
 
-import java.util.List;
-import org.lb.lbjscheme.ast.BeginForm;
+import java.util.*;
+import org.lb.lbjscheme.ast.*;
 
 public final class AnalyzedLambda extends SchemeObject {
-	private final String _name;
-	private final List<Symbol> _parameterNames;
-	private final boolean _hasRestParameter;
-	private final BeginForm _forms;
-	private final Environment _captured;
-
-	public AnalyzedLambda(String name, List<Symbol> parameterNames,
-			boolean hasRestParameter, BeginForm forms, Environment captured) {
-		_name = name;
-		_parameterNames = parameterNames;
-		_hasRestParameter = hasRestParameter;
-		_forms = forms;
+	private final LambdaForm _form;
+	private final Frame _captured;
+	private final Environment _environment;
+
+	public AnalyzedLambda(LambdaForm form, Frame captured,
+			Environment environment) {
+		_form = form;
 		_captured = captured;
+		_environment = environment;
+	}
+
+	public static AnalyzedLambda fromLambda(Lambda l, Analyzer analyzer)
+			throws SchemeException {
+		return new AnalyzedLambda(l.getCaptured().analyzeLambda(l, analyzer),
+				null, l.getCaptured());
+	}
+
+	public LambdaForm getForm() {
+		return _form;
 	}
 
 	public String getName() {
-		return _name;
+		return _form.getName();
 	}
 
 	public List<Symbol> getParameterNames() {
-		return _parameterNames;
+		return _form.getParameterNames();
 	}
 
 	public boolean hasRestParameter() {
-		return _hasRestParameter;
+		return _form.HasRestParameter();
+	}
+
+	public int getFrameSize() {
+		return _form.getFrameSize();
 	}
 
 	public BeginForm getForms() {
-		return _forms;
+		return _form.getAnalyzedForms();
 	}
 
-	public Environment getCaptured() {
+	public Frame getCaptured() {
 		return _captured;
 	}
 
+	public Environment getEnvironment() {
+		return _environment;
+	}
+
 	@Override
 	public boolean isProcedure() {
 		return true;
@@ -62,7 +76,7 @@ public final class AnalyzedLambda extends SchemeObject {
 
 	@Override
 	public String toString(boolean forDisplay) {
-		return "<procedure " + _name + ">";
+		return "<procedure " + getName() + ">";
 	}
 
 	@Override
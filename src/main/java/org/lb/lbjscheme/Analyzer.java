@@ -30,27 +30,64 @@ public final class Analyzer {
 	private static final Symbol _applySymbol = Symbol.fromString("sys:apply");
 	private static final Symbol _callccSymbol = Symbol
 			.fromString("sys:call/cc");
+	private static final Symbol _elseSymbol = Symbol.fromString("else");
+	private static final Symbol _arrowSymbol = Symbol.fromString("=>");
+
+	// Derived forms defined as macros by the init script, but analyzed
+	// directly as long as they have not been redefined.
+	private static final Symbol _letSymbol = Symbol.fromString("let");
+	private static final Symbol _letStarSymbol = Symbol.fromString("let*");
+	private static final Symbol _letrecSymbol = Symbol.fromString("letrec");
+	private static final Symbol _condSymbol = Symbol.fromString("cond");
+	private static final Symbol _caseSymbol = Symbol.fromString("case");
+	private static final Symbol _andSymbol = Symbol.fromString("and");
+	private static final Symbol _orSymbol = Symbol.fromString("or");
+	private static final Symbol _doSymbol = Symbol.fromString("do");
+	private static final Symbol _whenSymbol = Symbol.fromString("when");
+	private static final Symbol _unlessSymbol = Symbol.fromString("unless");
+
+	// Hidden local variables of do loops and cond clauses using =>
+	private static final Symbol _doLoopSymbol = Symbol.fromString("##do-loop");
+	private static final Symbol _condValueSymbol = Symbol
+			.fromString("##cond-value");
 
 	private final InterpretingEvaluator _macroEvaluator;
 	private final Environment _macroEnvironment;
+	private final Map<Symbol, SchemeObject> _derivedForms = new HashMap<>();
 
 	public Analyzer() throws SchemeException {
 		_macroEvaluator = new InterpretingEvaluator(
 				Environment.newInteractionEnvironment(null));
 		_macroEnvironment = _macroEvaluator.getGlobalEnvironment();
+		for (Symbol s : new Symbol[] { _letSymbol, _letStarSymbol,
+				_letrecSymbol, _condSymbol, _caseSymbol, _andSymbol,
+				_orSymbol, _doSymbol, _whenSymbol, _unlessSymbol })
+			if (_macroEnvironment.getDefinedSymbols().contains(s))
+				_derivedForms.put(s, _macroEnvironment.get(s));
 	}
 
 	public SyntaxTreeObject analyze(SchemeObject obj) throws SchemeException {
+		return analyze(obj, null);
+	}
+
+	public LambdaForm analyzeLambda(Lambda lambda) throws SchemeException {
+		return analyzeLambdaBody(lambda.getName(), lambda.getParameterNames(),
+				lambda.hasRestParameter(), lambda.getForms(), null);
+	}
+
+	private SyntaxTreeObject analyze(SchemeObject obj, Scope scope)
+			throws SchemeException {
 		if (obj instanceof Nil)
 			throw new SchemeException("Empty list can not be evaluated");
 		if (obj instanceof Vector)
 			throw new SchemeException("Vectors must be quoted");
-		if (obj instanceof Symbol) return new LiteralSymbol((Symbol) obj);
+		if (obj instanceof Symbol) return analyzeSymbol((Symbol) obj, scope);
 		if (!(obj instanceof Pair)) return new SelfEvaluatingLiteral(obj);
 
 		final Pair p = (Pair) obj;
 		final SchemeObject car = p.getCar();
 
+		if (isDerivedForm(car)) return analyzeDerivedForm(p, scope);
 		if (car instanceof Symbol
 				&& _macroEnvironment.getDefinedSymbols().contains(car)
 				&& _macroEnvironment.get((Symbol) car) instanceof Macro) {
@@ -61,25 +98,384 @@ public final class Analyzer {
 					_macroEnvironment, true);
 			// System.out.println(evald.toString(false));
 			// System.out.println("");
-			return analyze(evald);
+			return analyze(evald, scope);
 		}
 
-		if (car == _lambdaSymbol) return analyzeLambdaForm(p.getCdr());
-		if (car == _defineSymbol) return analyzeDefineForm(p.getCdr());
+		if (car == _lambdaSymbol) return analyzeLambdaForm(p.getCdr(), scope);
+		if (car == _defineSymbol) return analyzeDefineForm(p.getCdr(), scope);
 		if (car == _defmacroSymbol) return defmacro(p);
-		if (car == _applySymbol) return analyzeApplyForm(p);
+		if (car == _applySymbol) return analyzeApplyForm(p, scope);
 
 		final List<SchemeObject> form = p.toJavaList();
 		if (car == _quoteSymbol) return new SelfEvaluatingLiteral(form.get(1));
-		if (car == _setSymbol) return analyzeSetForm(form);
-		if (car == _callccSymbol) return analyzeCallccForm(form);
-		if (car == _ifSymbol) return analyzeIfForm(form);
-		if (car == _beginSymbol) return analyzeBeginForm(form);
+		if (car == _setSymbol) return analyzeSetForm(form, scope);
+		if (car == _callccSymbol) return analyzeCallccForm(form, scope);
+		if (car == _ifSymbol) return analyzeIfForm(form, scope);
+		if (car == _beginSymbol) return analyzeBeginForm(form, scope);
+
+		return analyzeFuncall(p, scope);
+	}
+
+	private boolean isDerivedForm(SchemeObject car) throws SchemeException {
+		final SchemeObject macro = _derivedForms.get(car);
+		return macro != null && _macroEnvironment.get((Symbol) car) == macro;
+	}
+
+	private SyntaxTreeObject analyzeDerivedForm(Pair p, Scope scope)
+			throws SchemeException {
+		final SchemeObject car = p.getCar();
+		if (car == _andSymbol) return analyzeAndForm(p.getCdr(), scope);
+		if (car == _orSymbol) return analyzeOrForm(p.getCdr(), scope);
+		if (car == _whenSymbol || car == _unlessSymbol)
+			return analyzeWhenForm(p, scope);
+		if (car == _caseSymbol) return analyzeCaseForm(p.getCdr(), scope);
+		if (car == _condSymbol && !usesArrow(p.getCdr()))
+			return analyzeCondForm(p.getCdr(), scope);
+
+		// The others need local variables, so at top level they are wrapped
+		// into a procedure called right away
+		if (scope == null)
+			return analyze(new Pair(new Pair(_lambdaSymbol, new Pair(
+					Nil.getInstance(), new Pair(p, Nil.getInstance()))),
+					Nil.getInstance()), null);
+		if (car == _condSymbol) return analyzeCondForm(p.getCdr(), scope);
+		if (car == _doSymbol) return analyzeDoForm(p.getCdr(), scope);
+		if (!(p.getCdr() instanceof Pair))
+			throw new SchemeException("Invalid " + car + " form");
+		final Pair args = (Pair) p.getCdr();
+		if (car == _letSymbol && args.getCar() instanceof Symbol)
+			return analyzeNamedLetForm((Symbol) args.getCar(),
+					args.getCdr(), scope);
+		return analyzeLetForm((Symbol) car, args.getCar(), args.getCdr(),
+				scope);
+	}
 
-		return analyzeFuncall(p);
+	// Bindings of let, let* and letrec are kept in new slots of the frame of
+	// the enclosing procedure, only visible inside the body.
+	private SyntaxTreeObject analyzeLetForm(Symbol kind, SchemeObject bindings,
+			SchemeObject body, Scope scope) throws SchemeException {
+		final List<Symbol> names = new ArrayList<>();
+		final List<SchemeObject> values = new ArrayList<>();
+		parseBindings(kind, bindings, names, values, false);
+
+		final List<SyntaxTreeObject> forms = new ArrayList<>();
+		final int outerBlock;
+		if (kind == _letSymbol) {
+			final List<SyntaxTreeObject> analyzedValues = new ArrayList<>();
+			for (SchemeObject value : values)
+				analyzedValues.add(analyze(value, scope));
+			outerBlock = scope.beginBlock();
+			for (int i = 0; i < names.size(); ++i)
+				forms.add(new LocalSetForm(names.get(i), 0, scope.add(names
+						.get(i)), analyzedValues.get(i)));
+		} else if (kind == _letStarSymbol) {
+			outerBlock = scope.beginBlock();
+			for (int i = 0; i < names.size(); ++i) {
+				final SyntaxTreeObject value = analyze(values.get(i), scope);
+				forms.add(new LocalSetForm(names.get(i), 0, scope.add(names
+						.get(i)), value));
+			}
+		} else {
+			outerBlock = scope.beginBlock();
+			final int[] indices = new int[names.size()];
+			for (int i = 0; i < names.size(); ++i)
+				indices[i] = scope.add(names.get(i));
+			for (int i = 0; i < names.size(); ++i) {
+				final SyntaxTreeObject value = analyze(values.get(i), scope);
+				scope.markAssigned(0, indices[i], value);
+				forms.add(new LocalSetForm(names.get(i), 0, indices[i], value));
+			}
+		}
+		forms.addAll(analyzeBody(kind, body, scope));
+		scope.endBlock(outerBlock);
+		return sequence(forms);
+	}
+
+	// (let name ((var init) ...) body) binds name to a procedure in a new
+	// slot and calls it; calls of name in the body become jumps.
+	private SyntaxTreeObject analyzeNamedLetForm(Symbol name,
+			SchemeObject rest, Scope scope) throws SchemeException {
+		if (!(rest instanceof Pair))
+			throw new SchemeException(
+					"Invalid let form: Expected bindings and body");
+		final List<Symbol> names = new ArrayList<>();
+		final List<SchemeObject> values = new ArrayList<>();
+		parseBindings(_letSymbol, ((Pair) rest).getCar(), names, values,
+				false);
+		if (!(((Pair) rest).getCdr() instanceof Pair))
+			throw new SchemeException(
+					"Invalid let form: Expected at least one form in the body");
+		return analyzeLoop(name, names, values, (Pair) ((Pair) rest).getCdr(),
+				scope);
+	}
+
+	private SyntaxTreeObject analyzeLoop(Symbol name, List<Symbol> names,
+			List<SchemeObject> values, Pair body, Scope scope)
+			throws SchemeException {
+		final List<SyntaxTreeObject> arguments = new ArrayList<>();
+		for (SchemeObject value : values)
+			arguments.add(analyze(value, scope));
+		final int outerBlock = scope.beginBlock();
+		final int index = scope.add(name);
+		final LambdaForm loop = analyzeLambdaBody(name.toString(), names,
+				false, body, scope);
+		scope.markAssigned(0, index, loop);
+		final SyntaxTreeObject ret = new BeginForm(
+				Collections.<SyntaxTreeObject> singletonList(new LocalSetForm(
+						name, 0, index, loop)), new Funcall(new LocalSymbol(
+						name, 0, index), arguments, this));
+		scope.endBlock(outerBlock);
+		return ret;
+	}
+
+	// (do ((var init step) ...) (test result ...) form ...) is a named let
+	// whose body tests, runs the forms and calls itself with the steps.
+	private SyntaxTreeObject analyzeDoForm(SchemeObject obj, Scope scope)
+			throws SchemeException {
+		if (!(obj instanceof Pair) || !(((Pair) obj).getCdr() instanceof Pair)
+				|| !(((Pair) ((Pair) obj).getCdr()).getCar() instanceof Pair))
+			throw new SchemeException(
+					"Invalid do form: Expected bindings and a test clause");
+		final List<Symbol> names = new ArrayList<>();
+		final List<SchemeObject> values = new ArrayList<>();
+		final List<SchemeObject> steps = new ArrayList<>();
+		parseBindings(_doSymbol, ((Pair) obj).getCar(), names, values, true);
+		for (int i = 0; i < names.size(); ++i) {
+			final Pair binding = (Pair) values.get(i);
+			steps.add(binding.getCdr().isNull() ? names.get(i)
+					: ((Pair) binding.getCdr()).getCar());
+			values.set(i, binding.getCar());
+		}
+		final Pair test = (Pair) ((Pair) ((Pair) obj).getCdr()).getCar();
+		final SchemeObject forms = ((Pair) ((Pair) obj).getCdr()).getCdr();
+
+		final SchemeObject result = test.getCdr().isNull() ? False
+				.getInstance() : new Pair(_beginSymbol, test.getCdr());
+		final SchemeObject next = new Pair(_doLoopSymbol,
+				Pair.fromIterable(steps));
+		final SchemeObject iteration = new Pair(_beginSymbol, append(forms,
+				next));
+		final SchemeObject body = Pair.fromIterable(Arrays.asList(_ifSymbol,
+				test.getCar(), result, iteration));
+		return analyzeLoop(_doLoopSymbol, names, values, new Pair(body,
+				Nil.getInstance()), scope);
+	}
+
+	private static SchemeObject append(SchemeObject forms, SchemeObject last)
+			throws SchemeException {
+		final List<SchemeObject> ret = new ArrayList<>();
+		for (SchemeObject o : (SchemeList) forms)
+			ret.add(o);
+		ret.add(last);
+		return Pair.fromIterable(ret);
 	}
 
-	private LambdaForm analyzeLambdaForm(SchemeObject obj)
+	// Collects the variables and initial values of a binding list. With
+	// withSteps, the values are the rest of each binding (init [step]).
+	private static void parseBindings(Symbol kind, SchemeObject bindings,
+			List<Symbol> names, List<SchemeObject> values, boolean withSteps)
+			throws SchemeException {
+		if (!(bindings instanceof SchemeList)
+				|| ((SchemeList) bindings).isDottedList())
+			throw new SchemeException("Invalid " + kind
+					+ " form: Expected a list of bindings");
+		for (SchemeObject binding : (SchemeList) bindings) {
+			if (!(binding instanceof Pair)
+					|| !(((Pair) binding).getCar() instanceof Symbol)
+					|| !(((Pair) binding).getCdr() instanceof Pair))
+				throw new SchemeException("Invalid " + kind
+						+ " form: Expected (name value) as binding");
+			final Pair value = (Pair) ((Pair) binding).getCdr();
+			if (!withSteps && !value.getCdr().isNull())
+				throw new SchemeException("Invalid " + kind
+						+ " form: Expected (name value) as binding");
+			names.add((Symbol) ((Pair) binding).getCar());
+			values.add(withSteps ? value : value.getCar());
+		}
+	}
+
+	private List<SyntaxTreeObject> analyzeBody(Symbol kind, SchemeObject body,
+			Scope scope) throws SchemeException {
+		if (!(body instanceof Pair))
+			throw new SchemeException("Invalid " + kind
+					+ " form: Expected at least one form in the body");
+		scope.addInternalDefinitions(body);
+		final List<SyntaxTreeObject> ret = new ArrayList<>();
+		for (SchemeObject o : (Pair) body)
+			ret.add(analyze(o, scope));
+		return ret;
+	}
+
+	private List<SyntaxTreeObject> analyzeForms(Symbol kind,
+			SchemeObject forms, Scope scope) throws SchemeException {
+		if (!(forms instanceof Pair))
+			throw new SchemeException("Invalid " + kind
+					+ " form: Expected at least one form");
+		final List<SyntaxTreeObject> ret = new ArrayList<>();
+		for (SchemeObject o : (Pair) forms)
+			ret.add(analyze(o, scope));
+		return ret;
+	}
+
+	private static SyntaxTreeObject sequence(List<SyntaxTreeObject> forms) {
+		if (forms.size() == 1) return forms.get(0);
+		return new BeginForm(forms.subList(0, forms.size() - 1),
+				forms.get(forms.size() - 1));
+	}
+
+	private SyntaxTreeObject analyzeAndForm(SchemeObject forms, Scope scope)
+			throws SchemeException {
+		if (forms.isNull()) return new SelfEvaluatingLiteral(True.getInstance());
+		if (!(forms instanceof Pair))
+			throw new SchemeException("Invalid " + _andSymbol
+					+ " form: Expected a list of forms");
+		final Pair p = (Pair) forms;
+		if (p.getCdr().isNull()) return analyze(p.getCar(), scope);
+		return new IfForm(analyze(p.getCar(), scope), analyzeAndForm(
+				p.getCdr(), scope), new SelfEvaluatingLiteral(
+				False.getInstance()));
+	}
+
+	private SyntaxTreeObject analyzeOrForm(SchemeObject forms, Scope scope)
+			throws SchemeException {
+		if (forms.isNull())
+			return new SelfEvaluatingLiteral(False.getInstance());
+		final List<SyntaxTreeObject> analyzed = analyzeForms(_orSymbol,
+				forms, scope);
+		if (analyzed.size() == 1) return analyzed.get(0);
+		return new OrForm(analyzed);
+	}
+
+	private SyntaxTreeObject analyzeWhenForm(Pair p, Scope scope)
+			throws SchemeException {
+		final Symbol kind = (Symbol) p.getCar();
+		if (!(p.getCdr() instanceof Pair))
+			throw new SchemeException("Invalid " + kind
+					+ " form: Expected a condition");
+		final SyntaxTreeObject condition = analyze(
+				((Pair) p.getCdr()).getCar(), scope);
+		final SyntaxTreeObject body = sequence(analyzeForms(kind,
+				((Pair) p.getCdr()).getCdr(), scope));
+		final SyntaxTreeObject otherwise = new SelfEvaluatingLiteral(
+				False.getInstance());
+		return kind == _whenSymbol ? new IfForm(condition, body, otherwise)
+				: new IfForm(condition, otherwise, body);
+	}
+
+	private static boolean usesArrow(SchemeObject clauses) {
+		for (SchemeObject o = clauses; o instanceof Pair; o = ((Pair) o)
+				.getCdr()) {
+			final SchemeObject clause = ((Pair) o).getCar();
+			if (clause instanceof Pair
+					&& ((Pair) clause).getCdr() instanceof Pair
+					&& ((Pair) ((Pair) clause).getCdr()).getCar() == _arrowSymbol)
+				return true;
+		}
+		return false;
+	}
+
+	private SyntaxTreeObject analyzeCondForm(SchemeObject clauses, Scope scope)
+			throws SchemeException {
+		if (clauses.isNull())
+			return new SelfEvaluatingLiteral(False.getInstance());
+		if (!(clauses instanceof Pair)
+				|| !(((Pair) clauses).getCar() instanceof Pair))
+			throw new SchemeException("Invalid cond form: Expected clauses");
+		final Pair clause = (Pair) ((Pair) clauses).getCar();
+		final SchemeObject forms = clause.getCdr();
+		if (clause.getCar() == _elseSymbol)
+			return sequence(analyzeForms(_condSymbol, forms, scope));
+
+		final SyntaxTreeObject test = analyze(clause.getCar(), scope);
+		final SyntaxTreeObject rest = analyzeCondForm(
+				((Pair) clauses).getCdr(), scope);
+		if (forms.isNull())
+			return new OrForm(Arrays.asList(test, rest));
+		if (!(forms instanceof Pair) || ((Pair) forms).getCar() != _arrowSymbol)
+			return new IfForm(test, sequence(analyzeForms(_condSymbol,
+					forms, scope)), rest);
+
+		// (test => receiver): the value of test is kept in a hidden slot
+		if (!(((Pair) forms).getCdr() instanceof Pair))
+			throw new SchemeException(
+					"Invalid cond form: Expected a procedure after =>");
+		final int outerBlock = scope.beginBlock();
+		final int index = scope.add(_condValueSymbol);
+		final SyntaxTreeObject receiver = analyze(
+				((Pair) ((Pair) forms).getCdr()).getCar(), scope);
+		scope.endBlock(outerBlock);
+		final SyntaxTreeObject value = new LocalSymbol(_condValueSymbol, 0,
+				index);
+		return new BeginForm(
+				Collections.<SyntaxTreeObject> singletonList(new LocalSetForm(
+						_condValueSymbol, 0, index, test)), new IfForm(value,
+						new Funcall(receiver, Collections
+								.<SyntaxTreeObject> singletonList(value), this),
+						rest));
+	}
+
+	private SyntaxTreeObject analyzeCaseForm(SchemeObject obj, Scope scope)
+			throws SchemeException {
+		if (!(obj instanceof Pair))
+			throw new SchemeException("Invalid case form: Expected a key");
+		final SyntaxTreeObject key = analyze(((Pair) obj).getCar(), scope);
+		final List<List<SchemeObject>> data = new ArrayList<>();
+		final List<SyntaxTreeObject> clauses = new ArrayList<>();
+		SyntaxTreeObject elseClause = new SelfEvaluatingLiteral(
+				False.getInstance());
+		for (SchemeObject o = ((Pair) obj).getCdr(); o instanceof Pair; o = ((Pair) o)
+				.getCdr()) {
+			if (!(((Pair) o).getCar() instanceof Pair))
+				throw new SchemeException(
+						"Invalid case form: Expected clauses");
+			final Pair clause = (Pair) ((Pair) o).getCar();
+			final SyntaxTreeObject forms = sequence(analyzeForms(
+					_caseSymbol, clause.getCdr(), scope));
+			if (clause.getCar() == _elseSymbol) {
+				elseClause = forms;
+				break;
+			}
+			if (!(clause.getCar() instanceof SchemeList))
+				throw new SchemeException(
+						"Invalid case form: Expected a list of data");
+			final List<SchemeObject> clauseData = new ArrayList<>();
+			for (SchemeObject datum : (SchemeList) clause.getCar())
+				clauseData.add(datum);
+			data.add(clauseData);
+			clauses.add(forms);
+		}
+		return new CaseForm(key, data, clauses, elseClause);
+	}
+
+	private static SyntaxTreeObject analyzeSymbol(Symbol symbol, Scope scope) {
+		final LocalSymbol local = scope == null ? null : scope.resolve(symbol);
+		if (local != null) return local;
+		return new LiteralSymbol(symbol);
+	}
+
+	private LambdaForm analyzeLambdaBody(String name,
+			List<Symbol> parameterNames, boolean hasRestParameter,
+			Pair forms, Scope outer) throws SchemeException {
+		final Scope scope = new Scope(outer, hasRestParameter ? -1
+				: parameterNames.size());
+		for (Symbol parameterName : parameterNames)
+			scope.add(parameterName);
+		scope.addInternalDefinitions(forms);
+		final BeginForm body = analyzeBeginForm(
+				new Pair(_beginSymbol, forms).toJavaList(), scope);
+
+		// Self tail calls need room for their arguments behind the locals
+		final int scratchIndex = scope.hasSelfCalls() ? scope.getSize() : -1;
+		final int frameSize = scope.hasSelfCalls() ? scope.getSize()
+				+ parameterNames.size() : scope.getSize();
+		final LambdaForm ret = new LambdaForm(name, parameterNames,
+				hasRestParameter, frameSize, body, scope.getCaptureDepths(),
+				scope.getCaptureIndices(), scope.getBoxedSlots(), scratchIndex);
+		scope.finish(ret);
+		return ret;
+	}
+
+	private LambdaForm analyzeLambdaForm(SchemeObject obj, Scope scope)
 			throws SchemeException {
 		if (!(obj instanceof Pair))
 			throw new SchemeException(
@@ -95,11 +491,8 @@ public final class Analyzer {
 
 		if (parameterNameObject instanceof Symbol) { // (lambda x forms)
 			parameterNames.add((Symbol) parameterNameObject);
-			return new LambdaForm(
-					"lambda",
-					parameterNames,
-					true,
-					analyzeBeginForm(new Pair(_beginSymbol, forms).toJavaList()));
+			return analyzeLambdaBody("lambda", parameterNames, true, forms,
+					scope);
 		}
 		if (parameterNameObject instanceof SchemeList) { // (lambda (a b) forms)
 			final boolean hasRestParameter = ((SchemeList) parameterNameObject)
@@ -111,29 +504,27 @@ public final class Analyzer {
 					throw new SchemeException(
 							"Invalid lambda form: Only symbols allowed in parameter name list");
 			}
-			return new LambdaForm(
-					"lambda",
-					parameterNames,
-					hasRestParameter,
-					analyzeBeginForm(new Pair(_beginSymbol, forms).toJavaList()));
+			return analyzeLambdaBody("lambda", parameterNames,
+					hasRestParameter, forms, scope);
 		}
 		throw new SchemeException("Invalid lambda form");
 	}
 
-	private DefineForm analyzeDefineForm(SchemeObject obj)
+	private SyntaxTreeObject analyzeDefineForm(SchemeObject obj, Scope scope)
 			throws SchemeException {
 		if (!(obj instanceof Pair))
 			throw new SchemeException(
 					"Invalid define form: Expected target and value");
 
 		final Pair p1 = (Pair) obj;
-		if (p1.getCar().isSymbol()) return analyzeDefineValue(p1);
-		if (p1.getCar().isPair()) return analyzeDefineProcedure(p1);
+		if (p1.getCar().isSymbol()) return analyzeDefineValue(p1, scope);
+		if (p1.getCar().isPair()) return analyzeDefineProcedure(p1, scope);
 		throw new SchemeException(
 				"Invalid define form: Expected symbol or list as target");
 	}
 
-	private DefineForm analyzeDefineValue(Pair p1) throws SchemeException {
+	private SyntaxTreeObject analyzeDefineValue(Pair p1, Scope scope)
+			throws SchemeException {
 		final Symbol sym = (Symbol) p1.getCar();
 		final SchemeObject valueObject = p1.getCdr();
 		if (!(valueObject instanceof Pair))
@@ -143,10 +534,21 @@ public final class Analyzer {
 			throw new SchemeException(
 					"Invalid define form: Too many parameters");
 
-		return new DefineForm(sym, analyze(((Pair) valueObject).getCar()));
+		return define(sym, ((Pair) valueObject).getCar(), scope);
+	}
+
+	private SyntaxTreeObject define(Symbol sym, SchemeObject valueObject,
+			Scope scope) throws SchemeException {
+		if (scope == null)
+			return new DefineForm(sym, analyze(valueObject, null));
+		final int index = scope.define(sym);
+		final SyntaxTreeObject value = analyze(valueObject, scope);
+		scope.markAssigned(0, index, value);
+		return new LocalSetForm(sym, 0, index, value);
 	}
 
-	private DefineForm analyzeDefineProcedure(Pair p1) throws SchemeException {
+	private SyntaxTreeObject analyzeDefineProcedure(Pair p1, Scope scope)
+			throws SchemeException {
 		final SchemeList target = (SchemeList) p1.getCar();
 		final SchemeObject forms = p1.getCdr();
 		if (!(forms.isPair()))
@@ -164,19 +566,38 @@ public final class Analyzer {
 				parameterNames.add((Symbol) o);
 		}
 
-		return new DefineForm(sym, new LambdaForm(sym.toString(),
-				parameterNames, target.isDottedList(),
-				analyzeBeginForm(new Pair(_beginSymbol, forms).toJavaList())));
+		if (scope == null)
+			return new DefineForm(sym, analyzeLambdaBody(sym.toString(),
+					parameterNames, target.isDottedList(), (Pair) forms, null));
+		final int index = scope.define(sym);
+		final LambdaForm value = analyzeLambdaBody(sym.toString(),
+				parameterNames, target.isDottedList(), (Pair) forms, scope);
+		scope.markAssigned(0, index, value);
+		return new LocalSetForm(sym, 0, index, value);
 	}
 
 	private SelfEvaluatingLiteral defmacro(SchemeObject obj)
 			throws SchemeException {
 		Symbol macroName = (Symbol) _macroEvaluator.eval(obj);
+		final Macro derived = (Macro) _derivedForms.get(macroName);
+		if (derived != null) {
+			// An identical definition (the init script analyzed once more)
+			// keeps the form native
+			final Macro macro = (Macro) _macroEnvironment.get(macroName);
+			if (isSameDefinition(derived, macro))
+				_derivedForms.put(macroName, macro);
+		}
 		return new SelfEvaluatingLiteral(macroName);
 	}
 
-	private SetForm analyzeSetForm(List<SchemeObject> form)
-			throws SchemeException {
+	private static boolean isSameDefinition(Macro a, Macro b) {
+		return a.getParameterNames().equals(b.getParameterNames())
+				&& a.hasRestParameter() == b.hasRestParameter()
+				&& a.getForms().toString().equals(b.getForms().toString());
+	}
+
+	private SyntaxTreeObject analyzeSetForm(List<SchemeObject> form,
+			Scope scope) throws SchemeException {
 		if (form.size() != 3)
 			throw new SchemeException(
 					"Invalid set! form: Expected 2 parameters, got "
@@ -185,19 +606,28 @@ public final class Analyzer {
 			throw new SchemeException(
 					"Invalid set! form: Expected symbol as target");
 
-		return new SetForm((Symbol) form.get(1), analyze(form.get(2)));
+		final Symbol target = (Symbol) form.get(1);
+		final SyntaxTreeObject value = analyze(form.get(2), scope);
+		final SyntaxTreeObject resolved = analyzeSymbol(target, scope);
+		if (resolved instanceof LocalSymbol) {
+			final LocalSymbol local = (LocalSymbol) resolved;
+			scope.markAssigned(local.getDepth(), local.getIndex(), value);
+			return new LocalSetForm(target, local.getDepth(),
+					local.getIndex(), value);
+		}
+		return new SetForm(target, value);
 	}
 
-	private SyntaxTreeObject analyzeCallccForm(List<SchemeObject> form)
-			throws SchemeException {
+	private SyntaxTreeObject analyzeCallccForm(List<SchemeObject> form,
+			Scope scope) throws SchemeException {
 		if (form.size() != 2)
 			throw new SchemeException(
 					"Invalid call/cc form: Expected 1 parameter, got "
 							+ (form.size() - 1));
-		return new CallccForm(analyze(form.get(1)));
+		return new CallccForm(analyze(form.get(1), scope));
 	}
 
-	private SyntaxTreeObject analyzeApplyForm(Pair rawForm)
+	private SyntaxTreeObject analyzeApplyForm(Pair rawForm, Scope scope)
 			throws SchemeException {
 		final List<SchemeObject> form = rawForm.toJavaList();
 
@@ -206,48 +636,251 @@ public final class Analyzer {
 					"Invalid apply form: Expected 2 parameters, got "
 							+ (form.size() - 1));
 
-		final SyntaxTreeObject procedure = analyze(form.get(1));
-		final SyntaxTreeObject parameterList = analyze(form.get(2));
+		final SyntaxTreeObject procedure = analyze(form.get(1), scope);
+		final SyntaxTreeObject parameterList = analyze(form.get(2), scope);
 
-		return new Apply(procedure, parameterList);
+		return new Apply(procedure, parameterList, this);
 	}
 
-	private IfForm analyzeIfForm(final List<SchemeObject> form)
-			throws SchemeException {
+	private IfForm analyzeIfForm(final List<SchemeObject> form,
+			final Scope scope) throws SchemeException {
 		if (form.size() == 3)
-			return new IfForm(analyze(form.get(1)), analyze(form.get(2)),
-					analyze(False.getInstance()));
+			return new IfForm(analyze(form.get(1), scope), analyze(
+					form.get(2), scope), analyze(False.getInstance(), scope));
 		if (form.size() == 4)
-			return new IfForm(analyze(form.get(1)), analyze(form.get(2)),
-					analyze(form.get(3)));
+			return new IfForm(analyze(form.get(1), scope), analyze(
+					form.get(2), scope), analyze(form.get(3), scope));
 		throw new SchemeException(
 				"Invalid if form: Expected 3 or 4 parameters, got "
 						+ (form.size() - 1));
 	}
 
-	private BeginForm analyzeBeginForm(List<SchemeObject> form)
+	private BeginForm analyzeBeginForm(List<SchemeObject> form, Scope scope)
 			throws SchemeException {
 		if (form.size() == 1)
 			throw new SchemeException("Invalid begin form: Empty");
 
 		List<SyntaxTreeObject> analyzedForms = new ArrayList<>();
 		for (SchemeObject o : form.subList(1, form.size()))
-			analyzedForms.add(analyze(o));
+			analyzedForms.add(analyze(o, scope));
 
 		return new BeginForm(
 				analyzedForms.subList(0, analyzedForms.size() - 1),
 				analyzedForms.get(analyzedForms.size() - 1));
 	}
 
-	private SyntaxTreeObject analyzeFuncall(Pair rawForm)
+	private SyntaxTreeObject analyzeFuncall(Pair rawForm, Scope scope)
 			throws SchemeException {
 		final SchemeObject procedure = rawForm.getCar();
 
 		final List<SchemeObject> form = rawForm.toJavaList();
 		final ArrayList<SyntaxTreeObject> parameters = new ArrayList<>();
 		for (int i = 1; i < form.size(); ++i)
-			parameters.add(analyze(form.get(i)));
+			parameters.add(analyze(form.get(i), scope));
+
+		final SyntaxTreeObject analyzedProcedure = analyze(procedure, scope);
+		final Funcall ret = new Funcall(analyzedProcedure, parameters, this);
+		if (analyzedProcedure instanceof LocalSymbol)
+			scope.addSelfCall(ret, (LocalSymbol) analyzedProcedure);
+		return ret;
+	}
+
+	// The local variables of a procedure being analyzed, and the free
+	// variables it captures from the enclosing procedures. References to
+	// locals resolve to depth 0, references to free variables to depth 1
+	// (see Frame).
+	private static final class Scope {
+		private final Scope _outer;
+		private final List<Symbol> _names = new ArrayList<>();
+		private final BitSet _captured = new BitSet();
+		private final BitSet _assigned = new BitSet();
+
+		// Slots assigned to more than once, and the procedures assigned to
+		// the others. A call to such a procedure from its own body always
+		// calls the very closure running, as that is created once per
+		// activation of this scope and never replaced.
+		private final BitSet _reassigned = new BitSet();
+		private final Map<Integer, LambdaForm> _assignedProcedures = new HashMap<>();
+
+		// Calls of local variables of this scope that may be self calls of
+		// the procedure they appear in (see finish()).
+		private final List<SelfCall> _selfCalls = new ArrayList<>();
+
+		// Number of parameters, or -1 for procedures with a rest parameter,
+		// whose calls are never turned into jumps.
+		private final int _parameterCount;
+		private boolean _hasSelfCalls;
+		private LambdaForm _form;
+		private int _blockStart;
+
+		// Per free variable: its position in the frame of the enclosing
+		// procedure, and the scope and slot it is a local variable of.
+		private final List<Symbol> _freeNames = new ArrayList<>();
+		private final List<LocalSymbol> _captures = new ArrayList<>();
+		private final List<Scope> _owners = new ArrayList<>();
+		private final List<Integer> _ownerIndices = new ArrayList<>();
+
+		public Scope(Scope outer, int parameterCount) {
+			_outer = outer;
+			_parameterCount = parameterCount;
+		}
+
+		public int getSize() {
+			return _names.size();
+		}
+
+		public LocalSymbol resolve(Symbol name) {
+			final int index = indexOf(name);
+			if (index != -1) return new LocalSymbol(name, 0, index);
+
+			final int freeIndex = _freeNames.lastIndexOf(name);
+			if (freeIndex != -1) return new LocalSymbol(name, 1, freeIndex);
+
+			final LocalSymbol outer = _outer == null ? null : _outer
+					.resolve(name);
+			if (outer == null) return null;
+			if (outer.getDepth() == 0) {
+				_outer._captured.set(outer.getIndex());
+				_owners.add(_outer);
+				_ownerIndices.add(outer.getIndex());
+			} else {
+				_owners.add(_outer._owners.get(outer.getIndex()));
+				_ownerIndices.add(_outer._ownerIndices.get(outer.getIndex()));
+			}
+			_freeNames.add(name);
+			_captures.add(outer);
+			return new LocalSymbol(name, 1, _freeNames.size() - 1);
+		}
+
+		public void markAssigned(int depth, int index, SyntaxTreeObject value) {
+			if (depth == 0) {
+				if (_assigned.get(index)) _reassigned.set(index);
+				_assigned.set(index);
+				if (value instanceof LambdaForm)
+					_assignedProcedures.put(index, (LambdaForm) value);
+			} else {
+				// Assignments made by a nested procedure may happen any
+				// number of times
+				final Scope owner = _owners.get(index);
+				owner._assigned.set(_ownerIndices.get(index));
+				owner._reassigned.set(_ownerIndices.get(index));
+			}
+		}
+
+		public void addSelfCall(Funcall call, LocalSymbol procedure) {
+			if (procedure.getDepth() != 1
+					|| call.getParameters().size() != _parameterCount)
+				return;
+			_hasSelfCalls = true;
+			_owners.get(procedure.getIndex())._selfCalls.add(new SelfCall(
+					call, _ownerIndices.get(procedure.getIndex()), this));
+		}
+
+		public boolean hasSelfCalls() {
+			return _hasSelfCalls;
+		}
+
+		// Called once the scope has been analyzed completely, so that all
+		// assignments to its variables are known.
+		public void finish(LambdaForm form) {
+			_form = form;
+			for (SelfCall c : _selfCalls)
+				if (!_reassigned.get(c.index)
+						&& _assignedProcedures.get(c.index) == c.scope._form)
+					c.call.setSelfTailCallTarget(c.scope._form);
+		}
+
+		public int[] getCaptureDepths() {
+			final int[] ret = new int[_captures.size()];
+			for (int i = 0; i < ret.length; ++i)
+				ret[i] = _captures.get(i).getDepth();
+			return ret;
+		}
+
+		public int[] getCaptureIndices() {
+			final int[] ret = new int[_captures.size()];
+			for (int i = 0; i < ret.length; ++i)
+				ret[i] = _captures.get(i).getIndex();
+			return ret;
+		}
+
+		// Captured variables that are assigned to have to be shared between
+		// the frame and the closures instead of being copied.
+		public int[] getBoxedSlots() {
+			final BitSet boxed = (BitSet) _captured.clone();
+			boxed.and(_assigned);
+			final int[] ret = new int[boxed.cardinality()];
+			int i = 0;
+			for (int slot = boxed.nextSetBit(0); slot >= 0; slot = boxed
+					.nextSetBit(slot + 1))
+				ret[i++] = slot;
+			return ret;
+		}
+
+		public int indexOf(Symbol name) {
+			return _names.lastIndexOf(name);
+		}
+
+		public int add(Symbol name) throws SchemeException {
+			if (Environment.isSpecialFormName(name.toString()))
+				throw new SchemeException("Symbol '" + name.toString()
+						+ "' is constant and must not be changed");
+			_names.add(name);
+			return _names.size() - 1;
+		}
+
+		// Internal definitions reuse the slot of a variable of the same
+		// procedure or block, and shadow all others.
+		public int define(Symbol name) throws SchemeException {
+			final int index = indexOf(name);
+			if (index >= _blockStart) return index;
+			return add(name);
+		}
+
+		// Blocks (the bodies of let forms) add slots to the frame that are
+		// only visible until the block ends. Returns the start of the
+		// enclosing block, to be passed to endBlock().
+		public int beginBlock() {
+			final int ret = _blockStart;
+			_blockStart = _names.size();
+			return ret;
+		}
 
-		return new Funcall(analyze(procedure), parameters);
+		public void endBlock(int outerBlockStart) {
+			for (int i = _blockStart; i < _names.size(); ++i)
+				_names.set(i, null);
+			_blockStart = outerBlockStart;
+		}
+
+		private static final class SelfCall {
+			final Funcall call;
+			final int index;
+			final Scope scope;
+
+			SelfCall(Funcall call, int index, Scope scope) {
+				this.call = call;
+				this.index = index;
+				this.scope = scope;
+			}
+		}
+
+		// Slots for internal definitions are reserved before the body is
+		// analyzed, so that procedures defined later in the same body can
+		// be referenced (e.g. mutually recursive helpers).
+		public void addInternalDefinitions(SchemeObject forms)
+				throws SchemeException {
+			for (SchemeObject o = forms; o instanceof Pair; o = ((Pair) o)
+					.getCdr()) {
+				final SchemeObject form = ((Pair) o).getCar();
+				if (!(form instanceof Pair)) continue;
+				final SchemeObject car = ((Pair) form).getCar();
+				final SchemeObject cdr = ((Pair) form).getCdr();
+				if (car == _beginSymbol) addInternalDefinitions(cdr);
+				if (car != _defineSymbol || !(cdr instanceof Pair)) continue;
+				SchemeObject target = ((Pair) cdr).getCar();
+				if (target instanceof Pair) target = ((Pair) target).getCar();
+				if (target instanceof Symbol) define((Symbol) target);
+			}
+		}
 	}
 }
@@ -17,15 +17,10 @@
 package org.lb.lbjscheme;
 
 import java.io.*;
-import java.util.*;
-import org.lb.lbjscheme.ast.*;
 
 public final class AnalyzingEvaluator extends Evaluator {
-	private final static Symbol _undefinedSymbol = Symbol
-			.fromString("undefined");
-	private final static Symbol _beginSymbol = Symbol.fromString("begin");
-
 	private final Analyzer _analyzer;
+	private int _optimizationLevel = Optimizer.NONE;
 
 	public AnalyzingEvaluator(final Environment global) throws SchemeException {
 		super(global);
@@ -36,21 +31,19 @@ public final class AnalyzingEvaluator extends Evaluator {
 	private void analyzeBuiltinLambdas() throws SchemeException {
 		final Environment global = getGlobalEnvironment();
 		global.unlock();
-		for (final Symbol sym : global.getDefinedSymbols()) {
-			if (global.get(sym) instanceof Lambda) {
-				final Lambda l = (Lambda) global.get(sym);
-				final BeginForm beginForm = (BeginForm) _analyzer
-						.analyze(new Pair(_beginSymbol, l.getForms()));
-				global.set(
-						sym,
-						new AnalyzedLambda(l.getName(), l.getParameterNames(),
-								l.hasRestParameter(), beginForm, l
-										.getCaptured()));
-			}
-		}
+		for (final Symbol sym : global.getDefinedSymbols())
+			if (global.get(sym) instanceof Lambda)
+				global.set(sym,
+						AnalyzedLambda.fromLambda((Lambda) global.get(sym),
+								_analyzer));
 		global.lock();
 	}
 
+	// See Optimizer
+	public void setOptimizationLevel(int value) {
+		_optimizationLevel = value;
+	}
+
 	@Override
 	public SchemeObject eval(String commands) throws SchemeException {
 		final Reader r = new Reader(new InputPort(new StringReader(commands)));
@@ -67,149 +60,7 @@ public final class AnalyzingEvaluator extends Evaluator {
 	@Override
 	public SchemeObject eval(SchemeObject o, Environment env)
 			throws SchemeException {
-		return eval(_analyzer.analyze(o), env);
-	}
-
-	private SchemeObject eval(SyntaxTreeObject o, Environment env)
-			throws SchemeException {
-		tailCall: for (;;) {
-			if (o instanceof BeginForm) {
-				final BeginForm form = (BeginForm) o;
-				for (SyntaxTreeObject i : form.getFormsWithoutLast())
-					eval(i, env);
-				o = form.getLastForm();
-				continue tailCall;
-			}
-
-			if (o instanceof DefineForm) {
-				final DefineForm form = (DefineForm) o;
-				env.define(form.getTarget(), eval(form.getAnalyzedForm(), env));
-				return _undefinedSymbol;
-			}
-
-			if (o instanceof Funcall) {
-				final Funcall form = (Funcall) o;
-				final SchemeObject procedure = eval(form.getProcedure(), env);
-				if (procedure.isNull())
-					throw new SchemeException("Empty list can not be evaluated");
-				if (procedure.isVector())
-					throw new SchemeException("Vectors must be quoted");
-				final List<SchemeObject> parameters = new ArrayList<>(form
-						.getParameters().size());
-				for (SyntaxTreeObject i : form.getParameters())
-					parameters.add(eval(i, env));
-
-				if (procedure instanceof Builtin)
-					return ((Builtin) procedure).apply(parameters);
-
-				// Ugly hack: Can only happen on lambdas returned by (eval)
-				if (procedure instanceof Lambda) {
-					final Lambda l = (Lambda) procedure;
-					o = _analyzer.analyze(new Pair(_beginSymbol, l.getForms()));
-					env = new Environment(l.getCaptured());
-					env.expand(l.getParameterNames(), l.hasRestParameter(),
-							parameters);
-					continue tailCall;
-				}
-
-				if (procedure instanceof AnalyzedLambda) {
-					final AnalyzedLambda l = (AnalyzedLambda) procedure;
-
-					env = new Environment(l.getCaptured());
-					env.expand(l.getParameterNames(), l.hasRestParameter(),
-							parameters);
-
-					for (SyntaxTreeObject i : l.getForms()
-							.getFormsWithoutLast())
-						eval(i, env);
-					o = l.getForms().getLastForm();
-					continue tailCall;
-				}
-
-				throw new SchemeException(
-						"Don't know how to call object of type "
-								+ procedure.getClass());
-			}
-
-			if (o instanceof CallccForm)
-				throw new SchemeException(
-						"AnalyzingEvaluator doesn't support continuations");
-
-			if (o instanceof Apply) {
-				final Apply form = (Apply) o;
-				final SchemeObject procedure = eval(form.getProcedure(), env);
-				if (procedure.isNull())
-					throw new SchemeException("Empty list can not be applied");
-				final SchemeObject parameterList = eval(form.getParameters(),
-						env);
-				if (!(parameterList instanceof SchemeList))
-					throw new SchemeException(
-							"Invalid apply form: Expected argument list, got "
-									+ parameterList.getClass());
-				final List<SchemeObject> parameters = ((SchemeList) parameterList)
-						.toJavaList();
-
-				if (procedure instanceof Builtin)
-					return ((Builtin) procedure).apply(parameters);
-
-				// Ugly hack: Can only happen on lambdas returned by (eval)
-				if (procedure instanceof Lambda) {
-					final Lambda l = (Lambda) procedure;
-					o = _analyzer.analyze(new Pair(_beginSymbol, l.getForms()));
-					env = new Environment(l.getCaptured());
-					env.expand(l.getParameterNames(), l.hasRestParameter(),
-							parameters);
-					continue tailCall;
-				}
-
-				if (procedure instanceof AnalyzedLambda) {
-					final AnalyzedLambda l = (AnalyzedLambda) procedure;
-
-					env = new Environment(l.getCaptured());
-					env.expand(l.getParameterNames(), l.hasRestParameter(),
-							parameters);
-
-					for (SyntaxTreeObject i : l.getForms()
-							.getFormsWithoutLast())
-						eval(i, env);
-					o = l.getForms().getLastForm();
-					continue tailCall;
-				}
-
-				throw new SchemeException(
-						"Don't know how to call object of type "
-								+ procedure.getClass());
-			}
-
-			if (o instanceof IfForm) {
-				final IfForm form = (IfForm) o;
-				o = eval(form.getCondition(), env) != False.getInstance() ? form
-						.getThenPart() : form.getElsePart();
-				continue tailCall;
-			}
-
-			if (o instanceof LambdaForm) {
-				final LambdaForm form = (LambdaForm) o;
-				return new AnalyzedLambda(form.getName(),
-						form.getParameterNames(), form.HasRestParameter(),
-						form.getAnalyzedForms(), env);
-			}
-
-			if (o instanceof LiteralSymbol)
-				return env.get(((LiteralSymbol) o).getSymbol());
-
-			if (o instanceof SelfEvaluatingLiteral)
-				return ((SelfEvaluatingLiteral) o).getValue();
-
-			if (o instanceof SetForm) {
-				final SetForm form = (SetForm) o;
-				env.set(form.getTarget(), eval(form.getValue(), env));
-				return _undefinedSymbol;
-			}
-
-			throw new SchemeException(
-					"Internal error: Don't know how to handle object of type "
-							+ o.getClass());
-		}
+		return new Optimizer(env, _optimizationLevel).optimize(
+				_analyzer.analyze(o)).execute(null, env);
 	}
 }
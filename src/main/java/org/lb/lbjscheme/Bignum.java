@@ -19,10 +19,10 @@ package org.lb.lbjscheme;
 import java.math.BigInteger;
 
 public final class Bignum extends SchemeNumber {
-	private final static BigInteger MAX_INT = BigInteger
-			.valueOf(Integer.MAX_VALUE);
-	private final static BigInteger MIN_INT = BigInteger
-			.valueOf(Integer.MIN_VALUE);
+	private final static BigInteger MAX_LONG = BigInteger
+			.valueOf(Long.MAX_VALUE);
+	private final static BigInteger MIN_LONG = BigInteger
+			.valueOf(Long.MIN_VALUE);
 
 	private final BigInteger _value;
 
@@ -54,9 +54,9 @@ public final class Bignum extends SchemeNumber {
 	}
 
 	public static SchemeNumber valueOf(BigInteger value) {
-		if (value.compareTo(MAX_INT) > 0 || value.compareTo(MIN_INT) < 0)
+		if (value.compareTo(MAX_LONG) > 0 || value.compareTo(MIN_LONG) < 0)
 			return new Bignum(value);
-		return new Fixnum(value.intValue());
+		return Fixnum.valueOf(value.longValue());
 	}
 
 	@Override
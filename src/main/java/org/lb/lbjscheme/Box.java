@@ -14,34 +14,26 @@
 // ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
 // OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
 
-package org.lb.lbjscheme.vm;
+package org.lb.lbjscheme;
 
-public final class JumpIfFalse extends LabeledOpcode {
-	private final String _label;
-	private int _position;
+// Storage of a local variable that is both captured by a closure and
+// assigned to. Frames hold the box instead of the value, so the frame and
+// every closure capturing the variable share it. Boxes never escape a Frame.
+final class Box extends SchemeObject {
+	SchemeObject value;
 
-	public JumpIfFalse(String label) {
-		_label = label;
-		_position = -1;
+	Box(SchemeObject value) {
+		this.value = value;
 	}
 
 	@Override
-	public boolean isLabel(String label) {
-		return _label.equals(label);
+	public String toString(boolean forDisplay) {
+		return "<box>";
 	}
 
 	@Override
-	public void setPosition(int value) {
-		_position = value;
-	}
-
-	@Override
-	public void execute() {
-		_vm.executeJumpIfFalse(_position);
-	}
-
-	@Override
-	public String toString() {
-		return "JUMPFALSE " + _position;
+	public Object toJavaObject() throws SchemeException {
+		throw new SchemeException(
+				"Internal error: Box cannot be converted into a plain Java object");
 	}
 }
@@ -16,7 +16,7 @@
 
 package org.lb.lbjscheme;
 
-import java.util.List;
+import java.util.*;
 
 public abstract class Builtin extends SchemeObject {
 	protected static final True _true = True.getInstance();
@@ -28,6 +28,27 @@ public abstract class Builtin extends SchemeObject {
 	public abstract SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException;
 
+	// Fixed-arity entry points used by call sites that know their argument
+	// count. Builtins override the ones they support; the defaults fall back
+	// to apply(List).
+	public SchemeObject apply0() throws SchemeException {
+		return apply(Collections.<SchemeObject> emptyList());
+	}
+
+	public SchemeObject apply1(SchemeObject first) throws SchemeException {
+		return apply(Collections.singletonList(first));
+	}
+
+	public SchemeObject apply2(SchemeObject first, SchemeObject second)
+			throws SchemeException {
+		return apply(Arrays.asList(first, second));
+	}
+
+	public SchemeObject apply3(SchemeObject first, SchemeObject second,
+			SchemeObject third) throws SchemeException {
+		return apply(Arrays.asList(first, second, third));
+	}
+
 	@Override
 	public final boolean isProcedure() {
 		return true;
@@ -80,6 +101,12 @@ public abstract class Builtin extends SchemeObject {
 		return (SchemeNumber) o;
 	}
 
+	protected final SchemeString getString(SchemeObject o)
+			throws SchemeException {
+		o.assertIsString(getName());
+		return (SchemeString) o;
+	}
+
 	protected final Vector getVector(SchemeObject o) throws SchemeException {
 		assertParameterType(o, Vector.class);
 		return (Vector) o;
@@ -97,7 +124,10 @@ public abstract class Builtin extends SchemeObject {
 
 	protected final int getFixnum(SchemeObject o) throws SchemeException {
 		assertParameterType(o, Fixnum.class);
-		return ((Fixnum) o).getValue();
+		final long value = ((Fixnum) o).getValue();
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+			throw new SchemeException("Integer out of range: " + value);
+		return (int) value;
 	}
 
 	protected final char getCharacter(SchemeObject o) throws SchemeException {
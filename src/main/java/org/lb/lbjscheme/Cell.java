@@ -0,0 +1,57 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme;
+
+// Storage of a single global binding. Environments hand out their cells so
+// that analyzed and compiled code can keep a direct reference to a global
+// variable instead of looking it up by name on every access.
+public final class Cell {
+	private final Environment _environment;
+	private final Symbol _symbol;
+	private final boolean _isProtected;
+	private SchemeObject _value;
+
+	Cell(Environment environment, Symbol symbol, SchemeObject value) {
+		_environment = environment;
+		_symbol = symbol;
+		_isProtected = Environment.isProtectedName(symbol.toString());
+		_value = value;
+	}
+
+	public Environment getEnvironment() {
+		return _environment;
+	}
+
+	public Symbol getSymbol() {
+		return _symbol;
+	}
+
+	public SchemeObject getValue() {
+		return _value;
+	}
+
+	public void setValue(SchemeObject value) throws SchemeException {
+		if (_isProtected && _environment.isLocked())
+			throw new SchemeException("Symbol '" + _symbol.toString()
+					+ "' is constant and must not be changed");
+		_value = value;
+	}
+
+	void define(SchemeObject value) {
+		_value = value;
+	}
+}
@@ -0,0 +1,161 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme;
+
+import java.io.*;
+import java.util.*;
+
+// Minimal writer for version 49 class files, which need no stack map
+// frames. Supports just what JvmEmitter needs: a constant pool and methods.
+final class ClassFileWriter {
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_FINAL = 0x0010;
+	private static final int ACC_SUPER = 0x0020;
+
+	private final ByteArrayOutputStream _pool = new ByteArrayOutputStream();
+	private final DataOutputStream _poolData = new DataOutputStream(_pool);
+	private final HashMap<String, Integer> _poolIndices = new HashMap<>();
+	private int _poolSize = 1;
+
+	private final ByteArrayOutputStream _methods = new ByteArrayOutputStream();
+	private final DataOutputStream _methodsData = new DataOutputStream(_methods);
+	private int _numberOfMethods;
+
+	int utf8(String value) {
+		final String key = "U" + value;
+		final Integer existing = _poolIndices.get(key);
+		if (existing != null) return existing;
+		try {
+			_poolData.writeByte(1);
+			_poolData.writeUTF(value);
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+		return addPoolEntry(key);
+	}
+
+	int integer(int value) {
+		final String key = "I" + value;
+		final Integer existing = _poolIndices.get(key);
+		if (existing != null) return existing;
+		write(3, value >>> 16, value & 0xffff);
+		return addPoolEntry(key);
+	}
+
+	int classRef(String internalName) {
+		final String key = "C" + internalName;
+		final Integer existing = _poolIndices.get(key);
+		if (existing != null) return existing;
+		final int name = utf8(internalName);
+		write(7, name);
+		return addPoolEntry(key);
+	}
+
+	int fieldRef(String owner, String name, String descriptor) {
+		return memberRef(9, owner, name, descriptor);
+	}
+
+	int methodRef(String owner, String name, String descriptor) {
+		return memberRef(10, owner, name, descriptor);
+	}
+
+	private int memberRef(int tag, String owner, String name, String descriptor) {
+		final String key = "M" + tag + owner + "." + name + ":" + descriptor;
+		final Integer existing = _poolIndices.get(key);
+		if (existing != null) return existing;
+		final int ownerIndex = classRef(owner);
+		final int nameAndType = nameAndType(name, descriptor);
+		write(tag, ownerIndex, nameAndType);
+		return addPoolEntry(key);
+	}
+
+	private int nameAndType(String name, String descriptor) {
+		final String key = "N" + name + ":" + descriptor;
+		final Integer existing = _poolIndices.get(key);
+		if (existing != null) return existing;
+		final int nameIndex = utf8(name);
+		final int descriptorIndex = utf8(descriptor);
+		write(12, nameIndex, descriptorIndex);
+		return addPoolEntry(key);
+	}
+
+	private void write(int tag, int... values) {
+		try {
+			_poolData.writeByte(tag);
+			for (int v : values)
+				_poolData.writeShort(v);
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	private int addPoolEntry(String key) {
+		final int ret = _poolSize;
+		_poolIndices.put(key, ret);
+		++_poolSize;
+		return ret;
+	}
+
+	void addMethod(String name, String descriptor, int maxStack,
+			int maxLocals, byte[] code, int codeLength) {
+		final int nameIndex = utf8(name);
+		final int descriptorIndex = utf8(descriptor);
+		final int codeAttribute = utf8("Code");
+		try {
+			_methodsData.writeShort(ACC_PUBLIC);
+			_methodsData.writeShort(nameIndex);
+			_methodsData.writeShort(descriptorIndex);
+			_methodsData.writeShort(1);
+			_methodsData.writeShort(codeAttribute);
+			_methodsData.writeInt(12 + codeLength);
+			_methodsData.writeShort(maxStack);
+			_methodsData.writeShort(maxLocals);
+			_methodsData.writeInt(codeLength);
+			_methodsData.write(code, 0, codeLength);
+			_methodsData.writeShort(0); // exception table
+			_methodsData.writeShort(0); // attributes
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+		++_numberOfMethods;
+	}
+
+	byte[] toByteArray(String internalName, String superName) {
+		final int thisClass = classRef(internalName);
+		final int superClass = classRef(superName);
+		final ByteArrayOutputStream ret = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(ret);
+		try {
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(49);
+			out.writeShort(_poolSize);
+			_pool.writeTo(out);
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(0); // interfaces
+			out.writeShort(0); // fields
+			out.writeShort(_numberOfMethods);
+			_methods.writeTo(out);
+			out.writeShort(0); // attributes
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+		return ret.toByteArray();
+	}
+}
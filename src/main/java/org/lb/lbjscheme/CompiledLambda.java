@@ -17,21 +17,25 @@
 package org.lb.lbjscheme;
 
 import java.util.List;
+import org.lb.lbjscheme.vm.ClosureTemplate;
 
 public class CompiledLambda extends SchemeObject {
-	public final Environment captured;
+	public final Frame captured;
 	public final int pc;
 	public final List<Symbol> parameterNames;
 	public final boolean hasRestParameter;
+	public final int frameSize;
 	public final String name;
+	public final ClosureTemplate template;
 
-	public CompiledLambda(String name, Environment captured, int pc,
-			List<Symbol> parameterNames, boolean hasRestParameter) {
-		this.name = name;
+	public CompiledLambda(ClosureTemplate template, Frame captured, int pc) {
+		this.name = template.name;
 		this.captured = captured;
 		this.pc = pc;
-		this.parameterNames = parameterNames;
-		this.hasRestParameter = hasRestParameter;
+		this.parameterNames = template.parameterNames;
+		this.hasRestParameter = template.hasRestParameter;
+		this.frameSize = template.frameSize;
+		this.template = template;
 	}
 
 	@Override
@@ -17,129 +17,276 @@
 package org.lb.lbjscheme;
 
 import java.util.*;
+import org.lb.lbjscheme.ast.CaseForm;
+import org.lb.lbjscheme.ast.LambdaForm;
 import org.lb.lbjscheme.vm.*;
 
 public final class CompiledProgram implements Emitter {
-	private final ArrayList<Opcode> _opcodes = new ArrayList<Opcode>();
+	private static final Map<Symbol, Integer> _primitiveOpcodes = new HashMap<Symbol, Integer>();
+
+	static {
+		addPrimitive("##car", Opcode.CAR);
+		addPrimitive("##cdr", Opcode.CDR);
+		addPrimitive("##cons", Opcode.CONS);
+		addPrimitive("##eq?", Opcode.EQ);
+		addPrimitive("##null?", Opcode.NULLP);
+		addPrimitive("##pair?", Opcode.PAIRP);
+		addPrimitive("##zero?", Opcode.ZEROP);
+		addPrimitive("##+", Opcode.ADD2);
+		addPrimitive("##-", Opcode.SUB2);
+		addPrimitive("##<", Opcode.LT2);
+		addPrimitive("##>", Opcode.GT2);
+		addPrimitive("##<=", Opcode.LE2);
+		addPrimitive("##>=", Opcode.GE2);
+		addPrimitive("##=", Opcode.NUMEQ2);
+	}
+
+	private static void addPrimitive(String name, int opcode) {
+		_primitiveOpcodes.put(Symbol.fromString(name), opcode);
+	}
+
+	private int[] _code = new int[64];
+	private int _size;
+	private Object[] _constants = new Object[16];
+	private int _numberOfConstants;
+	private final IdentityHashMap<Object, Integer> _constantIndices = new IdentityHashMap<Object, Integer>();
+
+	// Indexed by label id: the position a label was set to (or -1), and the
+	// most recent operand still waiting for it. Waiting operands are chained
+	// through the code itself, each holding the position of the previous one
+	// (or -1), so a label is backpatched by walking its chain once.
+	private int[] _labelPositions = new int[16];
+	private int[] _labelFixups = new int[16];
+	private int _numberOfLabels;
+	private int _numberOfPendingFixups;
+
+	// Templates by the form they were compiled from, for the JIT compiler,
+	// and by their (not yet set) body label, to record their position.
+	private final IdentityHashMap<LambdaForm, ClosureTemplate> _closureTemplates = new IdentityHashMap<LambdaForm, ClosureTemplate>();
+	private final HashMap<Integer, ClosureTemplate> _closureTemplatesByLabel = new HashMap<Integer, ClosureTemplate>();
+
+	// Global variable cells resolved by the virtual machine so far, indexed
+	// like the constant pool.
+	private Cell[] _cells = new Cell[0];
 
 	public int getNumberOfStatements() {
-		return _opcodes.size();
+		return _size;
+	}
+
+	// The arrays returned are only valid until the next instruction is
+	// emitted.
+	public int[] getCode() {
+		return _code;
+	}
+
+	public Object[] getConstants() {
+		return _constants;
+	}
+
+	public int getNumberOfConstants() {
+		return _numberOfConstants;
+	}
+
+	public Cell[] getCells() {
+		if (_cells.length < _numberOfConstants)
+			_cells = Arrays.copyOf(_cells, _numberOfConstants);
+		return _cells;
+	}
+
+	public ClosureTemplate getClosureTemplate(LambdaForm form) {
+		return _closureTemplates.get(form);
 	}
 
 	@Override
 	public void emitCall() {
-		_opcodes.add(new Call());
+		emit(Opcode.CALL);
 	}
 
 	@Override
 	public void emitContinue() {
-		_opcodes.add(new Continue());
+		emit(Opcode.CONTINUE);
 	}
 
 	@Override
 	public void emitDefineVariable(Symbol variable) {
-		_opcodes.add(new DefineVariable(variable));
+		emit(Opcode.DEFVAR, addConstant(variable));
+	}
+
+	@Override
+	public void emitGetLocal(Symbol variable, int depth, int index) {
+		emit(Opcode.GETLOCAL, addConstant(variable));
+		emit(depth);
+		emit(index);
 	}
 
 	@Override
 	public void emitGetVariable(Symbol variable) {
-		_opcodes.add(new GetVariable(variable));
+		emit(Opcode.GETVAR, addConstant(variable));
 	}
 
 	@Override
 	public void emitInitArgs() {
-		_opcodes.add(new InitArgs());
+		emit(Opcode.INITARGS);
 	}
 
 	@Override
-	public void emitJump(String label) {
-		LabeledOpcode op = new Jump(label);
-		_opcodes.add(op);
-		addLabeledOpcode(op);
+	public void emitJump(int label) {
+		emit(Opcode.JMP);
+		emitLabel(label);
 	}
 
 	@Override
-	public void emitJumpIfFalse(String label) {
-		LabeledOpcode op = new JumpIfFalse(label);
-		_opcodes.add(op);
-		addLabeledOpcode(op);
+	public void emitJumpIfFalse(int label) {
+		emit(Opcode.JMPF);
+		emitLabel(label);
 	}
 
 	@Override
 	public void emitLiteral(SchemeObject value) {
-		_opcodes.add(new Literal(value));
+		emit(Opcode.LITERAL, addConstant(value));
 	}
 
 	@Override
-	public void emitMakeClosure(String name, String closureLabel,
-			boolean hasRestParameter, List<Symbol> parameterNames) {
-		LabeledOpcode op = new MakeClosure(name, closureLabel,
-				hasRestParameter, parameterNames);
-		_opcodes.add(op);
-		addLabeledOpcode(op);
+	public void emitMakeClosure(LambdaForm form, int closureLabel) {
+		final ClosureTemplate template = new ClosureTemplate(form, this);
+		_closureTemplates.put(form, template);
+		_closureTemplatesByLabel.put(closureLabel, template);
+		emit(Opcode.MAKECLOSURE, addConstant(template));
+		emitLabel(closureLabel);
 	}
 
 	@Override
 	public void emitPopAll() {
-		_opcodes.add(new PopAll());
+		emit(Opcode.POPALL);
+	}
+
+	@Override
+	public void emitPrimitive(Symbol primitive) {
+		emit(_primitiveOpcodes.get(primitive));
 	}
 
 	@Override
 	public void emitPushAll() {
-		_opcodes.add(new PushAll());
+		emit(Opcode.PUSHALL);
 	}
 
 	@Override
 	public void emitPushArg() {
-		_opcodes.add(new PushArg());
+		emit(Opcode.PUSHARG);
+	}
+
+	@Override
+	public void emitSelfTailCall(LambdaForm form, int bodyLabel) {
+		emit(Opcode.SELFCALL, addConstant(_closureTemplates.get(form)));
+		emitLabel(bodyLabel);
+	}
+
+	@Override
+	public void emitSwitch(CaseForm form, int[] labels) {
+		emit(Opcode.SWITCH, addConstant(form));
+		for (int label : labels)
+			emitJump(label);
+	}
+
+	@Override
+	public void emitSetContinuationRegisterToLabel(int label) {
+		emit(Opcode.SETCONT);
+		emitLabel(label);
 	}
 
 	@Override
-	public void emitSetContinuationRegisterToLabel(String label) {
-		LabeledOpcode op = new SetContinuationRegisterToLabel(label);
-		_opcodes.add(op);
-		addLabeledOpcode(op);
+	public void emitSetLocal(Symbol variable, int depth, int index) {
+		emit(Opcode.SETLOCAL, depth);
+		emit(index);
 	}
 
 	@Override
 	public void emitSetArgsToValueRegister() {
-		_opcodes.add(new SetArgsToValueRegister());
+		emit(Opcode.SETARGS);
 	}
 
 	@Override
 	public void emitSetVariable(Symbol variable) {
-		_opcodes.add(new SetVariable(variable));
+		emit(Opcode.SETVAR, addConstant(variable));
 	}
 
-	private final List<LabeledOpcode> _labeledOpcodes = new ArrayList<LabeledOpcode>();
-
 	@Override
-	public void setLabelPositionToHere(String label) {
-		for (int i = 0; i < _labeledOpcodes.size(); ++i) {
-			final LabeledOpcode op = _labeledOpcodes.get(i);
-			if (op.isLabel(label)) {
-				op.setPosition(_opcodes.size());
-				_labeledOpcodes.remove(i);
-				i--;
-			}
+	public void setLabelPositionToHere(int label) {
+		reserveLabel(label);
+		_labelPositions[label] = _size;
+		int operand = _labelFixups[label];
+		while (operand != -1) {
+			final int previous = _code[operand];
+			_code[operand] = _size;
+			operand = previous;
+			_numberOfPendingFixups--;
 		}
-	}
+		_labelFixups[label] = -1;
 
-	private void addLabeledOpcode(LabeledOpcode op) {
-		_labeledOpcodes.add(op);
+		final ClosureTemplate template = _closureTemplatesByLabel.remove(label);
+		if (template != null) template.setPosition(_size);
 	}
 
 	public boolean isRunnable() {
-		return _labeledOpcodes.isEmpty();
+		return _numberOfPendingFixups == 0;
 	}
 
-	public void setVm(VirtualMachine vm) {
-		for (Opcode i : _opcodes)
-			i.setVm(vm);
+	public String disassemble() {
+		final StringBuilder ret = new StringBuilder();
+		int ip = 0;
+		while (ip < _size) {
+			final int opcode = _code[ip];
+			ret.append(ip).append(": ").append(Opcode.getName(opcode));
+			final int operands = Opcode.getOperandCount(opcode);
+			for (int i = 1; i <= operands; ++i)
+				ret.append(' ').append(_code[ip + i]);
+			ret.append('\n');
+			ip += operands + 1;
+		}
+		return ret.toString();
+	}
+
+	private void emit(int value) {
+		if (_size == _code.length) _code = Arrays.copyOf(_code, _size * 2);
+		_code[_size++] = value;
+	}
+
+	private void emit(int opcode, int operand) {
+		emit(opcode);
+		emit(operand);
+	}
+
+	private void emitLabel(int label) {
+		reserveLabel(label);
+		if (_labelPositions[label] != -1) {
+			emit(_labelPositions[label]);
+		} else {
+			final int operand = _size;
+			emit(_labelFixups[label]);
+			_labelFixups[label] = operand;
+			_numberOfPendingFixups++;
+		}
+	}
+
+	private void reserveLabel(int label) {
+		if (label < _numberOfLabels) return;
+		if (label >= _labelPositions.length) {
+			final int capacity = Math.max(label + 1, _labelPositions.length * 2);
+			_labelPositions = Arrays.copyOf(_labelPositions, capacity);
+			_labelFixups = Arrays.copyOf(_labelFixups, capacity);
+		}
+		Arrays.fill(_labelPositions, _numberOfLabels, label + 1, -1);
+		Arrays.fill(_labelFixups, _numberOfLabels, label + 1, -1);
+		_numberOfLabels = label + 1;
 	}
 
-	public void executeOpcode(int ip) throws SchemeException {
-		// System.out.println(ip + ": " + _opcodes.get(ip).toString());
-		_opcodes.get(ip).execute();
+	private int addConstant(Object value) {
+		final Integer existing = _constantIndices.get(value);
+		if (existing != null) return existing;
+		if (_numberOfConstants == _constants.length)
+			_constants = Arrays.copyOf(_constants, _numberOfConstants * 2);
+		_constants[_numberOfConstants] = value;
+		_constantIndices.put(value, _numberOfConstants);
+		return _numberOfConstants++;
 	}
 }
@@ -20,8 +20,29 @@ import java.util.*;
 import org.lb.lbjscheme.ast.*;
 
 public final class Compiler {
+	// Builtins that may be compiled inline when called with the given number
+	// of arguments: their ## names cannot be rebound once the environment is
+	// locked, and the init script never rebinds them.
+	private static final Map<Symbol, Integer> _primitiveArities = new HashMap<Symbol, Integer>();
+
+	static {
+		for (String name : new String[] { "##car", "##cdr", "##null?",
+				"##pair?", "##zero?" })
+			_primitiveArities.put(Symbol.fromString(name), 1);
+		for (String name : new String[] { "##cons", "##eq?", "##+", "##-",
+				"##<", "##>", "##<=", "##>=", "##=" })
+			_primitiveArities.put(Symbol.fromString(name), 2);
+	}
+
+	private static final Symbol _eqSymbol = Symbol.fromString("##eq?");
+
 	private final Emitter _emitter;
 
+	// The procedure whose body is being compiled, and the label at the start
+	// of that body, for self tail calls.
+	private LambdaForm _procedure;
+	private int _bodyLabel;
+
 	public Compiler(final Emitter emitter) {
 		_emitter = emitter;
 	}
@@ -32,6 +53,8 @@ public final class Compiler {
 			compileApply((Apply) form, tailPosition);
 		} else if (form instanceof BeginForm) {
 			compileBeginForm((BeginForm) form, tailPosition);
+		} else if (form instanceof CaseForm) {
+			compileCaseForm((CaseForm) form, tailPosition);
 		} else if (form instanceof CallccForm) {
 			compileCallccForm((CallccForm) form);
 		} else if (form instanceof DefineForm) {
@@ -40,10 +63,18 @@ public final class Compiler {
 			compileFuncall((Funcall) form, tailPosition);
 		} else if (form instanceof IfForm) {
 			compileIfForm((IfForm) form, tailPosition);
+		} else if (form instanceof InlinedCall) {
+			compileInlinedCall((InlinedCall) form, tailPosition);
 		} else if (form instanceof LambdaForm) {
 			compileLambdaForm((LambdaForm) form);
 		} else if (form instanceof LiteralSymbol) {
 			compileLiteralSymbol((LiteralSymbol) form);
+		} else if (form instanceof LocalSymbol) {
+			compileLocalSymbol((LocalSymbol) form);
+		} else if (form instanceof LocalSetForm) {
+			compileLocalSetForm((LocalSetForm) form);
+		} else if (form instanceof OrForm) {
+			compileOrForm((OrForm) form, tailPosition);
 		} else if (form instanceof SelfEvaluatingLiteral) {
 			compileSelfEvaluatingLiteral((SelfEvaluatingLiteral) form);
 		} else if (form instanceof SetForm) {
@@ -54,6 +85,28 @@ public final class Compiler {
 		}
 	}
 
+	// Compiles the body of a procedure on its own, starting at the current
+	// position, for emitters that translate single procedures.
+	public void compileBody(final LambdaForm form) throws SchemeException {
+		final int bodyLabel = newLabel();
+		_emitter.setLabelPositionToHere(bodyLabel);
+		compileBody(form, bodyLabel);
+	}
+
+	private void compileBody(final LambdaForm form, final int bodyLabel)
+			throws SchemeException {
+		final LambdaForm outerProcedure = _procedure;
+		final int outerBodyLabel = _bodyLabel;
+		_procedure = form;
+		_bodyLabel = bodyLabel;
+		try {
+			compile(form.getAnalyzedForms(), true);
+		} finally {
+			_procedure = outerProcedure;
+			_bodyLabel = outerBodyLabel;
+		}
+	}
+
 	private void compileApply(final Apply form, final boolean tailPosition)
 			throws SchemeException {
 		if (!tailPosition) _emitter.emitPushAll();
@@ -64,7 +117,7 @@ public final class Compiler {
 		if (tailPosition) {
 			_emitter.emitCall();
 		} else {
-			final String jumpLabel = newLabel();
+			final int jumpLabel = newLabel();
 			_emitter.emitSetContinuationRegisterToLabel(jumpLabel);
 			_emitter.emitCall();
 			_emitter.setLabelPositionToHere(jumpLabel);
@@ -84,6 +137,25 @@ public final class Compiler {
 		throw new SchemeException("TODO: call/cc form not compilable yet");
 	}
 
+	private void compileCaseForm(final CaseForm form,
+			final boolean tailPosition) throws SchemeException {
+		final List<SyntaxTreeObject> clauses = form.getClauses();
+		final int[] labels = new int[clauses.size() + 1];
+		for (int i = 0; i < labels.length; ++i)
+			labels[i] = newLabel();
+		final int doneLabel = newLabel();
+		compile(form.getKey(), false);
+		_emitter.emitSwitch(form, labels);
+		for (int i = 0; i < clauses.size(); ++i) {
+			_emitter.setLabelPositionToHere(labels[i]);
+			compile(clauses.get(i), tailPosition);
+			_emitter.emitJump(doneLabel);
+		}
+		_emitter.setLabelPositionToHere(labels[clauses.size()]);
+		compile(form.getElseClause(), tailPosition);
+		_emitter.setLabelPositionToHere(doneLabel);
+	}
+
 	private void compileDefineForm(final DefineForm form)
 			throws SchemeException {
 		compile(form.getAnalyzedForm(), false);
@@ -92,13 +164,20 @@ public final class Compiler {
 
 	private void compileFuncall(final Funcall form, final boolean tailPosition)
 			throws SchemeException {
+		if (tailPosition && form.getSelfTailCallTarget() == _procedure
+				&& _procedure != null) {
+			compileSelfTailCall(form);
+			return;
+		}
+		if (isPrimitiveCall(form)) {
+			compilePrimitiveCall(form);
+			return;
+		}
+
 		if (!tailPosition) _emitter.emitPushAll();
 		_emitter.emitInitArgs();
 
-		final List<SyntaxTreeObject> params = new ArrayList<SyntaxTreeObject>();
-		for (final SyntaxTreeObject i : form.getParameters())
-			params.add(0, i);
-		for (final SyntaxTreeObject i : params) {
+		for (final SyntaxTreeObject i : form.getParameters()) {
 			compile(i, false);
 			_emitter.emitPushArg();
 		}
@@ -107,7 +186,7 @@ public final class Compiler {
 		if (tailPosition) {
 			_emitter.emitCall();
 		} else {
-			final String jumpLabel = newLabel();
+			final int jumpLabel = newLabel();
 			_emitter.emitSetContinuationRegisterToLabel(jumpLabel);
 			_emitter.emitCall();
 			_emitter.setLabelPositionToHere(jumpLabel);
@@ -115,10 +194,42 @@ public final class Compiler {
 		}
 	}
 
+	// The arguments are stored in the scratch slots first, as they may still
+	// refer to the current values of the parameters.
+	private void compileSelfTailCall(final Funcall form)
+			throws SchemeException {
+		final List<SyntaxTreeObject> parameters = form.getParameters();
+		for (int i = 0; i < parameters.size(); ++i) {
+			compile(parameters.get(i), false);
+			_emitter.emitSetLocal(_procedure.getParameterNames().get(i), 0,
+					_procedure.getScratchIndex() + i);
+		}
+		_emitter.emitSelfTailCall(_procedure, _bodyLabel);
+	}
+
+	private static boolean isPrimitiveCall(final Funcall form) {
+		if (!(form.getProcedure() instanceof LiteralSymbol)) return false;
+		final Integer arity = _primitiveArities.get(((LiteralSymbol) form
+				.getProcedure()).getSymbol());
+		return arity != null && arity == form.getParameters().size();
+	}
+
+	private void compilePrimitiveCall(final Funcall form)
+			throws SchemeException {
+		final List<SyntaxTreeObject> parameters = form.getParameters();
+		for (int i = 0; i < parameters.size() - 1; ++i) {
+			compile(parameters.get(i), false);
+			_emitter.emitPushArg();
+		}
+		compile(parameters.get(parameters.size() - 1), false);
+		_emitter.emitPrimitive(((LiteralSymbol) form.getProcedure())
+				.getSymbol());
+	}
+
 	private void compileIfForm(final IfForm form, final boolean tailPosition)
 			throws SchemeException {
-		final String falseLabel = newLabel();
-		final String doneLabel = newLabel();
+		final int falseLabel = newLabel();
+		final int doneLabel = newLabel();
 		compile(form.getCondition(), false);
 		_emitter.emitJumpIfFalse(falseLabel);
 		compile(form.getThenPart(), tailPosition);
@@ -128,16 +239,33 @@ public final class Compiler {
 		_emitter.setLabelPositionToHere(doneLabel);
 	}
 
+	// Runs the inlined body if the variable is still bound to the procedure
+	// it was taken from, using the inlined ##eq? primitive for the check.
+	private void compileInlinedCall(final InlinedCall form,
+			final boolean tailPosition) throws SchemeException {
+		final int callLabel = newLabel();
+		final int doneLabel = newLabel();
+		compile(form.getProcedure(), false);
+		_emitter.emitPushArg();
+		_emitter.emitLiteral(form.getExpected());
+		_emitter.emitPrimitive(_eqSymbol);
+		_emitter.emitJumpIfFalse(callLabel);
+		compile(form.getInlinedBody(), tailPosition);
+		_emitter.emitJump(doneLabel);
+		_emitter.setLabelPositionToHere(callLabel);
+		compile(form.getCall(), tailPosition);
+		_emitter.setLabelPositionToHere(doneLabel);
+	}
+
 	private void compileLambdaForm(final LambdaForm form)
 			throws SchemeException {
-		final String closureLabel = newLabel();
-		final String afterClosureLabel = newLabel();
+		final int closureLabel = newLabel();
+		final int afterClosureLabel = newLabel();
 
-		_emitter.emitMakeClosure(form.getName(), closureLabel,
-				form.HasRestParameter(), form.getParameterNames());
+		_emitter.emitMakeClosure(form, closureLabel);
 		_emitter.emitJump(afterClosureLabel);
 		_emitter.setLabelPositionToHere(closureLabel);
-		compile(form.getAnalyzedForms(), true);
+		compileBody(form, closureLabel);
 		_emitter.emitContinue();
 		_emitter.setLabelPositionToHere(afterClosureLabel);
 
@@ -147,6 +275,33 @@ public final class Compiler {
 		_emitter.emitGetVariable(form.getSymbol());
 	}
 
+	private void compileLocalSymbol(final LocalSymbol form) {
+		_emitter.emitGetLocal(form.getSymbol(), form.getDepth(),
+				form.getIndex());
+	}
+
+	private void compileLocalSetForm(final LocalSetForm form)
+			throws SchemeException {
+		compile(form.getValue(), false);
+		_emitter.emitSetLocal(form.getTarget(), form.getDepth(),
+				form.getIndex());
+	}
+
+	private void compileOrForm(final OrForm form, final boolean tailPosition)
+			throws SchemeException {
+		final List<SyntaxTreeObject> forms = form.getForms();
+		final int doneLabel = newLabel();
+		for (int i = 0; i < forms.size() - 1; ++i) {
+			final int nextLabel = newLabel();
+			compile(forms.get(i), false);
+			_emitter.emitJumpIfFalse(nextLabel);
+			_emitter.emitJump(doneLabel);
+			_emitter.setLabelPositionToHere(nextLabel);
+		}
+		compile(forms.get(forms.size() - 1), tailPosition);
+		_emitter.setLabelPositionToHere(doneLabel);
+	}
+
 	private void compileSelfEvaluatingLiteral(final SelfEvaluatingLiteral form) {
 		_emitter.emitLiteral(form.getValue());
 	}
@@ -156,9 +311,9 @@ public final class Compiler {
 		_emitter.emitSetVariable(form.getTarget());
 	}
 
-	private int label = 1;
+	private int label = 0;
 
-	private String newLabel() {
-		return "L" + label++;
+	private int newLabel() {
+		return label++;
 	}
 }
@@ -21,23 +21,22 @@ import org.lb.lbjscheme.vm.VirtualMachine;
 
 public final class CompilingEvaluator extends Evaluator {
 	private final Analyzer _analyzer;
-	private final CompiledProgram _program;
-	private final Compiler _compiler;
 	private final VirtualMachine _vm;
+	private int _optimizationLevel = Optimizer.NONE;
 
 	public CompilingEvaluator(final InputPort in, final OutputPort out)
 			throws SchemeException {
 		super(new Environment());
 
 		_analyzer = new Analyzer();
-		_program = new CompiledProgram();
-		_compiler = new Compiler(_program);
+		final CompiledProgram initProgram = new CompiledProgram();
+		final Compiler initCompiler = new Compiler(initProgram);
 
 		final Reader r = new Reader(new InputPort(new StringReader(
 				Environment.getInteractionInitScript())));
 		while (true) {
 			try {
-				_compiler.compile(_analyzer.analyze(r.read()), false);
+				initCompiler.compile(_analyzer.analyze(r.read()), false);
 			} catch (EOFException ex) {
 				break;
 			}
@@ -48,11 +47,21 @@ public final class CompilingEvaluator extends Evaluator {
 		global.setInputPort(in);
 		global.setOutputPort(out);
 		_vm = new VirtualMachine(global);
-		_vm.run(_program);
+		_vm.run(initProgram);
 		global.addRedefinableBuiltins();
 		global.lock();
 	}
 
+	// See VirtualMachine.setJitThreshold()
+	public void setJitThreshold(int value) {
+		_vm.setJitThreshold(value);
+	}
+
+	// See Optimizer
+	public void setOptimizationLevel(int value) {
+		_optimizationLevel = value;
+	}
+
 	@Override
 	public SchemeObject eval(String commands) throws SchemeException {
 		final Reader r = new Reader(new InputPort(new StringReader(commands)));
@@ -66,11 +75,14 @@ public final class CompilingEvaluator extends Evaluator {
 		}
 	}
 
+	// Every form is compiled into a program of its own, which stays
+	// reachable only through the procedures created by it.
 	@Override
 	public SchemeObject eval(SchemeObject o, Environment env)
 			throws SchemeException {
-		final int startIp = _program.getNumberOfStatements();
-		_compiler.compile(_analyzer.analyze(o), false);
-		return _vm.run(_program, startIp);
+		final CompiledProgram program = new CompiledProgram();
+		new Compiler(program).compile(new Optimizer(getGlobalEnvironment(),
+				_optimizationLevel).optimize(_analyzer.analyze(o)), false);
+		return _vm.run(program);
 	}
 }
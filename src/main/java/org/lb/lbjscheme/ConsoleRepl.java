@@ -85,7 +85,7 @@ public final class ConsoleRepl {
 		final InputPort inputPort = new InputPort(new InputStreamReader(
 				System.in));
 		final OutputPort outputPort = new OutputPort(new OutputStreamWriter(
-				System.out));
+				System.out), interactiveRepl);
 		final Environment global = Environment.newInteractionEnvironment(null);
 		global.setInputPort(inputPort);
 		global.setOutputPort(outputPort);
@@ -93,13 +93,22 @@ public final class ConsoleRepl {
 				global) : useCompilingEvaluator ? new CompilingEvaluator(
 				inputPort, outputPort) : new InterpretingEvaluator(global);
 
-		for (String fileName : getFileNames(args)) {
-			final FileReader r = new FileReader(fileName);
-			repl(r, e, false);
-			r.close();
-		}
+		try {
+			for (String fileName : getFileNames(args)) {
+				final InputPort input = InputPort.openFile(fileName);
+				repl(input, outputPort, e, false);
+				input.close();
+			}
 
-		if (interactiveRepl) repl(new InputStreamReader(System.in), e, true);
+			if (interactiveRepl)
+				repl(new InputPort(new InputStreamReader(System.in)),
+						outputPort, e, true);
+		} finally {
+			// Also runs when an Error such as StackOverflowError ends the
+			// program, and takes care of files the program did not close
+			outputPort.flush();
+			e.getGlobalEnvironment().flushOutputPorts();
+		}
 	}
 
 	private static boolean hasArgument(String[] args, String arg) {
@@ -115,27 +124,35 @@ public final class ConsoleRepl {
 		return ret;
 	}
 
-	private static void repl(final java.io.Reader input, final Evaluator e,
-			final boolean printPromptAndResults) throws IOException {
-		final Reader r = new Reader(new InputPort(input));
+	private static void repl(final InputPort input,
+			final OutputPort output, final Evaluator e,
+			final boolean printPromptAndResults) throws IOException,
+			SchemeException {
+		final Reader r = new Reader(input);
 		while (true) {
 			try {
 				if (printPromptAndResults) {
+					output.flush();
 					System.out.print("> ");
 					System.out.flush();
 				}
 				final SchemeObject result = e.eval(r.read());
 				if (!printPromptAndResults) continue;
+				output.flush();
 				if (result.isSymbol()
 						&& result.toString(true).equals("undefined")) continue;
-				System.out.println(result);
+				result.write(System.out, false);
+				System.out.println();
 			} catch (EOFException ex) {
 				break;
 			} catch (SchemeException ex) {
+				output.flush();
 				System.out.println(ex.getMessage());
-				while (input.ready())
-					input.read();
+				// The rest of a file is not run after an error
+				if (!printPromptAndResults) break;
+				input.discardRestOfLine();
 			} catch (Exception ex) {
+				output.flush();
 				System.out.println("Internal error:");
 				System.out.println(ex.getMessage());
 				ex.printStackTrace();
@@ -16,7 +16,8 @@
 
 package org.lb.lbjscheme;
 
-import java.util.List;
+import org.lb.lbjscheme.ast.CaseForm;
+import org.lb.lbjscheme.ast.LambdaForm;
 
 public interface Emitter {
 	public void emitCall();
@@ -25,30 +26,41 @@ public interface Emitter {
 
 	public void emitDefineVariable(final Symbol variable);
 
+	public void emitGetLocal(final Symbol variable, int depth, int index);
+
 	public void emitGetVariable(final Symbol variable);
 
 	public void emitInitArgs();
 
-	public void emitJump(String doneLabel);
+	public void emitJump(int doneLabel);
 
-	public void emitJumpIfFalse(String label);
+	public void emitJumpIfFalse(int label);
 
 	public void emitLiteral(final SchemeObject value);
 
-	public void emitMakeClosure(String string, String closureLabel,
-			boolean hasRestParameter, List<Symbol> parameterNames);
+	public void emitMakeClosure(LambdaForm form, int closureLabel);
 
 	public void emitPopAll();
 
+	public void emitPrimitive(final Symbol primitive);
+
 	public void emitPushAll();
 
 	public void emitPushArg();
 
+	public void emitSelfTailCall(LambdaForm form, int bodyLabel);
+
 	public void emitSetArgsToValueRegister();
 
-	public void emitSetContinuationRegisterToLabel(final String label);
+	public void emitSetContinuationRegisterToLabel(final int label);
+
+	public void emitSetLocal(final Symbol variable, int depth, int index);
 
 	public void emitSetVariable(final Symbol variable);
 
-	public void setLabelPositionToHere(final String label);
+	// Jumps to the label of the clause of form selected by the value
+	// register; the last label is the one of the else clause.
+	public void emitSwitch(CaseForm form, int[] labels);
+
+	public void setLabelPositionToHere(final int label);
 }
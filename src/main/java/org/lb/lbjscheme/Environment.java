@@ -17,15 +17,33 @@
 package org.lb.lbjscheme;
 
 import java.util.*;
+import org.lb.lbjscheme.ast.LambdaForm;
 import org.lb.lbjscheme.builtins.*;
 
 public final class Environment extends SchemeObject {
+	private static Environment _reportTemplate;
+	private static Environment _interactionTemplate;
+	private static final Object _templateLock = new Object();
+
 	private final Environment _outer;
-	private final HashMap<Symbol, SchemeObject> _values = new HashMap<>();
+	private final HashMap<Symbol, Cell> _values = new HashMap<>();
 	private boolean _locked;
 	private InputPort _currentInputPort;
 	private OutputPort _currentOutputPort;
 
+	// Ports opened by open-output-file are fully buffered, so they are
+	// remembered here until closed to be flushed when the program ends
+	private final Set<OutputPort> _openOutputPorts = new LinkedHashSet<>();
+
+	// Syntax trees of the lambdas captured by this environment per Analyzer,
+	// created on first use. Syntax trees cache state bound to the
+	// environment they run in, and each Analyzer sees its own macros, so
+	// they are shared between neither. Guarded by _analyzedLambdasLock of
+	// the outermost environment, so that every environment of a program
+	// uses the same lock; the lock of any other environment is unused.
+	private Map<Analyzer, Map<Pair, LambdaForm>> _analyzedLambdas;
+	private final Object _analyzedLambdasLock = new Object();
+
 	public Environment() {
 		_outer = null;
 	}
@@ -40,14 +58,24 @@ public final class Environment extends SchemeObject {
 	}
 
 	public SchemeObject get(Symbol name) throws SchemeException {
-		if (_values.containsKey(name)) return _values.get(name);
-		if (_outer != null) return _outer.get(name);
+		return getCell(name).getValue();
+	}
+
+	public Cell getCell(Symbol name) throws SchemeException {
+		for (Environment e = this; e != null; e = e._outer) {
+			final Cell cell = e._values.get(name);
+			if (cell != null) return cell;
+		}
 		throw new SchemeException("Unknown symbol " + name.toString());
 	}
 
 	public void define(Symbol name, SchemeObject value) throws SchemeException {
 		assertSymbolMayBeRedefined(name);
-		_values.put(name, value);
+		final Cell cell = _values.get(name);
+		if (cell == null)
+			_values.put(name, new Cell(this, name, value));
+		else
+			cell.define(value);
 	}
 
 	private void assertSymbolMayBeRedefined(Symbol name) throws SchemeException {
@@ -59,27 +87,43 @@ public final class Environment extends SchemeObject {
 	private boolean mayBeRedefined(Symbol name) {
 		final String nameAsString = name.toString();
 
-		switch (nameAsString) {
+		if (isSpecialFormName(nameAsString)) return false;
+		if (_locked && isProtectedName(nameAsString)
+				&& _values.containsKey(name)) return false;
+		return true;
+	}
+
+	// Whether the binding of name in this environment can never change,
+	// which holds for the ## variables once the environment is locked.
+	public boolean isConstant(Symbol name) {
+		return _locked && isProtectedName(name.toString())
+				&& _values.containsKey(name);
+	}
+
+	static boolean isProtectedName(String name) {
+		return name.startsWith("##") && !name.startsWith("##gensym##");
+	}
+
+	static boolean isSpecialFormName(String name) {
+		switch (name) {
 		case "if":
 		case "define":
 		case "set!":
 		case "lambda":
 		case "quote":
 		case "begin":
-			return false;
-		default:
-			if (nameAsString.startsWith("##gensym##")) return true;
-			if (_locked && nameAsString.startsWith("##")
-					&& _values.containsKey(name)) return false;
 			return true;
+		default:
+			return false;
 		}
 	}
 
 	public void set(Symbol name, SchemeObject value) throws SchemeException {
 		assertSymbolMayBeRedefined(name);
 
-		if (_values.containsKey(name))
-			_values.put(name, value);
+		final Cell cell = _values.get(name);
+		if (cell != null)
+			cell.define(value);
 		else if (_outer != null)
 			_outer.set(name, value);
 		else
@@ -134,6 +178,38 @@ public final class Environment extends SchemeObject {
 			_outer.setOutputPort(value);
 	}
 
+	public void addOpenOutputPort(OutputPort value) {
+		if (_outer != null) {
+			_outer.addOpenOutputPort(value);
+			return;
+		}
+		synchronized (_openOutputPorts) {
+			final Iterator<OutputPort> i = _openOutputPorts.iterator();
+			while (i.hasNext())
+				if (i.next().isClosed()) i.remove();
+			_openOutputPorts.add(value);
+		}
+	}
+
+	// Flushes the current output port and all output files still open
+	public void flushOutputPorts() throws SchemeException {
+		if (_outer != null) {
+			_outer.flushOutputPorts();
+			return;
+		}
+		if (_currentOutputPort != null) _currentOutputPort.flush();
+		synchronized (_openOutputPorts) {
+			final Iterator<OutputPort> i = _openOutputPorts.iterator();
+			while (i.hasNext()) {
+				final OutputPort port = i.next();
+				if (port.isClosed())
+					i.remove();
+				else
+					port.flush();
+			}
+		}
+	}
+
 	public static Environment newNullEnvironment(final int version)
 			throws SchemeException {
 		if (version != 5)
@@ -147,24 +223,88 @@ public final class Environment extends SchemeObject {
 		if (version != 5)
 			throw new SchemeException(
 					"scheme-report-environment: Only version 5 supported");
-		final Environment ret = new Environment(global);
+		return getReportTemplate().copyTemplate(global);
+	}
+
+	public static Environment newInteractionEnvironment(final Environment global)
+			throws SchemeException {
+		return getInteractionTemplate().copyTemplate(global);
+	}
+
+	private static Environment getReportTemplate() throws SchemeException {
+		synchronized (_templateLock) {
+			if (_reportTemplate == null)
+				_reportTemplate = newTemplate(getReportInitScript());
+			return _reportTemplate;
+		}
+	}
+
+	private static Environment getInteractionTemplate()
+			throws SchemeException {
+		synchronized (_templateLock) {
+			if (_interactionTemplate == null)
+				_interactionTemplate = newTemplate(getInteractionInitScript());
+			return _interactionTemplate;
+		}
+	}
+
+	private static Environment newTemplate(String initScript)
+			throws SchemeException {
+		final Environment ret = new Environment();
 		ret.addBuiltins();
-		new InterpretingEvaluator(ret).eval(getReportInitScript());
+		new InterpretingEvaluator(ret).eval(initScript);
 		ret.addRedefinableBuiltins();
 		ret.lock();
 		return ret;
 	}
 
-	public static Environment newInteractionEnvironment(final Environment global)
-			throws SchemeException {
+	// Templates are never handed out. Each copy gets its own builtins (some of
+	// them are bound to the environment for port access) and its own lambdas
+	// and macros capturing the copy, so copies are fully independent.
+	private Environment copyTemplate(Environment global) throws SchemeException {
 		final Environment ret = new Environment(global);
 		ret.addBuiltins();
-		new InterpretingEvaluator(ret).eval(getInteractionInitScript());
-		ret.addRedefinableBuiltins();
+
+		final IdentityHashMap<SchemeObject, SchemeObject> copies = new IdentityHashMap<>();
+		for (Map.Entry<Symbol, Cell> e : ret._values.entrySet()) {
+			final SchemeObject original = _values.get(e.getKey()).getValue();
+			if (original instanceof Builtin)
+				copies.put(original, e.getValue().getValue());
+		}
+		for (Map.Entry<Symbol, Cell> e : _values.entrySet())
+			ret.define(e.getKey(), copyValue(e.getValue().getValue(), ret, copies));
+
 		ret.lock();
 		return ret;
 	}
 
+	private SchemeObject copyValue(SchemeObject value, Environment target,
+			IdentityHashMap<SchemeObject, SchemeObject> copies)
+			throws SchemeException {
+		SchemeObject ret = copies.get(value);
+		if (ret != null) return ret;
+
+		if (value instanceof Lambda && ((Lambda) value).getCaptured() == this) {
+			final Lambda l = (Lambda) value;
+			ret = new Lambda(l.getName(), l.getParameterNames(),
+					l.hasRestParameter(), l.getForms(), target);
+		} else if (value instanceof Macro
+				&& ((Macro) value).getCaptured() == this) {
+			final Macro m = (Macro) value;
+			ret = new Macro(m.getName(), m.getParameterNames(),
+					m.hasRestParameter(), m.getForms(), target);
+		} else if (value instanceof Lambda || value instanceof Macro
+				|| value instanceof Builtin || value instanceof Pair
+				|| value instanceof Vector || value instanceof SchemeString)
+			throw new SchemeException("Internal error: Value "
+					+ value.toString() + " can not be copied into a new environment");
+		else
+			ret = value;
+
+		copies.put(value, ret);
+		return ret;
+	}
+
 	public static String getReportInitScript() {
 		return _reportInitScript;
 	}
@@ -173,10 +313,36 @@ public final class Environment extends SchemeObject {
 		return _reportInitScript + " " + _interactionInitScript;
 	}
 
+	LambdaForm analyzeLambda(Lambda l, Analyzer analyzer)
+			throws SchemeException {
+		Environment global = this;
+		while (global._outer != null)
+			global = global._outer;
+		synchronized (global._analyzedLambdasLock) {
+			if (_analyzedLambdas == null)
+				_analyzedLambdas = new WeakHashMap<>();
+			Map<Pair, LambdaForm> forms = _analyzedLambdas.get(analyzer);
+			if (forms == null) {
+				forms = new WeakHashMap<>();
+				_analyzedLambdas.put(analyzer, forms);
+			}
+			LambdaForm ret = forms.get(l.getForms());
+			if (ret == null) {
+				ret = analyzer.analyzeLambda(l);
+				forms.put(l.getForms(), ret);
+			}
+			return ret;
+		}
+	}
+
 	public void lock() {
 		_locked = true;
 	}
 
+	public boolean isLocked() {
+		return _locked;
+	}
+
 	public void unlock() {
 		_locked = false;
 	}
@@ -184,7 +350,11 @@ public final class Environment extends SchemeObject {
 	public void addBuiltins() throws SchemeException {
 		addBuiltin(new Acos());
 		addBuiltin(new Add());
+		addBuiltin(new Append());
 		addBuiltin(new Asin());
+		addBuiltin(new Assoc());
+		addBuiltin(new Assq());
+		addBuiltin(new Assv());
 		addBuiltin(new Atan());
 		addBuiltin(new BooleanP());
 		addBuiltin(new Car());
@@ -204,12 +374,16 @@ public final class Environment extends SchemeObject {
 		addBuiltin(new Div());
 		addBuiltin(new EofObjectP());
 		addBuiltin(new EqP());
+		addBuiltin(new EqualP());
+		addBuiltin(new EqvP());
 		addBuiltin(new Eval());
 		addBuiltin(new ExactP());
 		addBuiltin(new ExactToInexact());
 		addBuiltin(new Exp());
 		addBuiltin(new Floor());
+		addBuiltin(new FlushOutput(this));
 		addBuiltin(new Ge());
+		addBuiltin(new Gensym());
 		addBuiltin(new Gt());
 		addBuiltin(new ImagPart());
 		addBuiltin(new InexactP());
@@ -219,11 +393,23 @@ public final class Environment extends SchemeObject {
 		addBuiltin(new IntegerToChar());
 		addBuiltin(new InteractionEnvironment(this));
 		addBuiltin(new Le());
+		addBuiltin(new Length());
+		addBuiltin(new ListBuiltin());
+		addBuiltin(new ListRef());
+		addBuiltin(new ListTail());
+		addBuiltin(new ListToString());
+		addBuiltin(new ListToVector());
 		addBuiltin(new Log());
 		addBuiltin(new Lt());
 		addBuiltin(new MakeString());
 		addBuiltin(new MakeVector());
+		addBuiltin(new Max());
+		addBuiltin(new Member());
+		addBuiltin(new Memq());
+		addBuiltin(new Memv());
+		addBuiltin(new Min());
 		addBuiltin(new Mul());
+		addBuiltin(new Not());
 		addBuiltin(new NullEnvironment());
 		addBuiltin(new NullP());
 		addBuiltin(new NumberP());
@@ -231,7 +417,7 @@ public final class Environment extends SchemeObject {
 		addBuiltin(new NumEq());
 		addBuiltin(new Numerator());
 		addBuiltin(new OpenInputFile());
-		addBuiltin(new OpenOutputFile());
+		addBuiltin(new OpenOutputFile(this));
 		addBuiltin(new OutputPortP());
 		addBuiltin(new PairP());
 		addBuiltin(new PeekChar(this));
@@ -244,37 +430,57 @@ public final class Environment extends SchemeObject {
 		addBuiltin(new RealP());
 		addBuiltin(new RealPart());
 		addBuiltin(new Remainder());
+		addBuiltin(new Reverse());
 		addBuiltin(new Round());
 		addBuiltin(new SchemeReportEnvironment(this));
 		addBuiltin(new SetCar());
 		addBuiltin(new SetCdr());
 		addBuiltin(new Sin());
+		addBuiltin(new StringAppend());
+		addBuiltin(new StringCopy());
+		addBuiltin(new StringFill());
 		addBuiltin(new StringLength());
 		addBuiltin(new StringP());
 		addBuiltin(new StringRef());
 		addBuiltin(new StringSet());
+		addBuiltin(new StringToList());
 		addBuiltin(new StringToNumber());
 		addBuiltin(new StringToSymbol());
 		addBuiltin(new Sub());
+		addBuiltin(new Substring());
 		addBuiltin(new SymbolP());
 		addBuiltin(new SymbolToString());
 		addBuiltin(new SysCall());
 		addBuiltin(new SysError());
 		addBuiltin(new SysExpt());
 		addBuiltin(new SysGetMethodNames());
-		addBuiltin(new SysSetCurrentInputPort(this));
 		addBuiltin(new SysNew());
+		addBuiltin(new SysSetCurrentInputPort(this));
 		addBuiltin(new SysSetCurrentOutputPort(this));
 		addBuiltin(new SysSqrt());
 		addBuiltin(new Tan());
 		addBuiltin(new Truncate());
+		addBuiltin(new VectorFill());
 		addBuiltin(new VectorLength());
 		addBuiltin(new VectorP());
 		addBuiltin(new VectorRef());
 		addBuiltin(new VectorSet());
+		addBuiltin(new VectorToList());
 		addBuiltin(new Write(this));
 		addBuiltin(new WriteChar(this));
 		addBuiltin(new ZeroP());
+		for (String ci : new String[] { "", "-ci" }) {
+			addBuiltin(new StringCompare("##string" + ci + "=?", ci.length() > 0,
+					StringCompare.EQ));
+			addBuiltin(new StringCompare("##string" + ci + "<?", ci.length() > 0,
+					StringCompare.LT));
+			addBuiltin(new StringCompare("##string" + ci + ">?", ci.length() > 0,
+					StringCompare.GT));
+			addBuiltin(new StringCompare("##string" + ci + "<=?",
+					ci.length() > 0, StringCompare.LE));
+			addBuiltin(new StringCompare("##string" + ci + ">=?",
+					ci.length() > 0, StringCompare.GE));
+		}
 	}
 
 	private void addBuiltin(Builtin builtin) throws SchemeException {
@@ -298,8 +504,14 @@ public final class Environment extends SchemeObject {
 		}
 	}
 
-	// HACK: Written in Scheme for simplicity. Re-write as builtins for
-	// performance and better error messages! This code is horribly inefficient!
+	// The list and string procedures are builtins. What is left in Scheme:
+	// - Procedures taking a procedure argument (map, for-each, filter, the
+	// call-with-* family...): a builtin cannot call back into a procedure,
+	// as every evaluator runs lambdas its own way.
+	// - The c[ad]r combinations and the char and numeric helpers, which are
+	// short enough for the optimizer to inline.
+	// - The macros for the derived forms, which the analyzer handles
+	// natively as long as they are not redefined.
 
 	private final static String _interactionInitScript = "(define (flip f) (lambda (a b) (f b a)))"
 			+ "(define (##reduce f ridentity lst) (if (##null? lst) ridentity (##fold f (##car lst) (##cdr lst))))"
@@ -356,14 +568,11 @@ public final class Environment extends SchemeObject {
 			+ "(define (##cddadr x) (##cdr (##cdr (##car (##cdr x)))))"
 			+ "(define (##cdddar x) (##cdr (##cdr (##cdr (##car x)))))"
 			+ "(define (##cddddr x) (##cdr (##cdr (##cdr (##cdr x)))))"
-			+ "(define (##list . lst) lst)"
 			+ "(define (##positive? x) (##> x 0))"
 			+ "(define (##negative? x) (##< x 0))"
 			+ "(define (##abs x) (if (##positive? x) x (##- 0 x)))"
 			+ "(define (##modulo a b) (define (sgn x) (if (##>= x 0) 1 -1)) (if (##= (sgn a) (sgn b)) (##remainder a b) (##+ b (##remainder a b))))"
-			+ "(define (##not x) (if x #f #t))"
 			+ "(define (##fold f acc lst) (if (##null? lst) acc (##fold f (f (##car lst) acc) (##cdr lst))))"
-			+ "(define (##reverse lst) (##fold ##cons '() lst))"
 			+ "(define (##map1 f lst) (##reverse (##fold (lambda (i acc) (##cons (f i) acc)) '() lst)))"
 			+ "(define (##for-each f lst) (##fold (lambda (i acc) (f i) 'undefined) 'undefined lst))"
 			+ "(define (##even? x) (##zero? (##remainder x 2)))"
@@ -374,7 +583,6 @@ public final class Environment extends SchemeObject {
 			+ "(define (##lcm . args) (if (##null? args) 1 (##abs (##fold ##lcm2 (##car args) (##cdr args)))))"
 			+ "(define (##every f lst) (if (##null? lst) #t (if (f (##car lst)) (##every f (##cdr lst)) #f)))"
 			+ "(define (##any f lst) (if (##null? lst) #f (if (f (##car lst)) #t (##any f (##cdr lst)))))"
-			+ "(define (##length lst) (define (iter l acc) (if (##null? l) acc (iter (##cdr l) (##+ acc 1)))) (iter lst 0))"
 			+ "(define (##char=? a b) (##= (##char->integer a) (##char->integer b)))"
 			+ "(define (##char>? a b) (##> (##char->integer a) (##char->integer b)))"
 			+ "(define (##char<? a b) (##< (##char->integer a) (##char->integer b)))"
@@ -392,50 +600,19 @@ public final class Environment extends SchemeObject {
 			+ "(define (##char-alphabetic? x) (if (##char-upper-case? x) #t (##char-lower-case? x)))"
 			+ "(define (##char-numeric? x) (if (##>= (##char->integer x) 48) (##<= (##char->integer x) 57) #f))"
 			+ "(define (##char-whitespace? x) (if (##char=? x #\\space) #t (if (##char=? x #\\tab) #t (if (##char=? x #\\newline) #t (##char=? x #\\cr)))))"
-			+ "(define (##append . lists) (define (add-list lst acc) (if (##null? lst) acc (add-list (##cdr lst) (##cons (##car lst) acc)))) (define (iter rest-lists acc) (if (##null? rest-lists) acc (iter (##cdr rest-lists) (add-list (##car rest-lists) acc)))) (if (##null? lists) lists (let* ((reversed (##reverse lists)) (last-list (##car reversed)) (rest-lists (##map1 ##reverse (##cdr reversed)))) (iter rest-lists last-list))))"
-			+ "(define (##string=? a b) (define (check i max) (if (##>= i max) #t (if (##char=? (##string-ref a i) (##string-ref b i)) (check (##+ i 1) max) #f))) (if (##= (##string-length a) (##string-length b)) (check 0 (##string-length a)) #f))"
-			+ "(define (##string-ci=? a b) (define (check i max) (if (##>= i max) #t (if (##char-ci=? (##string-ref a i) (##string-ref b i)) (check (##+ i 1) max) #f))) (if (##= (##string-length a) (##string-length b)) (check 0 (##string-length a)) #f))"
-			+ "(define (##string>? a b) (define (check i max-a max-b) (if (##>= i max-a) #f (if (##>= i max-b) #t (if (##char=? (##string-ref a i) (##string-ref b i)) (check (##+ i 1) max-a max-b) (##char>? (##string-ref a i) (##string-ref b i)))))) (check 0 (##string-length a) (##string-length b)))"
-			+ "(define (##string-ci>? a b) (define (check i max-a max-b) (if (##>= i max-a) #f (if (##>= i max-b) #t (if (##char-ci=? (##string-ref a i) (##string-ref b i)) (check (##+ i 1) max-a max-b) (##char-ci>? (##string-ref a i) (##string-ref b i)))))) (check 0 (##string-length a) (##string-length b)))"
-			+ "(define (##string<? a b) (if (##string=? a b) #f (##not (##string>? a b))))"
-			+ "(define (##string-ci<? a b) (if (##string-ci=? a b) #f (##not (##string-ci>? a b))))"
-			+ "(define (##string>=? a b) (##not (##string<? a b)))"
-			+ "(define (##string<=? a b) (##not (##string>? a b)))"
-			+ "(define (##string-ci>=? a b) (##not (##string-ci<? a b)))"
-			+ "(define (##string-ci<=? a b) (##not (##string-ci>? a b)))"
-			+ "(define (##string->list x) (define (iter i max acc) (if (##>= i max) (##reverse acc) (iter (##+ i 1) max (##cons (##string-ref x i) acc)))) (iter 0 (##string-length x) '()))"
-			+ "(define (##list->string lst) (define (iter i l acc) (if (##null? l) acc (begin (##string-set! acc i (##car l)) (iter (##+ i 1) (##cdr l) acc)))) (iter 0 lst (##make-string (##length lst))))"
 			+ "(define (##string . values) (##list->string values))"
-			+ "(define (##substring s start end) (##list->string (take (##list-tail (##string->list s) start) (##- end start))))"
-			+ "(define (##string-append . strings) (##list->string (##fold ##append '() (##map1 ##string->list (##reverse strings)))))"
-			+ "(define (##string-copy s) (##list->string (##string->list s)))"
-			+ "(define (##string-fill! s c) (define (iter i max) (if (##>= i max) s (begin (##string-set! s i c) (iter (##+ i 1) max)))) (iter 0 (##string-length s)))"
 			+ "(defmacro letrec (lst . forms) (##cons (##append '(lambda) (##list (##map1 ##car lst)) (##map1 (lambda (i) (##list 'set! (##car i) (##cadr i))) lst) forms) (##map1 (lambda (x) #f) lst)))"
 			+ "(defmacro let data (if (##symbol? (##car data)) (##cons 'letrec (##cons (##list (##cons (##car data) (##list (##cons 'lambda (##cons (##map1 ##car (##cadr data)) (##cddr data)))))) (##list (##cons (##car data) (##map1 ##cadr (##cadr data)))))) (##cons (##cons 'lambda (##cons (##map1 ##car (##car data)) (##cdr data))) (##map1 ##cadr (##car data)))))"
 			+ "(defmacro let* (lst . forms) (if (##null? lst) (##cons 'begin forms) (##list 'let (##list (##car lst)) (##cons 'let* (##cons (##cdr lst) forms)))))"
-			+ "(defmacro cond list-of-forms (define (expand-cond lst) (if (##null? lst) #f (if (##eq? (##caar lst) 'else) (##cons 'begin (##cdar lst)) (##list 'if (##caar lst) (##cons 'begin (##cdar lst)) (expand-cond (##cdr lst)))))) (expand-cond list-of-forms))"
+			+ "(defmacro cond list-of-forms (define (expand-cond lst) (if (##null? lst) #f (if (##eq? (##caar lst) 'else) (##cons 'begin (##cdar lst)) (if (if (##null? (##cdar lst)) #t (##eq? (##cadar lst) '=>)) (let ((value (##gensym))) (##list 'let (##list (##list value (##caar lst))) (##list 'if value (if (##null? (##cdar lst)) value (##list (##car (##cddar lst)) value)) (expand-cond (##cdr lst))))) (##list 'if (##caar lst) (##cons 'begin (##cdar lst)) (expand-cond (##cdr lst))))))) (expand-cond list-of-forms))"
 			+ "(defmacro and list-of-forms (if (##null? list-of-forms) #t (if (##null? (##cdr list-of-forms)) (##car list-of-forms) (##list 'if (##car list-of-forms) (##append '(and) (##cdr list-of-forms)) #f))))"
 			+ "(defmacro quasiquote (x) (if (##pair? x) (cond ((##eq? (##car x) 'unquote) (##cadr x)) ((and (##pair? (##car x)) (##eq? (##caar x) 'unquote-splicing)) (##list '##append (##cadar x) (##list 'quasiquote (##cdr x)))) (else (##list '##cons (##list 'quasiquote (##car x)) (##list 'quasiquote (##cdr x))))) (##list 'quote x)))"
 			+ "(define (##make-promise f) (let ((value #f) (forced #f)) (lambda () (if forced value (begin (set! value (f)) (set! forced #t) value)))))"
 			+ "(define (##force obj) (obj))"
 			+ "(defmacro delay (expression) (##list '##make-promise (##list 'lambda '() expression)))"
-			+ "(define (##min . args) (define (min-of-two a b) (if (##< a b) a b)) (let ((l (##length args))) (cond ((##zero? l) (##error \"min called without parameters\")) ((##= 1 l) (##car args)) (else (let ((ret (##fold min-of-two (##car args) (##cdr args)))) (if (##any ##inexact? args) (##exact->inexact ret) ret))))))"
-			+ "(define (##max . args) (define (max-of-two a b) (if (##> a b) a b)) (let ((l (##length args))) (cond ((##zero? l) (##error \"max called without parameters\")) ((##= 1 l) (##car args)) (else (let ((ret (##fold max-of-two (##car args) (##cdr args)))) (if (##any ##inexact? args) (##exact->inexact ret) ret))))))"
-			+ "(defmacro or args (if (##null? (##cdr args)) (##car args) (##list 'aif (##car args) 'it (##cons 'or (##cdr args)))))"
-			+ "(define (##eqv? a b) (define (bool=? a b) (if a b (##not b))) (cond ((##eq? a b) #t) ((and (##number? a) (##number? b)) (and (bool=? (##exact? a) (##exact? b)) (##= a b))) ((and (##char? a) (##char? b)) (##char=? a b)) ((and (##boolean? a) (##boolean? b)) (bool=? a b)) (else #f)))"
-			+ "(define (##equal? a b) (cond ((##eqv? a b) #t) ((and (##string? a) (##string? b)) (##string=? a b)) ((and (##pair? a) (##pair? b)) (if (##equal? (##car a) (##car b)) (##equal? (##cdr a) (##cdr b)) #f)) ((and (##vector? a) (##vector? b)) (##equal? (##vector->list a) (##vector->list b))) (else #f)))"
-			+ "(define (##memq obj lst) (if (##pair? lst) (if (##eq? obj (##car lst)) lst (##memq obj (##cdr lst))) #f))"
-			+ "(define (##memv obj lst) (if (##pair? lst) (if (##eqv? obj (##car lst)) lst (##memv obj (##cdr lst))) #f))"
-			+ "(define (##member obj lst) (if (##pair? lst) (if (##equal? obj (##car lst)) lst (##member obj (##cdr lst))) #f))"
-			+ "(define (##assq obj lst) (if (##pair? lst) (if (##eq? obj (##caar lst)) (##car lst) (##assq obj (##cdr lst))) #f))"
-			+ "(define (##assv obj lst) (if (##pair? lst) (if (##eqv? obj (##caar lst)) (##car lst) (##assv obj (##cdr lst))) #f))"
-			+ "(define (##assoc obj lst) (if (##pair? lst) (if (##equal? obj (##caar lst)) (##car lst) (##assoc obj (##cdr lst))) #f))"
+			+ "(defmacro or args (if (##null? args) #f (if (##null? (##cdr args)) (##car args) (##list 'aif (##car args) 'it (##cons 'or (##cdr args))))))"
 			+ "(defmacro case (exp . clauses) (define (make-thunk-symbol index) (##string->symbol (##string-append \"thunk\" (##number->string index)))) (define (expand-case-thunks c index) (if (##null? c) '() (##cons (##list (make-thunk-symbol index) (##cons 'lambda (##cons '() (##cdar c)))) (expand-case-thunks (##cdr c) (##+ index 1))))) (define (expand-case-cond c index) (if (##null? c) '() (##cons (##list (if (##eq? (##caar c) 'else) 'else (##list '##memv 'key (##list 'quote (##caar c)))) (##list (make-thunk-symbol index))) (expand-case-cond (##cdr c) (##+ index 1))))) (##list 'let (##cons (##list 'key exp) (expand-case-thunks clauses 1)) (##cons 'cond (expand-case-cond clauses 1))))"
-			+ "(define ##gensym (let ((sym 0)) (lambda () (set! sym (##+ sym 1)) (##string->symbol (##string-append \"##gensym##\" (##number->string sym))))))"
 			+ "(defmacro do (vars pred . body) (define (caddr-or-car x) (if (##null? (##cddr x)) (##car x) (##caddr x))) (let ((symbol (##gensym))) `(let ((,symbol '())) (set! ,symbol (lambda ,(##map1 ##car vars) (if ,(##car pred) ,(##cadr pred) ,(##cons 'begin (##append body (##list (##cons symbol (##map1 caddr-or-car vars)))))))) ,(##cons symbol (##map1 ##cadr vars))))) "
-			+ "(define (##vector-fill! v obj) (define (iter i max) (if (##>= i max) v (begin (##vector-set! v i obj) (iter (##+ i 1) max)))) (iter 0 (##vector-length v)))"
-			+ "(define (##list->vector lst) (define (iter v i vals) (##vector-set! v i (##car vals)) (if (##zero? i) v (iter v (##- i 1) (##cdr vals)))) (let ((v (##make-vector (##length lst)))) (if (##zero? (##vector-length v)) v (iter v (##- (##vector-length v) 1) (##reverse lst)))))"
-			+ "(define (##vector->list v) (define (iter i acc) (if (##< i 0) acc (iter (##- i 1) (##cons (##vector-ref v i) acc)))) (iter (##- (##vector-length v) 1) '()))"
 			+ "(define (##vector . lst) (##list->vector lst))"
 			+ "(define (##call-with-output-file filename thunk) (let* ((f (##open-output-file filename)) (output (thunk f))) (##close-output-port f) output))"
 			+ "(define (##with-output-to-file filename proc) (let ((f (##open-output-file filename)) (old-output (##current-output-port))) (sys:set-current-output-port f) (let ((output (proc))) (sys:set-current-output-port old-output) (##close-output-port f) output)))"
@@ -457,9 +634,7 @@ public final class Environment extends SchemeObject {
 			+ "(define (##call/cc f) #f)"// (sys:call/cc f))"
 			+ "(define (##error . args) (sys:error args))"
 			+ "(define (##port? x) (if (##input-port? x) #t (##output-port? x)))"
-			+ "(define (##map f . lists) (define (iter acc ls) (if (##any ##null? ls) (##reverse acc) (iter (##cons (##apply f (##map1 ##car ls)) acc) (##map1 ##cdr ls)))) (iter '() lists))"
-			+ "(define (##list-tail lst k) (if (##zero? k) lst (##list-tail (##cdr lst) (##- k 1))))"
-			+ "(define (##list-ref lst k) (##car (##list-tail lst k)))";
+			+ "(define (##map f . lists) (define (iter acc ls) (if (##any ##null? ls) (##reverse acc) (iter (##cons (##apply f (##map1 ##car ls)) acc) (##map1 ##cdr ls)))) (iter '() lists))";
 
 	@Override
 	public Object toJavaObject() throws SchemeException {
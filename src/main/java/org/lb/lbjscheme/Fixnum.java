@@ -16,14 +16,26 @@
 
 package org.lb.lbjscheme;
 
+import java.math.BigInteger;
+
 public final class Fixnum extends SchemeNumber {
-	private final int _value;
+	private static final int _cacheLow = -1024;
+	private static final int _cacheHigh = 65535;
+	private static final Fixnum[] _cache = new Fixnum[_cacheHigh - _cacheLow
+			+ 1];
+
+	static {
+		for (int i = 0; i < _cache.length; ++i)
+			_cache[i] = new Fixnum(i + _cacheLow);
+	}
 
-	public Fixnum(int value) {
+	private final long _value;
+
+	private Fixnum(long value) {
 		_value = value;
 	}
 
-	public int getValue() {
+	public long getValue() {
 		return _value;
 	}
 
@@ -34,7 +46,7 @@ public final class Fixnum extends SchemeNumber {
 
 	@Override
 	public String toString(boolean forDisplay, int base) {
-		return Integer.toString(_value, base);
+		return Long.toString(_value, base);
 	}
 
 	@Override
@@ -43,28 +55,78 @@ public final class Fixnum extends SchemeNumber {
 	}
 
 	public static Fixnum valueOf(String value, int base) {
-		return new Fixnum(Integer.parseInt(value, base));
+		return valueOf(Long.parseLong(value, base));
+	}
+
+	public static Fixnum valueOf(long value) {
+		if (value >= _cacheLow && value <= _cacheHigh)
+			return _cache[(int) value - _cacheLow];
+		return new Fixnum(value);
+	}
+
+	// The overflow checks follow Math.addExact, subtractExact and
+	// multiplyExact, which are not available in Java 7.
+	private static SchemeNumber add(long x, long y) {
+		final long r = x + y;
+		if (((x ^ r) & (y ^ r)) < 0)
+			return new Bignum(BigInteger.valueOf(x).add(BigInteger.valueOf(y)));
+		return valueOf(r);
+	}
+
+	private static SchemeNumber sub(long x, long y) {
+		final long r = x - y;
+		if (((x ^ y) & (x ^ r)) < 0)
+			return new Bignum(BigInteger.valueOf(x).subtract(
+					BigInteger.valueOf(y)));
+		return valueOf(r);
+	}
+
+	private static SchemeNumber mul(long x, long y) {
+		final long r = x * y;
+		if (((Math.abs(x) | Math.abs(y)) >>> 31 != 0)
+				&& ((y != 0 && r / y != x) || (x == Long.MIN_VALUE && y == -1)))
+			return new Bignum(BigInteger.valueOf(x).multiply(
+					BigInteger.valueOf(y)));
+		return valueOf(r);
+	}
+
+	@Override
+	public SchemeNumber add(SchemeNumber other) throws SchemeException {
+		if (other instanceof Fixnum) return add(_value, ((Fixnum) other)._value);
+		return super.add(other);
 	}
 
-	public static SchemeNumber valueOf(long value) {
-		if (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE)
-			return new Bignum(value);
-		return new Fixnum((int) value);
+	@Override
+	public SchemeNumber sub(SchemeNumber other) throws SchemeException {
+		if (other instanceof Fixnum) return sub(_value, ((Fixnum) other)._value);
+		return super.sub(other);
+	}
+
+	@Override
+	public SchemeNumber mul(SchemeNumber other) throws SchemeException {
+		if (other instanceof Fixnum) return mul(_value, ((Fixnum) other)._value);
+		return super.mul(other);
+	}
+
+	@Override
+	public int compareTo(SchemeNumber other) {
+		if (other instanceof Fixnum) return doCompareTo(other);
+		return super.compareTo(other);
 	}
 
 	@Override
 	protected SchemeNumber doAdd(SchemeNumber other) {
-		return valueOf((long) _value + (long) ((Fixnum) other)._value);
+		return add(_value, ((Fixnum) other)._value);
 	}
 
 	@Override
 	public SchemeNumber doSub(SchemeNumber other) {
-		return valueOf((long) _value - (long) ((Fixnum) other)._value);
+		return sub(_value, ((Fixnum) other)._value);
 	}
 
 	@Override
 	public SchemeNumber doMul(SchemeNumber other) {
-		return valueOf((long) _value * (long) ((Fixnum) other)._value);
+		return mul(_value, ((Fixnum) other)._value);
 	}
 
 	@Override
@@ -74,12 +136,15 @@ public final class Fixnum extends SchemeNumber {
 
 	@Override
 	public SchemeNumber doIdiv(SchemeNumber other) {
-		return valueOf((long) _value / (long) ((Fixnum) other)._value);
+		final long divisor = ((Fixnum) other)._value;
+		if (_value == Long.MIN_VALUE && divisor == -1)
+			return new Bignum(BigInteger.valueOf(_value).negate());
+		return valueOf(_value / divisor);
 	}
 
 	@Override
 	public SchemeNumber doMod(SchemeNumber other) {
-		return valueOf((long) _value % (long) ((Fixnum) other)._value);
+		return valueOf(_value % ((Fixnum) other)._value);
 	}
 
 	@Override
@@ -146,6 +211,8 @@ public final class Fixnum extends SchemeNumber {
 
 	@Override
 	public Object toJavaObject() throws SchemeException {
+		if (_value >= Integer.MIN_VALUE && _value <= Integer.MAX_VALUE)
+			return (int) _value;
 		return _value;
 	}
 }
@@ -0,0 +1,122 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme;
+
+import java.util.*;
+
+// Activation record of an analyzed or compiled procedure. The analyzer
+// assigns every parameter and internal definition a slot index, so local
+// variables are addressed by (depth, index) instead of being looked up by
+// name; only globals still go through an Environment.
+// Closures are flat: the outer frame of a procedure's activation record is
+// a frame holding only the free variables it uses, copied when the closure
+// is created, so local variables are never more than one frame away.
+// Variables that are captured and assigned to are kept in a Box, which is
+// unwrapped transparently by get() and set().
+public final class Frame {
+	private final Frame _outer;
+	private final SchemeObject[] _values;
+
+	public Frame(Frame outer, int size) {
+		_outer = outer;
+		_values = new SchemeObject[size];
+	}
+
+	public Frame getOuter() {
+		return _outer;
+	}
+
+	public SchemeObject get(int depth, int index) {
+		final SchemeObject value = (depth == 0 ? this : _outer)._values[index];
+		return value instanceof Box ? ((Box) value).value : value;
+	}
+
+	public void set(int depth, int index, SchemeObject value) {
+		final SchemeObject[] values = (depth == 0 ? this : _outer)._values;
+		if (values[index] instanceof Box)
+			((Box) values[index]).value = value;
+		else
+			values[index] = value;
+	}
+
+	// Moves the given slots into boxes; called once the parameters are bound.
+	public void box(int[] slots) {
+		for (int slot : slots)
+			_values[slot] = new Box(_values[slot]);
+	}
+
+	// Prepares the frame for another run of its procedure's body after a
+	// self tail call, which left the new arguments in the slots starting at
+	// scratch. All other slots start out empty again, like in a new frame.
+	public void rebindParameters(int parameterCount, int scratch) {
+		System.arraycopy(_values, scratch, _values, 0, parameterCount);
+		Arrays.fill(_values, parameterCount, _values.length, null);
+	}
+
+	// Creates the outer frame of a closure, holding the variables found at
+	// the given positions of this frame (boxes are shared, not unwrapped).
+	public Frame capture(int[] depths, int[] indices) {
+		final Frame ret = new Frame(null, indices.length);
+		for (int i = 0; i < indices.length; ++i)
+			ret._values[i] = (depths[i] == 0 ? this : _outer)
+					._values[indices[i]];
+		return ret;
+	}
+
+	public void bindParameters(int parameterCount, boolean hasRestParameter,
+			List<SchemeObject> parameters) throws SchemeException {
+		if (hasRestParameter) {
+			if (parameterCount - 1 > parameters.size())
+				throw new SchemeException(
+						"Invalid parameter count: Expected at least "
+								+ (parameterCount - 1) + ", got "
+								+ parameters.size());
+			for (int i = 0; i < parameterCount - 1; ++i)
+				_values[i] = parameters.get(i);
+			_values[parameterCount - 1] = Pair.fromIterable(parameters
+					.subList(parameterCount - 1, parameters.size()));
+		} else {
+			if (parameterCount != parameters.size())
+				throw new SchemeException("Invalid parameter count: Expected "
+						+ parameterCount + ", got " + parameters.size());
+			for (int i = 0; i < parameterCount; ++i)
+				_values[i] = parameters.get(i);
+		}
+	}
+
+	public void bindParameters(int parameterCount, boolean hasRestParameter,
+			SchemeObject[] arguments, int offset, int count)
+			throws SchemeException {
+		if (hasRestParameter) {
+			final int required = parameterCount - 1;
+			if (required > count)
+				throw new SchemeException(
+						"Invalid parameter count: Expected at least "
+								+ required + ", got " + count);
+			System.arraycopy(arguments, offset, _values, 0, required);
+			SchemeObject rest = Nil.getInstance();
+			for (int i = offset + count - 1; i >= offset + required; --i)
+				rest = new Pair(arguments[i], rest);
+			_values[required] = rest;
+		} else {
+			if (parameterCount != count)
+				throw new SchemeException("Invalid parameter count: Expected "
+						+ parameterCount + ", got " + count);
+			System.arraycopy(arguments, offset, _values, 0, count);
+		}
+	}
+}
@@ -249,6 +249,11 @@ public final class Gui {
 	}
 
 	private void print(String str) {
+		try {
+			_defaultOutputPort.flush();
+		} catch (SchemeException e) {
+			// Impossible, the writer above never fails
+		}
 		_output += str;
 		flushOutput();
 	}
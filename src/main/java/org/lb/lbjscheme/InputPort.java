@@ -16,45 +16,130 @@
 
 package org.lb.lbjscheme;
 
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+import java.util.Arrays;
 
 public final class InputPort extends SchemeObject {
+	public static final long MAPPED_FILE_THRESHOLD = 1 << 20;
+
 	private final java.io.Reader _reader;
-	private int _nextChar = -2;
+	private char[] _buffer = new char[8192];
+	private int _position;
+	private int _limit;
+	private int _mark = -1;
 
 	public InputPort(java.io.Reader reader) {
 		_reader = reader;
 	}
 
+	// Regular files above the threshold are read through a memory-mapped
+	// window instead of a FileReader
+	public static InputPort openFile(String fileName) throws IOException {
+		return openFile(fileName, Charset.defaultCharset());
+	}
+
+	public static InputPort openFile(String fileName, Charset charset)
+			throws IOException {
+		final Path path = Paths.get(fileName);
+		if (Files.isRegularFile(path)
+				&& Files.size(path) >= MAPPED_FILE_THRESHOLD)
+			return new InputPort(new MappedFileReader(path, charset));
+		return new InputPort(new InputStreamReader(new FileInputStream(
+				fileName), charset));
+	}
+
 	@Override
 	public String toString(boolean forDisplay) {
 		return "<input-port>";
 	}
 
 	public int peekChar() throws SchemeException {
-		if (_nextChar == -2) _nextChar = readChar();
-		return _nextChar;
+		if (_position == _limit && !fill()) return -1;
+		return _buffer[_position];
 	}
 
 	public int readChar() throws SchemeException {
-		int ret = _nextChar;
-		if (ret != -2) {
-			_nextChar = -2;
-			return ret;
+		if (_position == _limit && !fill()) return -1;
+		return _buffer[_position++];
+	}
+
+	public boolean isCharReady() {
+		return _position < _limit;
+	}
+
+	// Skips the rest of the line the reader stopped in, as far as it has
+	// been typed already
+	void discardRestOfLine() {
+		while (_position < _limit)
+			if (_buffer[_position++] == '\n') return;
+	}
+
+	// The Reader scans the buffer directly between getPosition() and
+	// getLimit(). Everything from the mark on survives a refill, so tokens
+	// can be sliced out of the buffer in one piece.
+	char[] getBuffer() {
+		return _buffer;
+	}
+
+	int getPosition() {
+		return _position;
+	}
+
+	void setPosition(int position) {
+		_position = position;
+	}
+
+	int getLimit() {
+		return _limit;
+	}
+
+	int getMark() {
+		return _mark;
+	}
+
+	void mark() {
+		_mark = _position;
+	}
+
+	void clearMark() {
+		_mark = -1;
+	}
+
+	String takeMarked() {
+		final String ret = new String(_buffer, _mark, _position - _mark);
+		_mark = -1;
+		return ret;
+	}
+
+	boolean fill() throws SchemeException {
+		if (_position < _limit) return true;
+		if (_mark == -1) {
+			_position = _limit = 0;
+		} else if (_mark > 0) {
+			System.arraycopy(_buffer, _mark, _buffer, 0, _limit - _mark);
+			_position -= _mark;
+			_limit -= _mark;
+			_mark = 0;
 		}
+		if (_limit == _buffer.length)
+			_buffer = Arrays.copyOf(_buffer, _buffer.length * 2);
 
 		try {
-			return _reader.read();
+			int count;
+			do
+				count = _reader.read(_buffer, _limit, _buffer.length - _limit);
+			while (count == 0);
+			if (count == -1) return false;
+			_limit += count;
+			return true;
 		} catch (IOException e) {
 			throw new SchemeException("Error reading from input port: "
 					+ e.getMessage());
 		}
 	}
 
-	public boolean isCharReady() {
-		return _nextChar != -2;
-	}
-
 	public void close() throws SchemeException {
 		try {
 			_reader.close();
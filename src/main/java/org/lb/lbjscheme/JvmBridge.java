@@ -122,6 +122,8 @@ public final class JvmBridge extends SchemeObject {
 			// Argh.
 			if (parameterTypes[i] == Integer.class)
 				parameterTypes[i] = int.class;
+			if (parameterTypes[i] == Long.class)
+				parameterTypes[i] = long.class;
 			if (parameterTypes[i] == Double.class)
 				parameterTypes[i] = double.class;
 			if (parameterTypes[i] == Boolean.class)
@@ -149,15 +151,15 @@ public final class JvmBridge extends SchemeObject {
 	}
 
 	public static SchemeObject fromJavaObject(byte o) {
-		return new Fixnum(o);
+		return Fixnum.valueOf(o);
 	}
 
 	public static SchemeObject fromJavaObject(short o) {
-		return new Fixnum(o);
+		return Fixnum.valueOf(o);
 	}
 
 	public static SchemeObject fromJavaObject(int o) {
-		return new Fixnum(o);
+		return Fixnum.valueOf(o);
 	}
 
 	public static SchemeObject fromJavaObject(long o) {
@@ -173,7 +175,7 @@ public final class JvmBridge extends SchemeObject {
 	}
 
 	public static SchemeObject fromJavaObject(BigInteger o) {
-		return new Bignum(o);
+		return Bignum.valueOf(o);
 	}
 
 	public static SchemeObject fromJavaObject(String o) {
@@ -0,0 +1,488 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme;
+
+import java.util.*;
+import org.lb.lbjscheme.ast.CaseForm;
+import org.lb.lbjscheme.ast.LambdaForm;
+import org.lb.lbjscheme.vm.*;
+
+// Translates the body of a single procedure into a JVM class extending
+// JitProcedure. The registers of the virtual machine become local variables
+// of invoke(): the frame is local 1, the value register local 2 and the
+// pending arguments are locals 3 and up. Saving and restoring registers
+// around calls is left to the JVM, so PUSHALL and POPALL emit nothing.
+// Nested procedures are not translated; they are created from the
+// templates CompiledProgram made for them and run in the virtual machine
+// until they get hot themselves.
+public final class JvmEmitter implements Emitter {
+	private static final String JIT_PROCEDURE = "org/lb/lbjscheme/vm/JitProcedure";
+	private static final String PRIMITIVES = "org/lb/lbjscheme/vm/Primitives";
+	private static final String FRAME = "org/lb/lbjscheme/Frame";
+	private static final String CELL = "org/lb/lbjscheme/Cell";
+	private static final String SCHEME_OBJECT = "org/lb/lbjscheme/SchemeObject";
+	private static final String OBJ = "L" + SCHEME_OBJECT + ";";
+	private static final String UNARY = "(" + OBJ + ")" + OBJ;
+	private static final String BINARY = "(" + OBJ + OBJ + ")" + OBJ;
+	private static final String CALL = "(" + OBJ + "[" + OBJ + ")" + OBJ;
+
+	private static final int FRAME_LOCAL = 1;
+	private static final int VALUE_LOCAL = 2;
+	private static final int FIRST_ARGUMENT_LOCAL = 3;
+	private static final int MAX_STACK = 8;
+
+	private static final int ICONST_0 = 3;
+	private static final int BIPUSH = 16;
+	private static final int SIPUSH = 17;
+	private static final int LDC_W = 19;
+	private static final int ALOAD = 25;
+	private static final int AALOAD = 50;
+	private static final int ASTORE = 58;
+	private static final int AASTORE = 83;
+	private static final int POP = 87;
+	private static final int DUP = 89;
+	private static final int IF_ICMPNE = 160;
+	private static final int IF_ACMPEQ = 165;
+	private static final int GOTO = 167;
+	private static final int ARETURN = 176;
+	private static final int RETURN = 177;
+	private static final int GETSTATIC = 178;
+	private static final int GETFIELD = 180;
+	private static final int INVOKEVIRTUAL = 182;
+	private static final int INVOKESPECIAL = 183;
+	private static final int INVOKESTATIC = 184;
+	private static final int ANEWARRAY = 189;
+	private static final int CHECKCAST = 192;
+	private static final int WIDE = 196;
+
+	private static final Map<Symbol, String> _primitiveMethods = new HashMap<Symbol, String>();
+
+	static {
+		addPrimitive("##car", "car");
+		addPrimitive("##cdr", "cdr");
+		addPrimitive("##cons", "cons");
+		addPrimitive("##eq?", "eq");
+		addPrimitive("##null?", "nullP");
+		addPrimitive("##pair?", "pairP");
+		addPrimitive("##zero?", "zeroP");
+		addPrimitive("##+", "add");
+		addPrimitive("##-", "sub");
+		addPrimitive("##<", "lt");
+		addPrimitive("##>", "gt");
+		addPrimitive("##<=", "le");
+		addPrimitive("##>=", "ge");
+		addPrimitive("##=", "numEq");
+	}
+
+	private static void addPrimitive(String name, String method) {
+		_primitiveMethods.put(Symbol.fromString(name), method);
+	}
+
+	private static final Set<String> _unaryPrimitives = new HashSet<String>(
+			Arrays.asList("car", "cdr", "nullP", "pairP", "zeroP"));
+
+	private final CompiledProgram _program;
+	private final ClassFileWriter _class = new ClassFileWriter();
+	private byte[] _code = new byte[1024];
+	private int _size;
+	private final List<Object> _constants = new ArrayList<Object>();
+	private final IdentityHashMap<Object, Integer> _constantIndices = new IdentityHashMap<Object, Integer>();
+
+	private final HashMap<Integer, Integer> _labelPositions = new HashMap<Integer, Integer>();
+	private final HashMap<Integer, List<Integer>> _labelFixups = new HashMap<Integer, List<Integer>>();
+
+	// Number of pending arguments, and where the arguments of each call being
+	// set up start. A SETARGS call has its argument list in a single local;
+	// its entry is stored as -(local + 1).
+	private int _numberOfArguments;
+	private int _maxNumberOfArguments;
+	private final List<Integer> _argumentBases = new ArrayList<Integer>();
+
+	private boolean _isContinuationSet;
+	private boolean _isClosurePending;
+	private int _skipUntilLabel = -1;
+	private String _error;
+
+	public JvmEmitter(final CompiledProgram program) {
+		_program = program;
+	}
+
+	public Object[] getConstants() {
+		return _constants.toArray();
+	}
+
+	public byte[] toClassFile(String className) throws SchemeException {
+		if (_error == null && _size > 0xffff)
+			_error = "Method too large";
+		if (_error != null)
+			throw new SchemeException("Unable to compile procedure to JVM bytecode: "
+					+ _error);
+
+		final String internalName = className.replace('.', '/');
+		final String constructorDescriptor = "(Lorg/lb/lbjscheme/vm/VirtualMachine;[Ljava/lang/Object;)V";
+		final byte[] constructor = new byte[] { 42, 43, 44, (byte) INVOKESPECIAL,
+				0, 0, (byte) RETURN };
+		final int superConstructor = _class.methodRef(JIT_PROCEDURE, "<init>",
+				constructorDescriptor);
+		constructor[4] = (byte) (superConstructor >> 8);
+		constructor[5] = (byte) superConstructor;
+		_class.addMethod("<init>", constructorDescriptor, 3, 3, constructor,
+				constructor.length);
+		_class.addMethod("invoke", "(L" + FRAME + ";)" + OBJ, MAX_STACK,
+				FIRST_ARGUMENT_LOCAL + _maxNumberOfArguments, _code, _size);
+		return _class.toByteArray(internalName, JIT_PROCEDURE);
+	}
+
+	@Override
+	public void emitCall() {
+		if (isSkipping()) return;
+		final int base = _argumentBases.remove(_argumentBases.size() - 1);
+		emitLoad(0);
+		emitLoad(VALUE_LOCAL);
+		if (base < 0) {
+			emitLoad(-base - 1);
+			emitInvoke(INVOKESTATIC, JIT_PROCEDURE, "toArray", "(" + OBJ + ")["
+					+ OBJ);
+			_numberOfArguments = -base - 1 - FIRST_ARGUMENT_LOCAL;
+		} else {
+			emitInt(_numberOfArguments - base);
+			emit(ANEWARRAY);
+			emitShort(_class.classRef(SCHEME_OBJECT));
+			for (int i = base; i < _numberOfArguments; ++i) {
+				emit(DUP);
+				emitInt(i - base);
+				emitLoad(FIRST_ARGUMENT_LOCAL + i);
+				emit(AASTORE);
+			}
+			_numberOfArguments = base;
+		}
+
+		if (_isContinuationSet) {
+			_isContinuationSet = false;
+			emitInvoke(INVOKEVIRTUAL, JIT_PROCEDURE, "call", CALL);
+			emitStore(VALUE_LOCAL);
+		} else {
+			emitInvoke(INVOKEVIRTUAL, JIT_PROCEDURE, "tailCall", CALL);
+			emit(ARETURN);
+		}
+	}
+
+	@Override
+	public void emitContinue() {
+		if (isSkipping()) return;
+		emitLoad(VALUE_LOCAL);
+		emit(ARETURN);
+	}
+
+	@Override
+	public void emitDefineVariable(Symbol variable) {
+		if (isSkipping()) return;
+		emitLoad(0);
+		emitInt(addConstant(variable));
+		emitLoad(VALUE_LOCAL);
+		emitInvoke(INVOKEVIRTUAL, JIT_PROCEDURE, "define", "(I" + OBJ + ")V");
+	}
+
+	@Override
+	public void emitGetLocal(Symbol variable, int depth, int index) {
+		if (isSkipping()) return;
+		emitLoad(0);
+		emitLoad(FRAME_LOCAL);
+		emitInt(depth);
+		emitInt(index);
+		emitInt(addConstant(variable));
+		emitInvoke(INVOKEVIRTUAL, JIT_PROCEDURE, "getLocal", "(L" + FRAME
+				+ ";III)" + OBJ);
+		emitStore(VALUE_LOCAL);
+	}
+
+	@Override
+	public void emitGetVariable(Symbol variable) {
+		if (isSkipping()) return;
+		emitGetCell(variable);
+		emitInvoke(INVOKEVIRTUAL, CELL, "getValue", "()" + OBJ);
+		emitStore(VALUE_LOCAL);
+	}
+
+	@Override
+	public void emitInitArgs() {
+		if (isSkipping()) return;
+		_argumentBases.add(_numberOfArguments);
+	}
+
+	@Override
+	public void emitJump(int label) {
+		if (isSkipping()) return;
+		if (_isClosurePending) {
+			// Jump over the body of a nested procedure
+			_isClosurePending = false;
+			_skipUntilLabel = label;
+			return;
+		}
+		emitBranch(GOTO, label);
+	}
+
+	@Override
+	public void emitJumpIfFalse(int label) {
+		if (isSkipping()) return;
+		emitLoad(VALUE_LOCAL);
+		emit(GETSTATIC);
+		emitShort(_class.fieldRef(JIT_PROCEDURE, "FALSE", OBJ));
+		emitBranch(IF_ACMPEQ, label);
+	}
+
+	@Override
+	public void emitLiteral(SchemeObject value) {
+		if (isSkipping()) return;
+		emitLoad(0);
+		emit(GETFIELD);
+		emitShort(_class.fieldRef(JIT_PROCEDURE, "_constants",
+				"[Ljava/lang/Object;"));
+		emitInt(addConstant(value));
+		emit(AALOAD);
+		emit(CHECKCAST);
+		emitShort(_class.classRef(SCHEME_OBJECT));
+		emitStore(VALUE_LOCAL);
+	}
+
+	@Override
+	public void emitMakeClosure(LambdaForm form, int closureLabel) {
+		if (isSkipping()) return;
+		final ClosureTemplate template = _program.getClosureTemplate(form);
+		if (template == null) {
+			_error = "Nested procedure " + form.getName() + " not compiled";
+			return;
+		}
+		emitLoad(0);
+		emitInt(addConstant(template));
+		emitLoad(FRAME_LOCAL);
+		emitInvoke(INVOKEVIRTUAL, JIT_PROCEDURE, "makeClosure", "(IL" + FRAME
+				+ ";)" + OBJ);
+		emitStore(VALUE_LOCAL);
+		_isClosurePending = true;
+	}
+
+	@Override
+	public void emitPopAll() {
+	}
+
+	@Override
+	public void emitPrimitive(Symbol primitive) {
+		if (isSkipping()) return;
+		final String method = _primitiveMethods.get(primitive);
+		if (_unaryPrimitives.contains(method)) {
+			emitLoad(VALUE_LOCAL);
+			emitInvoke(INVOKESTATIC, PRIMITIVES, method, UNARY);
+		} else {
+			--_numberOfArguments;
+			emitLoad(FIRST_ARGUMENT_LOCAL + _numberOfArguments);
+			emitLoad(VALUE_LOCAL);
+			emitInvoke(INVOKESTATIC, PRIMITIVES, method, BINARY);
+		}
+		emitStore(VALUE_LOCAL);
+	}
+
+	@Override
+	public void emitPushAll() {
+	}
+
+	@Override
+	public void emitPushArg() {
+		if (isSkipping()) return;
+		emitLoad(VALUE_LOCAL);
+		emitStore(newArgumentLocal());
+	}
+
+	@Override
+	public void emitSetArgsToValueRegister() {
+		if (isSkipping()) return;
+		final int local = newArgumentLocal();
+		emitLoad(VALUE_LOCAL);
+		emitStore(local);
+		_argumentBases.add(-local - 1);
+	}
+
+	@Override
+	public void emitSelfTailCall(LambdaForm form, int bodyLabel) {
+		if (isSkipping()) return;
+		emitLoad(0);
+		emitInt(addConstant(form));
+		emitLoad(FRAME_LOCAL);
+		emitInvoke(INVOKEVIRTUAL, JIT_PROCEDURE, "restart", "(IL" + FRAME
+				+ ";)V");
+		emitBranch(GOTO, bodyLabel);
+	}
+
+	// The clause index is compared with each label's index in turn; the
+	// last label is taken if none matched.
+	@Override
+	public void emitSwitch(CaseForm form, int[] labels) {
+		if (isSkipping()) return;
+		emitLoad(0);
+		emitInt(addConstant(form));
+		emitLoad(VALUE_LOCAL);
+		emitInvoke(INVOKEVIRTUAL, JIT_PROCEDURE, "dispatch", "(I" + OBJ
+				+ ")I");
+		for (int i = 0; i < labels.length - 1; ++i) {
+			emit(DUP);
+			emitInt(i);
+			emit(IF_ICMPNE);
+			emitShort(7); // to the next comparison, after POP and GOTO
+			emit(POP);
+			emitBranch(GOTO, labels[i]);
+		}
+		emit(POP);
+		emitBranch(GOTO, labels[labels.length - 1]);
+	}
+
+	@Override
+	public void emitSetContinuationRegisterToLabel(int label) {
+		if (isSkipping()) return;
+		_isContinuationSet = true;
+	}
+
+	@Override
+	public void emitSetLocal(Symbol variable, int depth, int index) {
+		if (isSkipping()) return;
+		emitLoad(FRAME_LOCAL);
+		emitInt(depth);
+		emitInt(index);
+		emitLoad(VALUE_LOCAL);
+		emitInvoke(INVOKEVIRTUAL, FRAME, "set", "(II" + OBJ + ")V");
+	}
+
+	@Override
+	public void emitSetVariable(Symbol variable) {
+		if (isSkipping()) return;
+		emitGetCell(variable);
+		emitLoad(VALUE_LOCAL);
+		emitInvoke(INVOKEVIRTUAL, CELL, "setValue", "(" + OBJ + ")V");
+	}
+
+	@Override
+	public void setLabelPositionToHere(int label) {
+		if (isSkipping()) {
+			if (label == _skipUntilLabel) _skipUntilLabel = -1;
+			return;
+		}
+		_labelPositions.put(label, _size);
+		final List<Integer> fixups = _labelFixups.remove(label);
+		if (fixups != null)
+			for (int branch : fixups)
+				patchBranch(branch, _size);
+	}
+
+	private boolean isSkipping() {
+		return _skipUntilLabel != -1;
+	}
+
+	private int newArgumentLocal() {
+		final int ret = FIRST_ARGUMENT_LOCAL + _numberOfArguments++;
+		_maxNumberOfArguments = Math.max(_maxNumberOfArguments,
+				_numberOfArguments);
+		return ret;
+	}
+
+	private void emitGetCell(Symbol variable) {
+		emitLoad(0);
+		emitInt(addConstant(variable));
+		emitInvoke(INVOKEVIRTUAL, JIT_PROCEDURE, "getCell", "(I)L" + CELL
+				+ ";");
+	}
+
+	private void emitBranch(int opcode, int label) {
+		final int branch = _size;
+		emit(opcode);
+		emitShort(0);
+		final Integer position = _labelPositions.get(label);
+		if (position != null) {
+			patchBranch(branch, position);
+		} else {
+			List<Integer> fixups = _labelFixups.get(label);
+			if (fixups == null) _labelFixups.put(label, fixups = new ArrayList<Integer>());
+			fixups.add(branch);
+		}
+	}
+
+	private void patchBranch(int branch, int target) {
+		final int offset = target - branch;
+		if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)
+			_error = "Branch offset too large";
+		_code[branch + 1] = (byte) (offset >> 8);
+		_code[branch + 2] = (byte) offset;
+	}
+
+	private void emitInvoke(int opcode, String owner, String name,
+			String descriptor) {
+		emit(opcode);
+		emitShort(_class.methodRef(owner, name, descriptor));
+	}
+
+	private void emitLoad(int local) {
+		emitLocal(ALOAD, 42, local);
+	}
+
+	private void emitStore(int local) {
+		emitLocal(ASTORE, 75, local);
+	}
+
+	private void emitLocal(int opcode, int shortOpcode, int local) {
+		if (local <= 3) {
+			emit(shortOpcode + local);
+		} else if (local <= 0xff) {
+			emit(opcode);
+			emit(local);
+		} else {
+			emit(WIDE);
+			emit(opcode);
+			emitShort(local);
+		}
+	}
+
+	private void emitInt(int value) {
+		if (value >= -1 && value <= 5) {
+			emit(ICONST_0 + value);
+		} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			emit(BIPUSH);
+			emit(value);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			emit(SIPUSH);
+			emitShort(value);
+		} else {
+			emit(LDC_W);
+			emitShort(_class.integer(value));
+		}
+	}
+
+	private void emitShort(int value) {
+		emit(value >> 8);
+		emit(value);
+	}
+
+	private void emit(int value) {
+		if (_size == _code.length) _code = Arrays.copyOf(_code, _size * 2);
+		_code[_size++] = (byte) value;
+	}
+
+	private int addConstant(Object value) {
+		final Integer existing = _constantIndices.get(value);
+		if (existing != null) return existing;
+		_constants.add(value);
+		_constantIndices.put(value, _constants.size() - 1);
+		return _constants.size() - 1;
+	}
+}
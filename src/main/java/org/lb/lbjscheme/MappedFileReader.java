@@ -0,0 +1,103 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme;
+
+import java.io.IOException;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+// Decodes a file through a sliding memory-mapped window straight into the
+// caller's buffer. Used by InputPort.openFile for large files.
+final class MappedFileReader extends java.io.Reader {
+	private static final long WINDOW_SIZE = 64L << 20;
+
+	private final FileChannel _channel;
+	private final long _size;
+	private final CharsetDecoder _decoder;
+	private long _windowStart;
+	private ByteBuffer _window;
+	private boolean _flushed;
+	private final CharBuffer _spill = CharBuffer.allocate(2);
+
+	public MappedFileReader(Path path, Charset charset) throws IOException {
+		_channel = FileChannel.open(path, StandardOpenOption.READ);
+		_size = _channel.size();
+		_decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		_spill.flip();
+		map(0);
+	}
+
+	private void map(long start) throws IOException {
+		_windowStart = start;
+		_window = _channel.map(FileChannel.MapMode.READ_ONLY, start,
+				Math.min(WINDOW_SIZE, _size - start));
+	}
+
+	private boolean isLastWindow() {
+		return _windowStart + _window.limit() == _size;
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (len == 0) return 0;
+		if (_spill.hasRemaining()) {
+			cbuf[off] = _spill.get();
+			return 1;
+		}
+		if (_flushed) return -1;
+
+		// A character outside the BMP needs room for two chars, so single
+		// chars go through the spill buffer
+		if (len == 1) {
+			_spill.clear();
+			final int count = decode(_spill);
+			_spill.flip();
+			if (count == -1) return -1;
+			cbuf[off] = _spill.get();
+			return 1;
+		}
+		return decode(CharBuffer.wrap(cbuf, off, len));
+	}
+
+	private int decode(CharBuffer out) throws IOException {
+		final int start = out.position();
+		while (out.position() == start) {
+			final boolean last = isLastWindow();
+			_decoder.decode(_window, out, last);
+			if (out.position() > start) break;
+			if (last) {
+				_decoder.flush(out);
+				_flushed = true;
+				break;
+			}
+			// Bytes of a character cut off at the end of the window are
+			// decoded again from the start of the next window
+			map(_windowStart + _window.position());
+		}
+		return out.position() == start ? -1 : out.position() - start;
+	}
+
+	@Override
+	public void close() throws IOException {
+		_window = null;
+		_channel.close();
+	}
+}
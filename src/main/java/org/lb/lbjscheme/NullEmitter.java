@@ -16,7 +16,8 @@
 
 package org.lb.lbjscheme;
 
-import java.util.List;
+import org.lb.lbjscheme.ast.CaseForm;
+import org.lb.lbjscheme.ast.LambdaForm;
 
 public final class NullEmitter implements Emitter {
 
@@ -38,6 +39,12 @@ public final class NullEmitter implements Emitter {
 
 	}
 
+	@Override
+	public void emitGetLocal(Symbol variable, int depth, int index) {
+		// TODO Auto-generated method stub
+
+	}
+
 	@Override
 	public void emitGetVariable(Symbol variable) {
 		// TODO Auto-generated method stub
@@ -51,13 +58,13 @@ public final class NullEmitter implements Emitter {
 	}
 
 	@Override
-	public void emitJump(String doneLabel) {
+	public void emitJump(int doneLabel) {
 		// TODO Auto-generated method stub
 
 	}
 
 	@Override
-	public void emitJumpIfFalse(String label) {
+	public void emitJumpIfFalse(int label) {
 		// TODO Auto-generated method stub
 
 	}
@@ -69,8 +76,7 @@ public final class NullEmitter implements Emitter {
 	}
 
 	@Override
-	public void emitMakeClosure(String string, String closureLabel,
-			boolean hasRestParameter, List<Symbol> parameterNames) {
+	public void emitMakeClosure(LambdaForm form, int closureLabel) {
 		// TODO Auto-generated method stub
 
 	}
@@ -81,6 +87,10 @@ public final class NullEmitter implements Emitter {
 
 	}
 
+	@Override
+	public void emitPrimitive(Symbol primitive) {
+	}
+
 	@Override
 	public void emitPushAll() {
 		// TODO Auto-generated method stub
@@ -94,7 +104,25 @@ public final class NullEmitter implements Emitter {
 	}
 
 	@Override
-	public void emitSetContinuationRegisterToLabel(String label) {
+	public void emitSelfTailCall(LambdaForm form, int bodyLabel) {
+		// TODO Auto-generated method stub
+
+	}
+
+	@Override
+	public void emitSwitch(CaseForm form, int[] labels) {
+		// TODO Auto-generated method stub
+
+	}
+
+	@Override
+	public void emitSetContinuationRegisterToLabel(int label) {
+		// TODO Auto-generated method stub
+
+	}
+
+	@Override
+	public void emitSetLocal(Symbol variable, int depth, int index) {
 		// TODO Auto-generated method stub
 
 	}
@@ -112,7 +140,7 @@ public final class NullEmitter implements Emitter {
 	}
 
 	@Override
-	public void setLabelPositionToHere(String label) {
+	public void setLabelPositionToHere(int label) {
 		// TODO Auto-generated method stub
 
 	}
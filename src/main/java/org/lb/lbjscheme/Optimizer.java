@@ -0,0 +1,498 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme;
+
+import java.util.*;
+import org.lb.lbjscheme.ast.*;
+
+// Optional pass over the syntax tree built by the Analyzer, run before the
+// tree is executed or compiled. The values of global variables are taken
+// from the environment the tree will run in.
+// Level FOLD evaluates calls of pure ## builtins on constant arguments,
+// replaces local variables initialized once with a constant by that
+// constant and drops branches that can never be taken. Level INLINE also
+// replaces calls of small global procedures by their bodies. Unless the
+// procedure is bound to a (locked) ## variable, the inlined body is guarded
+// by a check that the variable is still bound to the same procedure.
+// The evaluators use level NONE unless set otherwise by
+// setOptimizationLevel().
+public final class Optimizer {
+	public static final int NONE = 0;
+	public static final int FOLD = 1;
+	public static final int INLINE = 2;
+
+	private static final int MAX_INLINED_SIZE = 16;
+	private static final int MAX_INLINING_DEPTH = 3;
+
+	// Builtins without side effects, returning no newly allocated objects
+	private static final Set<Symbol> _foldablePrimitives = new HashSet<>();
+
+	static {
+		for (String name : new String[] { "##+", "##-", "##*", "##/",
+				"##=", "##<", "##>", "##<=", "##>=", "##quotient",
+				"##remainder", "##max", "##min", "##zero?", "##floor",
+				"##ceiling", "##round", "##truncate", "##numerator",
+				"##denominator", "##exact?", "##inexact?",
+				"##exact->inexact", "##inexact->exact", "##number?",
+				"##integer?", "##rational?", "##real?", "##real-part",
+				"##imag-part", "##not", "##eq?", "##eqv?", "##equal?",
+				"##null?", "##pair?", "##boolean?", "##char?", "##symbol?",
+				"##string?", "##vector?", "##procedure?", "##char->integer",
+				"##integer->char", "##car", "##cdr" })
+			_foldablePrimitives.add(Symbol.fromString(name));
+	}
+
+	private final Environment _global;
+	private final int _level;
+
+	// The procedure whose body is being optimized, or null at top level
+	private Procedure _procedure;
+
+	// While the body of an inlined procedure is copied: the literals or
+	// slots of the caller's frame its parameters are replaced with
+	private SyntaxTreeObject[] _arguments;
+	private int _inliningDepth;
+
+	private static final class Procedure {
+		final LambdaForm form;
+		int frameSize;
+
+		// Slots assigned to exactly once, none of them a parameter, and the
+		// constants found to be assigned to them so far
+		final BitSet constantCandidates = new BitSet();
+		final Map<Integer, SchemeObject> constants = new HashMap<>();
+		final BitSet boxedSlots = new BitSet();
+
+		// Rebuilt calls that have to restart the rebuilt procedure
+		final List<Funcall> selfTailCalls = new ArrayList<>();
+
+		Procedure(LambdaForm form) {
+			this.form = form;
+			frameSize = form.getFrameSize();
+			final int[] assignments = countAssignments(form);
+			final int end = form.getScratchIndex() == -1 ? assignments.length
+					: form.getScratchIndex();
+			for (int i = form.getParameterNames().size(); i < end; ++i)
+				if (assignments[i] == 1) constantCandidates.set(i);
+			for (int slot : form.getBoxedSlots())
+				boxedSlots.set(slot);
+			constantCandidates.andNot(boxedSlots);
+		}
+	}
+
+	public Optimizer(Environment global, int level) {
+		_global = global;
+		_level = level;
+	}
+
+	public SyntaxTreeObject optimize(SyntaxTreeObject form)
+			throws SchemeException {
+		if (_level <= NONE) return form;
+		return visit(form);
+	}
+
+	private SyntaxTreeObject visit(SyntaxTreeObject form)
+			throws SchemeException {
+		if (form instanceof Apply) {
+			final Apply apply = (Apply) form;
+			return new Apply(visit(apply.getProcedure()),
+					visit(apply.getParameters()), apply.getAnalyzer());
+		} else if (form instanceof BeginForm) {
+			return visitBeginForm((BeginForm) form);
+		} else if (form instanceof CallccForm) {
+			return new CallccForm(visit(((CallccForm) form).getTarget()));
+		} else if (form instanceof CaseForm) {
+			return visitCaseForm((CaseForm) form);
+		} else if (form instanceof DefineForm) {
+			final DefineForm define = (DefineForm) form;
+			return new DefineForm(define.getTarget(),
+					visit(define.getAnalyzedForm()));
+		} else if (form instanceof Funcall) {
+			return visitFuncall((Funcall) form);
+		} else if (form instanceof IfForm) {
+			return visitIfForm((IfForm) form);
+		} else if (form instanceof LambdaForm) {
+			return visitLambdaForm((LambdaForm) form);
+		} else if (form instanceof LiteralSymbol) {
+			return form;
+		} else if (form instanceof LocalSymbol) {
+			return visitLocalSymbol((LocalSymbol) form);
+		} else if (form instanceof LocalSetForm) {
+			return visitLocalSetForm((LocalSetForm) form);
+		} else if (form instanceof OrForm) {
+			return visitOrForm((OrForm) form);
+		} else if (form instanceof SelfEvaluatingLiteral) {
+			return form;
+		} else if (form instanceof SetForm) {
+			final SetForm set = (SetForm) form;
+			return new SetForm(set.getTarget(), visit(set.getValue()));
+		} else {
+			throw new SchemeException(
+					"Internal error: Unknown syntax tree object");
+		}
+	}
+
+	private SyntaxTreeObject visitBeginForm(BeginForm form)
+			throws SchemeException {
+		final List<SyntaxTreeObject> forms = new ArrayList<>();
+		for (SyntaxTreeObject i : form.getFormsWithoutLast()) {
+			final SyntaxTreeObject optimized = visit(i);
+			if (!hasNoEffect(optimized)) forms.add(optimized);
+		}
+		final SyntaxTreeObject last = visit(form.getLastForm());
+		if (forms.isEmpty()) return last;
+		return new BeginForm(forms, last);
+	}
+
+	private static boolean hasNoEffect(SyntaxTreeObject form) {
+		return form instanceof SelfEvaluatingLiteral
+				|| form instanceof LocalSymbol || form instanceof LambdaForm;
+	}
+
+	private SyntaxTreeObject visitCaseForm(CaseForm form)
+			throws SchemeException {
+		final SyntaxTreeObject key = visit(form.getKey());
+		final List<SyntaxTreeObject> clauses = form.getClauses();
+		if (key instanceof SelfEvaluatingLiteral) {
+			final int clause = form.dispatch(((SelfEvaluatingLiteral) key)
+					.getValue());
+			return visit(clause < clauses.size() ? clauses.get(clause) : form
+					.getElseClause());
+		}
+		final List<SyntaxTreeObject> optimized = new ArrayList<>();
+		for (SyntaxTreeObject i : clauses)
+			optimized.add(visit(i));
+		return new CaseForm(key, form.getData(), optimized,
+				visit(form.getElseClause()));
+	}
+
+	private SyntaxTreeObject visitIfForm(IfForm form) throws SchemeException {
+		final SyntaxTreeObject condition = visit(form.getCondition());
+		if (condition instanceof SelfEvaluatingLiteral)
+			return visit(isFalse(condition) ? form.getElsePart() : form
+					.getThenPart());
+		return new IfForm(condition, visit(form.getThenPart()),
+				visit(form.getElsePart()));
+	}
+
+	private SyntaxTreeObject visitOrForm(OrForm form) throws SchemeException {
+		final List<SyntaxTreeObject> forms = new ArrayList<>();
+		for (SyntaxTreeObject i : form.getForms()) {
+			final SyntaxTreeObject optimized = visit(i);
+			if (optimized instanceof SelfEvaluatingLiteral) {
+				if (isFalse(optimized)) continue;
+				forms.add(optimized);
+				break;
+			}
+			forms.add(optimized);
+		}
+		if (forms.isEmpty())
+			return new SelfEvaluatingLiteral(False.getInstance());
+		if (forms.size() == 1) return forms.get(0);
+		return new OrForm(forms);
+	}
+
+	private static boolean isFalse(SyntaxTreeObject literal) {
+		return ((SelfEvaluatingLiteral) literal).getValue() == False
+				.getInstance();
+	}
+
+	private LambdaForm visitLambdaForm(LambdaForm form) throws SchemeException {
+		final Procedure outerProcedure = _procedure;
+		final SyntaxTreeObject[] outerArguments = _arguments;
+		_procedure = new Procedure(form);
+		_arguments = null;
+		try {
+			final SyntaxTreeObject body = visit(form.getAnalyzedForms());
+			final LambdaForm ret = form.withBody(
+					body instanceof BeginForm ? (BeginForm) body
+							: new BeginForm(
+									Collections.<SyntaxTreeObject> emptyList(),
+									body), _procedure.frameSize);
+			for (Funcall call : _procedure.selfTailCalls)
+				call.setSelfTailCallTarget(ret);
+			return ret;
+		} finally {
+			_procedure = outerProcedure;
+			_arguments = outerArguments;
+		}
+	}
+
+	private SyntaxTreeObject visitLocalSymbol(LocalSymbol form) {
+		if (_arguments != null) return _arguments[form.getIndex()];
+		if (form.getDepth() == 0 && _procedure != null) {
+			final SchemeObject value = _procedure.constants.get(form
+					.getIndex());
+			if (value != null) return new SelfEvaluatingLiteral(value);
+		}
+		return form;
+	}
+
+	private SyntaxTreeObject visitLocalSetForm(LocalSetForm form)
+			throws SchemeException {
+		final SyntaxTreeObject value = visit(form.getValue());
+		if (_arguments != null)
+			return new LocalSetForm(form.getTarget(), 0,
+					((LocalSymbol) _arguments[form.getIndex()]).getIndex(),
+					value);
+		if (form.getDepth() == 0 && _procedure != null
+				&& value instanceof SelfEvaluatingLiteral
+				&& _procedure.constantCandidates.get(form.getIndex()))
+			_procedure.constants.put(form.getIndex(),
+					((SelfEvaluatingLiteral) value).getValue());
+		return new LocalSetForm(form.getTarget(), form.getDepth(),
+				form.getIndex(), value);
+	}
+
+	private SyntaxTreeObject visitFuncall(Funcall form) throws SchemeException {
+		final SyntaxTreeObject procedure = visit(form.getProcedure());
+		final List<SyntaxTreeObject> parameters = new ArrayList<>();
+		boolean constantParameters = true;
+		for (SyntaxTreeObject i : form.getParameters()) {
+			final SyntaxTreeObject optimized = visit(i);
+			parameters.add(optimized);
+			constantParameters &= optimized instanceof SelfEvaluatingLiteral;
+		}
+
+		if (procedure instanceof LiteralSymbol) {
+			final Symbol name = ((LiteralSymbol) procedure).getSymbol();
+			final SchemeObject value = lookup(name);
+			if (constantParameters && value instanceof Builtin
+					&& _foldablePrimitives.contains(name)
+					&& _global.isConstant(name)) {
+				final SyntaxTreeObject folded = fold((Builtin) value,
+						parameters);
+				if (folded != null) return folded;
+			}
+			if (_level >= INLINE) {
+				final SyntaxTreeObject inlined = inline(form,
+						(LiteralSymbol) procedure, value, parameters);
+				if (inlined != null) return inlined;
+			}
+		}
+
+		final Funcall ret = new Funcall(procedure, parameters,
+				form.getAnalyzer());
+		if (_procedure != null
+				&& form.getSelfTailCallTarget() == _procedure.form)
+			_procedure.selfTailCalls.add(ret);
+		return ret;
+	}
+
+	private SchemeObject lookup(Symbol name) {
+		try {
+			return _global.get(name);
+		} catch (SchemeException ex) {
+			// Not defined yet
+			return null;
+		}
+	}
+
+	private static SyntaxTreeObject fold(Builtin builtin,
+			List<SyntaxTreeObject> parameters) {
+		final List<SchemeObject> values = new ArrayList<>();
+		for (SyntaxTreeObject i : parameters)
+			values.add(((SelfEvaluatingLiteral) i).getValue());
+		try {
+			return new SelfEvaluatingLiteral(builtin.apply(values));
+		} catch (SchemeException | RuntimeException ex) {
+			// The error is left to happen at runtime
+			return null;
+		}
+	}
+
+	// The parameters of the inlined procedure are bound to new slots of the
+	// caller's frame, unless they are never assigned to and their arguments
+	// cannot change while the body runs. Variables of the caller are not
+	// used directly if any of the arguments assigns to them, as that may
+	// happen after they have been passed.
+	private SyntaxTreeObject inline(Funcall form, LiteralSymbol procedure,
+			SchemeObject value, List<SyntaxTreeObject> parameters)
+			throws SchemeException {
+		final LambdaForm callee = getInlinableForm(procedure.getSymbol(),
+				value, parameters.size());
+		if (callee == null) return null;
+		final int[] assignments = countAssignments(callee);
+		final BitSet passedSlots = new BitSet();
+		for (SyntaxTreeObject i : parameters) {
+			// Parameters end up in the body and in the guarded call
+			if (containsLambda(i)) return null;
+			if (i instanceof LocalSymbol)
+				passedSlots.set(((LocalSymbol) i).getIndex());
+		}
+		boolean passedSlotsAssigned = false;
+		for (SyntaxTreeObject i : parameters)
+			if (assignsTo(i, passedSlots)) passedSlotsAssigned = true;
+
+		final boolean[] direct = new boolean[parameters.size()];
+		int slotsNeeded = 0;
+		for (int i = 0; i < parameters.size(); ++i) {
+			final SyntaxTreeObject parameter = parameters.get(i);
+			direct[i] = isStable(parameter) && assignments[i] == 0
+					&& !(passedSlotsAssigned && parameter instanceof LocalSymbol);
+			if (!direct[i]) ++slotsNeeded;
+		}
+		if (slotsNeeded > 0 && _procedure == null) return null;
+
+		final SyntaxTreeObject[] arguments = new SyntaxTreeObject[parameters
+				.size()];
+		final List<SyntaxTreeObject> bindings = new ArrayList<>();
+		for (int i = 0; i < parameters.size(); ++i) {
+			final SyntaxTreeObject parameter = parameters.get(i);
+			if (direct[i]) {
+				arguments[i] = parameter;
+			} else {
+				final Symbol name = callee.getParameterNames().get(i);
+				final int slot = _procedure.frameSize++;
+				arguments[i] = new LocalSymbol(name, 0, slot);
+				bindings.add(new LocalSetForm(name, 0, slot, parameter));
+			}
+		}
+
+		final SyntaxTreeObject[] outerArguments = _arguments;
+		_arguments = arguments;
+		++_inliningDepth;
+		final SyntaxTreeObject body;
+		try {
+			body = visit(callee.getAnalyzedForms());
+		} finally {
+			_arguments = outerArguments;
+			--_inliningDepth;
+		}
+
+		final SyntaxTreeObject inlined = bindings.isEmpty() ? body
+				: new BeginForm(bindings, body);
+		if (_global.isConstant(procedure.getSymbol())) return inlined;
+		return new InlinedCall(procedure, value, inlined, new Funcall(
+				procedure, parameters, form.getAnalyzer()));
+	}
+
+	// Constants, and variables of the caller's frame that are not boxed: the
+	// inlined body contains no procedures, so nothing it calls can assign
+	// to them.
+	private boolean isStable(SyntaxTreeObject form) {
+		if (form instanceof SelfEvaluatingLiteral) return true;
+		if (!(form instanceof LocalSymbol) || _procedure == null) return false;
+		final LocalSymbol local = (LocalSymbol) form;
+		return local.getDepth() == 0
+				&& !_procedure.boxedSlots.get(local.getIndex());
+	}
+
+	// Small procedures that use no other slots than their parameters and
+	// contain no other procedures, calls of themselves or definitions
+	private LambdaForm getInlinableForm(Symbol name, SchemeObject value,
+			int numberOfArguments) {
+		if (_inliningDepth >= MAX_INLINING_DEPTH) return null;
+		final LambdaForm form;
+		if (value instanceof AnalyzedLambda
+				&& ((AnalyzedLambda) value).getEnvironment() == _global)
+			form = ((AnalyzedLambda) value).getForm();
+		else if (value instanceof CompiledLambda)
+			form = ((CompiledLambda) value).template.form;
+		else
+			return null;
+		if (form.HasRestParameter()
+				|| form.getParameterNames().size() != numberOfArguments
+				|| form.getFrameSize() != numberOfArguments
+				|| form.getNumberOfFreeVariables() != 0) return null;
+		return size(form.getAnalyzedForms(), name) <= MAX_INLINED_SIZE ? form
+				: null;
+	}
+
+	private static int size(SyntaxTreeObject form, Symbol name) {
+		if (form instanceof LambdaForm || form instanceof CallccForm
+				|| form instanceof DefineForm || form instanceof InlinedCall)
+			return MAX_INLINED_SIZE + 1;
+		if (form instanceof LiteralSymbol
+				&& ((LiteralSymbol) form).getSymbol() == name)
+			return MAX_INLINED_SIZE + 1;
+		int ret = 1;
+		for (SyntaxTreeObject i : getChildren(form))
+			ret += size(i, name);
+		return ret;
+	}
+
+	private static boolean containsLambda(SyntaxTreeObject form) {
+		if (form instanceof LambdaForm) return true;
+		for (SyntaxTreeObject i : getChildren(form))
+			if (containsLambda(i)) return true;
+		return false;
+	}
+
+	// How often each slot of the procedure's own frame is assigned to
+	private static int[] countAssignments(LambdaForm form) {
+		final int[] ret = new int[form.getFrameSize()];
+		countAssignments(form.getAnalyzedForms(), ret);
+		return ret;
+	}
+
+	private static void countAssignments(SyntaxTreeObject form, int[] counts) {
+		if (form instanceof LocalSetForm
+				&& ((LocalSetForm) form).getDepth() == 0)
+			counts[((LocalSetForm) form).getIndex()]++;
+		for (SyntaxTreeObject i : getChildren(form))
+			countAssignments(i, counts);
+	}
+
+	// Whether the form assigns to one of the given slots of the current frame
+	private static boolean assignsTo(SyntaxTreeObject form, BitSet slots) {
+		if (form instanceof LocalSetForm
+				&& ((LocalSetForm) form).getDepth() == 0
+				&& slots.get(((LocalSetForm) form).getIndex())) return true;
+		for (SyntaxTreeObject i : getChildren(form))
+			if (assignsTo(i, slots)) return true;
+		return false;
+	}
+
+	// The forms directly contained in the given one, not counting the bodies
+	// of procedures, which run in frames of their own
+	private static List<SyntaxTreeObject> getChildren(SyntaxTreeObject form) {
+		final List<SyntaxTreeObject> ret = new ArrayList<>();
+		if (form instanceof Apply) {
+			ret.add(((Apply) form).getProcedure());
+			ret.add(((Apply) form).getParameters());
+		} else if (form instanceof BeginForm) {
+			ret.addAll(((BeginForm) form).getFormsWithoutLast());
+			ret.add(((BeginForm) form).getLastForm());
+		} else if (form instanceof CallccForm) {
+			ret.add(((CallccForm) form).getTarget());
+		} else if (form instanceof CaseForm) {
+			ret.add(((CaseForm) form).getKey());
+			ret.addAll(((CaseForm) form).getClauses());
+			ret.add(((CaseForm) form).getElseClause());
+		} else if (form instanceof DefineForm) {
+			ret.add(((DefineForm) form).getAnalyzedForm());
+		} else if (form instanceof Funcall) {
+			ret.add(((Funcall) form).getProcedure());
+			ret.addAll(((Funcall) form).getParameters());
+		} else if (form instanceof IfForm) {
+			ret.add(((IfForm) form).getCondition());
+			ret.add(((IfForm) form).getThenPart());
+			ret.add(((IfForm) form).getElsePart());
+		} else if (form instanceof InlinedCall) {
+			ret.add(((InlinedCall) form).getInlinedBody());
+			ret.add(((InlinedCall) form).getCall());
+		} else if (form instanceof LocalSetForm) {
+			ret.add(((LocalSetForm) form).getValue());
+		} else if (form instanceof OrForm) {
+			ret.addAll(((OrForm) form).getForms());
+		} else if (form instanceof SetForm) {
+			ret.add(((SetForm) form).getValue());
+		}
+		return ret;
+	}
+}
@@ -20,15 +20,31 @@ import java.io.*;
 
 public final class OutputPort extends SchemeObject {
 	private final Writer _writer;
+	private final boolean _lineBuffered;
+	private final char[] _buffer = new char[8192];
+	private int _count;
+	private boolean _newlineWritten;
+	private volatile boolean _closed;
 
 	public OutputPort(Writer writer) {
+		this(writer, false);
+	}
+
+	// A line buffered port is flushed after every write containing a
+	// newline, otherwise only when the buffer is full, on flush and on close.
+	public OutputPort(Writer writer, boolean lineBuffered) {
 		_writer = writer;
+		_lineBuffered = lineBuffered;
 	}
 
 	public boolean isOutputPort() {
 		return true;
 	}
 
+	public boolean isLineBuffered() {
+		return _lineBuffered;
+	}
+
 	@Override
 	public String toString(boolean forDisplay) {
 		return "<output-port>";
@@ -36,15 +52,115 @@ public final class OutputPort extends SchemeObject {
 
 	public void write(String string) throws SchemeException {
 		try {
-			_writer.write(string);
+			append(string, 0, string.length());
+		} catch (IOException e) {
+			throw new SchemeException("Error writing to output port: "
+					+ e.getMessage());
+		}
+		flushLineIfNecessary();
+	}
+
+	public void write(char c) throws SchemeException {
+		try {
+			append(c);
+		} catch (IOException e) {
+			throw new SchemeException("Error writing to output port: "
+					+ e.getMessage());
+		}
+		flushLineIfNecessary();
+	}
+
+	// Streams the external representation of o into the port, without
+	// building it as a String first
+	public void write(SchemeObject o, boolean forDisplay)
+			throws SchemeException {
+		try {
+			o.write(_appender, forDisplay);
+		} catch (IOException e) {
+			throw new SchemeException("Error writing to output port: "
+					+ e.getMessage());
+		}
+		flushLineIfNecessary();
+	}
+
+	private final Appendable _appender = new Appendable() {
+		@Override
+		public Appendable append(CharSequence csq) throws IOException {
+			OutputPort.this.append(csq, 0, csq.length());
+			return this;
+		}
+
+		@Override
+		public Appendable append(CharSequence csq, int start, int end)
+				throws IOException {
+			OutputPort.this.append(csq, start, end);
+			return this;
+		}
+
+		@Override
+		public Appendable append(char c) throws IOException {
+			OutputPort.this.append(c);
+			return this;
+		}
+	};
+
+	private void append(char c) throws IOException {
+		if (_count == _buffer.length) writeBuffer();
+		_buffer[_count++] = c;
+		if (c == '\n') _newlineWritten = true;
+	}
+
+	private void append(CharSequence csq, int start, int end)
+			throws IOException {
+		if (end - start > _buffer.length - _count) {
+			writeBuffer();
+			if (end - start > _buffer.length) {
+				_writer.append(csq, start, end);
+				_newlineWritten = true; // Be conservative, don't search
+				return;
+			}
+		}
+		if (csq instanceof String) {
+			((String) csq).getChars(start, end, _buffer, _count);
+			_count += end - start;
+			if (_lineBuffered) {
+				final int newline = ((String) csq).indexOf('\n', start);
+				if (newline != -1 && newline < end) _newlineWritten = true;
+			}
+		} else {
+			for (int i = start; i < end; ++i)
+				append(csq.charAt(i));
+		}
+	}
+
+	private void flushLineIfNecessary() throws SchemeException {
+		if (_lineBuffered && _newlineWritten) flush();
+	}
+
+	private void writeBuffer() throws IOException {
+		if (_count == 0) return;
+		_writer.write(_buffer, 0, _count);
+		_count = 0;
+	}
+
+	public void flush() throws SchemeException {
+		try {
+			writeBuffer();
 			_writer.flush();
+			_newlineWritten = false;
 		} catch (IOException e) {
 			throw new SchemeException("Error writing to output port: "
 					+ e.getMessage());
 		}
 	}
 
+	public boolean isClosed() {
+		return _closed;
+	}
+
 	public void close() throws SchemeException {
+		flush();
+		_closed = true;
 		try {
 			_writer.close();
 		} catch (IOException e) {
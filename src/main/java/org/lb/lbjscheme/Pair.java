@@ -16,6 +16,7 @@
 
 package org.lb.lbjscheme;
 
+import java.io.IOException;
 import java.util.*;
 
 public final class Pair extends SchemeList {
@@ -84,26 +85,40 @@ public final class Pair extends SchemeList {
 
 	@Override
 	public String toString(boolean forDisplay) {
-		final StringBuilder ret = new StringBuilder();
+		return writeToString(forDisplay);
+	}
 
-		ret.append("(");
+	// Nested lists are written without recursion, so that deeply nested
+	// cars cannot overflow the stack: the rest of every list that is still
+	// open is kept in an explicit stack instead.
+	@Override
+	public void write(Appendable out, boolean forDisplay) throws IOException {
+		final Deque<SchemeObject> openLists = new ArrayDeque<>();
+		out.append('(');
 
 		Pair i = this;
 		while (true) {
-			ret.append(i._car.toString(forDisplay));
-			if (i._cdr.isNull()) break;
-			ret.append(" ");
-
-			if (!(i._cdr instanceof Pair)) {
-				ret.append(". ");
-				ret.append(i._cdr.toString(forDisplay));
-				break;
+			if (i._car instanceof Pair) {
+				openLists.push(i._cdr);
+				out.append('(');
+				i = (Pair) i._car;
+				continue;
 			}
-			i = (Pair) i._cdr;
+			i._car.write(out, forDisplay);
+
+			SchemeObject rest = i._cdr;
+			while (!(rest instanceof Pair)) {
+				if (!rest.isNull()) {
+					out.append(" . ");
+					rest.write(out, forDisplay);
+				}
+				out.append(')');
+				if (openLists.isEmpty()) return;
+				rest = openLists.pop();
+			}
+			out.append(' ');
+			i = (Pair) rest;
 		}
-
-		ret.append(")");
-		return ret.toString();
 	}
 
 	@Override
@@ -29,7 +29,7 @@ public final class Rational extends SchemeNumber {
 	private static final Pattern _rationalRegex = Pattern
 			.compile("^([+-]?\\d+)/(\\d+)$");
 
-	public Rational(int value) {
+	public Rational(long value) {
 		_n = BigInteger.valueOf(value);
 		_d = BigInteger.ONE;
 		_isExact = true;
@@ -17,13 +17,13 @@
 package org.lb.lbjscheme;
 
 import java.io.EOFException;
+import java.util.Locale;
 
 public final class Reader {
 	private static final Symbol _dot = Symbol.fromString(".");
 	private static final Symbol _listEnd = Symbol.fromString(")");
 
 	private final InputPort _input;
-	private int _nextChar = -2;
 
 	public Reader(InputPort input) {
 		_input = input;
@@ -61,27 +61,51 @@ public final class Reader {
 		case '#':
 			return readSpecial();
 		default:
-			return readSymbolOrNumber("");
+			return readSymbolOrNumber();
 		}
 	}
 
 	private void skipWhitespace() throws SchemeException {
-		while (!isEof() && Character.isWhitespace(peekChar()))
-			readChar();
+		do {
+			final char[] buffer = _input.getBuffer();
+			final int limit = _input.getLimit();
+			int i = _input.getPosition();
+			while (i < limit && Character.isWhitespace(buffer[i]))
+				++i;
+			_input.setPosition(i);
+			if (i < limit) return;
+		} while (_input.fill());
 	}
 
 	private void skipComment() throws SchemeException {
-		while (!isEof() && peekChar() != '\n')
-			readChar();
+		do {
+			final char[] buffer = _input.getBuffer();
+			final int limit = _input.getLimit();
+			int i = _input.getPosition();
+			while (i < limit && buffer[i] != '\n')
+				++i;
+			_input.setPosition(i);
+			if (i < limit) return;
+		} while (_input.fill());
 	}
 
-	private boolean isEof() throws SchemeException {
-		ensureAtLeastOneCharRead();
-		return _nextChar == -1;
+	// Scans up to the next ')' or whitespace; the token is everything from
+	// the mark set by the caller
+	private void scanToken() throws SchemeException {
+		do {
+			final char[] buffer = _input.getBuffer();
+			final int limit = _input.getLimit();
+			int i = _input.getPosition();
+			while (i < limit && buffer[i] != ')'
+					&& !Character.isWhitespace(buffer[i]))
+				++i;
+			_input.setPosition(i);
+			if (i < limit) break;
+		} while (_input.fill());
 	}
 
-	private void ensureAtLeastOneCharRead() throws SchemeException {
-		if (_nextChar == -2) _nextChar = _input.readChar();
+	private boolean isEof() throws SchemeException {
+		return _input.peekChar() == -1;
 	}
 
 	private void assertNotEof() throws SchemeException {
@@ -90,14 +114,12 @@ public final class Reader {
 
 	private char peekChar() throws SchemeException {
 		assertNotEof();
-		return (char) _nextChar;
+		return (char) _input.peekChar();
 	}
 
 	private char readChar() throws SchemeException {
 		assertNotEof();
-		final char ret = (char) _nextChar;
-		_nextChar = _input.readChar();
-		return ret;
+		return (char) _input.readChar();
 	}
 
 	private SchemeObject readList() throws SchemeException {
@@ -132,7 +154,24 @@ public final class Reader {
 
 	private SchemeObject readString() throws SchemeException {
 		readChar(); // Opening quote
-		final StringBuilder sb = new StringBuilder();
+		_input.mark();
+		do {
+			final char[] buffer = _input.getBuffer();
+			final int limit = _input.getLimit();
+			int i = _input.getPosition();
+			while (i < limit && buffer[i] != '"' && buffer[i] != '\\')
+				++i;
+			_input.setPosition(i);
+			if (i < limit) break;
+		} while (_input.fill());
+		final char end = peekChar();
+		final String start = _input.takeMarked();
+		if (end == '"') {
+			readChar(); // Closing quote
+			return new SchemeString(start);
+		}
+
+		final StringBuilder sb = new StringBuilder(start);
 		while (peekChar() != '"') {
 			char c = readChar();
 			if (c == '\\') {
@@ -148,9 +187,17 @@ public final class Reader {
 	}
 
 	private SchemeObject readSpecial() throws SchemeException, EOFException {
+		_input.mark();
 		readChar(); // #
-		if (peekChar() == '(') return new Vector((SchemeList) readList());
-		if (peekChar() != '\\') return readSymbolOrNumber("#");
+		if (peekChar() == '(') {
+			_input.clearMark();
+			return new Vector((SchemeList) readList());
+		}
+		if (peekChar() != '\\') {
+			scanToken();
+			return readSymbolOrNumber(_input.takeMarked());
+		}
+		_input.clearMark();
 		readChar();
 		return readCharacter();
 	}
@@ -180,41 +227,54 @@ public final class Reader {
 		}
 	}
 
-	private SchemeObject readSymbolOrNumber(String init) throws SchemeException {
-		if (init.length() == 0 && peekChar() == ')') {
+	private SchemeObject readSymbolOrNumber() throws SchemeException {
+		if (peekChar() == ')') {
 			readChar();
 			return _listEnd;
 		}
+		_input.mark();
+		scanToken();
 
-		final StringBuilder sb = new StringBuilder();
-		sb.append(init);
+		// A token that cannot start a number is a symbol, so it is interned
+		// straight from the buffer instead of being copied out first
+		final int start = _input.getMark();
+		if (!mayStartNumber(_input.getBuffer()[start])) {
+			final Symbol ret = Symbol.fromLowerCaseChars(_input.getBuffer(),
+					start, _input.getPosition() - start);
+			if (ret != null) {
+				_input.clearMark();
+				return ret;
+			}
+		}
+		return readSymbolOrNumber(_input.takeMarked());
+	}
 
-		while (!isEof() && peekChar() != ')'
-				&& !Character.isWhitespace(peekChar()))
-			sb.append(readChar());
-		final String symbol = sb.toString();
+	private static boolean mayStartNumber(char c) {
+		return (c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.'
+				|| c == '#';
+	}
 
+	private SchemeObject readSymbolOrNumber(String symbol)
+			throws SchemeException {
 		if (symbol.equals("#t")) return True.getInstance();
 		if (symbol.equals("#f")) return False.getInstance();
 
-		try {
-			return SchemeNumber.fromString(symbol, 10);
-		} catch (Exception ex) {
-			if (symbol.startsWith("#e"))
-				return SchemeNumber.fromString(symbol.substring(2), 10)
-						.makeExact();
-			if (symbol.startsWith("#i"))
-				return SchemeNumber.fromString(symbol.substring(2), 10)
-						.makeInexact();
-			if (symbol.startsWith("#x"))
-				return SchemeNumber.fromString(symbol.substring(2), 16);
-			if (symbol.startsWith("#d"))
-				return SchemeNumber.fromString(symbol.substring(2), 10);
-			if (symbol.startsWith("#o"))
-				return SchemeNumber.fromString(symbol.substring(2), 8);
-			if (symbol.startsWith("#b"))
-				return SchemeNumber.fromString(symbol.substring(2), 2);
-			return Symbol.fromString(symbol.toLowerCase());
-		}
+		final SchemeNumber number = SchemeNumber.parse(symbol, 10);
+		if (number != null) return number;
+
+		if (symbol.startsWith("#e"))
+			return SchemeNumber.fromString(symbol.substring(2), 10).makeExact();
+		if (symbol.startsWith("#i"))
+			return SchemeNumber.fromString(symbol.substring(2), 10)
+					.makeInexact();
+		if (symbol.startsWith("#x"))
+			return SchemeNumber.fromString(symbol.substring(2), 16);
+		if (symbol.startsWith("#d"))
+			return SchemeNumber.fromString(symbol.substring(2), 10);
+		if (symbol.startsWith("#o"))
+			return SchemeNumber.fromString(symbol.substring(2), 8);
+		if (symbol.startsWith("#b"))
+			return SchemeNumber.fromString(symbol.substring(2), 2);
+		return Symbol.fromString(symbol.toLowerCase(Locale.ROOT));
 	}
 }
@@ -22,7 +22,7 @@ public final class Real extends SchemeNumber {
 	private final static BigDecimal _oneHalf = BigDecimal.valueOf(5, 1);
 	private final double _value;
 
-	public Real(int value) {
+	public Real(long value) {
 		_value = value;
 	}
 
@@ -77,7 +77,7 @@ public final class Real extends SchemeNumber {
 
 	@Override
 	public SchemeNumber getDenominator() {
-		return new Fixnum(1);
+		return Fixnum.valueOf(1);
 	}
 
 	@Override
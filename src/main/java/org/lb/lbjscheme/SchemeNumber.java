@@ -16,6 +16,8 @@
 
 package org.lb.lbjscheme;
 
+import java.math.BigInteger;
+
 public abstract class SchemeNumber extends SchemeObject {
 	@Override
 	public String toString(boolean forDisplay) {
@@ -157,31 +159,126 @@ public abstract class SchemeNumber extends SchemeObject {
 
 	public static SchemeNumber fromString(String value, int base)
 			throws SchemeException {
-		try {
-			return Fixnum.valueOf(value, base);
-		} catch (Exception ex) {
-			try {
-				return Bignum.valueOf(value, base);
-			} catch (Exception ex2) {
-				try {
-					return Rational.valueOf(value, base);
-				} catch (Exception ex3) {
-					try {
-						return Real.valueOf(value.charAt(0)
-								+ value.substring(1).replace("#", "0"), base);
-					} catch (Exception ex4) {
-						try {
-							return Complex.valueOf(value, base);
-						} catch (Exception ex5) {
-							throw new SchemeException(
-									"The string '"
-											+ value
-											+ "' can not be converted to a number in base "
-											+ base);
-						}
-					}
-				}
+		final SchemeNumber ret = parse(value, base);
+		if (ret == null)
+			throw new SchemeException("The string '" + value
+					+ "' can not be converted to a number in base " + base);
+		return ret;
+	}
+
+	// Returns null instead of throwing if value is not a number, so that the
+	// reader can tell symbols from numbers cheaply.
+	public static SchemeNumber parse(String value, int base)
+			throws SchemeException {
+		final int length = value.length();
+		if (isInteger(value, 0, length, base)) return parseInteger(value, base);
+		if (base != 10) return null;
+
+		final int slash = value.indexOf('/');
+		if (slash != -1 && isInteger(value, 0, slash, 10)
+				&& isUnsignedInteger(value, slash + 1, length))
+			return isZero(value, slash + 1, length) ? null : Rational.valueOf(
+					value, 10);
+
+		if (isReal(value, 0, length))
+			return Real.valueOf(value.replace('#', '0'), 10);
+
+		if (length > 1 && value.charAt(length - 1) == 'i') {
+			int pos = value.lastIndexOf('+');
+			if (pos == -1) pos = value.lastIndexOf('-');
+			if (pos == -1) return null;
+			final SchemeNumber real = parse(value.substring(0, pos), 10);
+			if (real == null) return null;
+			final SchemeNumber imag = parse(
+					value.substring(pos, length - 1), 10);
+			if (imag == null) return null;
+			return Complex.valueOf(real, imag);
+		}
+
+		return null;
+	}
+
+	private static boolean isInteger(String value, int from, int to, int base) {
+		if (from < to && isSign(value.charAt(from))) ++from;
+		if (from == to) return false;
+		for (int i = from; i < to; ++i)
+			if (Character.digit(value.charAt(i), base) == -1) return false;
+		return true;
+	}
+
+	private static boolean isUnsignedInteger(String value, int from, int to) {
+		if (from == to) return false;
+		for (int i = from; i < to; ++i)
+			if (!isDigit(value.charAt(i))) return false;
+		return true;
+	}
+
+	private static boolean isZero(String value, int from, int to) {
+		for (int i = from; i < to; ++i)
+			if (value.charAt(i) != '0') return false;
+		return true;
+	}
+
+	private static boolean isSign(char c) {
+		return c == '+' || c == '-';
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static SchemeNumber parseInteger(String value, int base) {
+		final int length = value.length();
+		final boolean negative = value.charAt(0) == '-';
+		final int start = negative || value.charAt(0) == '+' ? 1 : 0;
+		long ret = 0;
+		for (int i = start; i < length; ++i) {
+			final int digit = Character.digit(value.charAt(i), base);
+			if (ret > (Long.MAX_VALUE - digit) / base)
+				return Bignum.valueOf(new BigInteger(value, base));
+			ret = ret * base + digit;
+		}
+		return Fixnum.valueOf(negative ? -ret : ret);
+	}
+
+	// [+-] digits [#...] [. [digits] [#...]] [exponent-marker [+-] digits],
+	// with at least one digit in the mantissa
+	private static boolean isReal(String value, int from, int to) {
+		int i = from;
+		if (i < to && isSign(value.charAt(i))) ++i;
+		int digits = 0;
+		while (i < to && (isDigit(value.charAt(i)) || digits > 0
+				&& value.charAt(i) == '#')) {
+			++digits;
+			++i;
+		}
+		if (i < to && value.charAt(i) == '.') {
+			++i;
+			while (i < to && (isDigit(value.charAt(i)) || digits > 0
+					&& value.charAt(i) == '#')) {
+				++digits;
+				++i;
 			}
 		}
+		if (digits == 0) return false;
+		if (i == to) return true;
+
+		switch (value.charAt(i)) {
+		case 'e':
+		case 'E':
+		case 's':
+		case 'f':
+		case 'd':
+		case 'l':
+			++i;
+			break;
+		default:
+			return false;
+		}
+		if (i < to && isSign(value.charAt(i))) ++i;
+		if (i == to) return false;
+		for (; i < to; ++i)
+			if (!isDigit(value.charAt(i))) return false;
+		return true;
 	}
 }
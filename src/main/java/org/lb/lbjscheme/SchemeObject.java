@@ -16,6 +16,8 @@
 
 package org.lb.lbjscheme;
 
+import java.io.IOException;
+
 public abstract class SchemeObject {
 	@Override
 	public final String toString() {
@@ -24,6 +26,22 @@ public abstract class SchemeObject {
 
 	public abstract String toString(boolean forDisplay);
 
+	// Writes the external representation to out. Compound objects override
+	// this to stream their elements instead of building one big String.
+	public void write(Appendable out, boolean forDisplay) throws IOException {
+		out.append(toString(forDisplay));
+	}
+
+	protected final String writeToString(boolean forDisplay) {
+		final StringBuilder ret = new StringBuilder();
+		try {
+			write(ret, forDisplay);
+		} catch (IOException e) {
+			// Impossible, StringBuilder does not throw
+		}
+		return ret.toString();
+	}
+
 	public abstract Object toJavaObject() throws SchemeException;
 
 	public boolean isNumber() {
@@ -16,6 +16,9 @@
 
 package org.lb.lbjscheme;
 
+import java.io.IOException;
+import java.nio.CharBuffer;
+
 public final class SchemeString extends SchemeObject {
 	private final char[] _characters;
 
@@ -58,30 +61,37 @@ public final class SchemeString extends SchemeObject {
 	@Override
 	public String toString(boolean forDisplay) {
 		if (forDisplay) return getValue();
+		return writeToString(false);
+	}
+
+	@Override
+	public void write(Appendable out, boolean forDisplay) throws IOException {
+		if (forDisplay) {
+			out.append(CharBuffer.wrap(_characters));
+			return;
+		}
 
-		final StringBuilder ret = new StringBuilder();
-		ret.append("\"");
+		out.append('"');
 		for (char c : _characters) {
 			switch (c) {
 			case '\\':
-				ret.append("\\\\");
+				out.append("\\\\");
 				break;
 			case '\n':
-				ret.append("\\n");
+				out.append("\\n");
 				break;
 			case '\r':
-				ret.append("\\r");
+				out.append("\\r");
 				break;
 			case '\t':
-				ret.append("\\t");
+				out.append("\\t");
 				break;
 			default:
-				ret.append(c);
+				out.append(c);
 				break;
 			}
 		}
-		ret.append("\"");
-		return ret.toString();
+		out.append('"');
 	}
 
 	@Override
@@ -17,6 +17,8 @@
 package org.lb.lbjscheme;
 
 import java.util.List;
+import org.lb.lbjscheme.ast.CaseForm;
+import org.lb.lbjscheme.ast.LambdaForm;
 
 public final class SourceEmitter implements Emitter {
 	@Override
@@ -34,6 +36,12 @@ public final class SourceEmitter implements Emitter {
 		System.out.println("    DEFVAR " + variable);
 	}
 
+	@Override
+	public void emitGetLocal(final Symbol variable, int depth, int index) {
+		System.out.println("    GETLOCAL " + depth + "," + index + " ; "
+				+ variable);
+	}
+
 	@Override
 	public void emitGetVariable(final Symbol variable) {
 		System.out.println("    GETVAR " + variable);
@@ -45,13 +53,13 @@ public final class SourceEmitter implements Emitter {
 	}
 
 	@Override
-	public void emitJump(final String doneLabel) {
-		System.out.println("    JMP " + doneLabel);
+	public void emitJump(final int doneLabel) {
+		System.out.println("    JMP L" + doneLabel);
 	}
 
 	@Override
-	public void emitJumpIfFalse(final String label) {
-		System.out.println("    BNE " + label);
+	public void emitJumpIfFalse(final int label) {
+		System.out.println("    BNE L" + label);
 	}
 
 	@Override
@@ -60,11 +68,11 @@ public final class SourceEmitter implements Emitter {
 	}
 
 	@Override
-	public void emitMakeClosure(String name, String closureLabel,
-			boolean hasRestParameter, List<Symbol> parameterNames) {
-		System.out.println("    MAKECLOSURE " + name + " " + closureLabel + " "
-				+ (hasRestParameter ? "#t " : "#f ")
-				+ parameterNamesListToString(parameterNames));
+	public void emitMakeClosure(LambdaForm form, int closureLabel) {
+		System.out.println("    MAKECLOSURE " + form.getName() + " L"
+				+ closureLabel + " " + (form.HasRestParameter() ? "#t " : "#f ")
+				+ parameterNamesListToString(form.getParameterNames()) + " "
+				+ form.getFrameSize());
 	}
 
 	private static String parameterNamesListToString(List<Symbol> parameterNames) {
@@ -82,6 +90,11 @@ public final class SourceEmitter implements Emitter {
 		System.out.println("    POPCONT");
 	}
 
+	@Override
+	public void emitPrimitive(final Symbol primitive) {
+		System.out.println("    PRIM " + primitive);
+	}
+
 	@Override
 	public void emitPushAll() {
 		System.out.println("    PUSHCONT");
@@ -93,8 +106,28 @@ public final class SourceEmitter implements Emitter {
 	}
 
 	@Override
-	public void emitSetContinuationRegisterToLabel(final String label) {
-		System.out.println("    SETCONT " + label);
+	public void emitSelfTailCall(LambdaForm form, int bodyLabel) {
+		System.out.println("    SELFCALL " + form.getName() + " L"
+				+ bodyLabel);
+	}
+
+	@Override
+	public void emitSwitch(CaseForm form, int[] labels) {
+		final StringBuilder line = new StringBuilder("    SWITCH");
+		for (int label : labels)
+			line.append(" L").append(label);
+		System.out.println(line);
+	}
+
+	@Override
+	public void emitSetContinuationRegisterToLabel(final int label) {
+		System.out.println("    SETCONT L" + label);
+	}
+
+	@Override
+	public void emitSetLocal(final Symbol variable, int depth, int index) {
+		System.out.println("    SETLOCAL " + depth + "," + index + " ; "
+				+ variable);
 	}
 
 	@Override
@@ -108,7 +141,7 @@ public final class SourceEmitter implements Emitter {
 	}
 
 	@Override
-	public void setLabelPositionToHere(final String label) {
-		System.out.println(label + ":");
+	public void setLabelPositionToHere(final int label) {
+		System.out.println("L" + label + ":");
 	}
 }
\ No newline at end of file
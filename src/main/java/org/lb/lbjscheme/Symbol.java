@@ -16,7 +16,8 @@
 
 package org.lb.lbjscheme;
 
-import java.util.HashMap;
+import java.lang.ref.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class Symbol extends SchemeObject {
 	private final String _name;
@@ -30,14 +31,105 @@ public final class Symbol extends SchemeObject {
 		return _name;
 	}
 
-	private static final HashMap<String, Symbol> _cache = new HashMap<>();
+	// Symbols are interned weakly: a symbol nobody refers to any more can be
+	// collected, and interning the same name later creates a new one, which
+	// nobody can tell apart from the old one.
+	private static final ConcurrentHashMap<String, SymbolReference> _table = new ConcurrentHashMap<>();
+	private static final ReferenceQueue<Symbol> _collected = new ReferenceQueue<>();
+
+	private static final class SymbolReference extends WeakReference<Symbol> {
+		final String name;
+
+		SymbolReference(Symbol symbol) {
+			super(symbol, _collected);
+			name = symbol._name;
+		}
+	}
 
 	public static Symbol fromString(String name) {
-		final Symbol fromCache = _cache.get(name);
-		if (fromCache != null) return fromCache;
-		final Symbol ret = new Symbol(name);
-		_cache.put(name, ret);
-		return ret;
+		SymbolReference ref = _table.get(name);
+		if (ref != null) {
+			final Symbol ret = ref.get();
+			if (ret != null) return ret;
+		}
+
+		removeCollectedSymbols();
+		final Symbol newSymbol = new Symbol(name);
+		final SymbolReference newRef = new SymbolReference(newSymbol);
+		while (true) {
+			ref = _table.putIfAbsent(name, newRef);
+			if (ref == null) return newSymbol;
+			final Symbol existing = ref.get();
+			if (existing != null) return existing;
+			if (_table.replace(name, ref, newRef)) return newSymbol;
+		}
+	}
+
+	// Interns the name held in chars[offset, offset + length), folded to
+	// lower case, without creating a String unless the symbol is new. Only
+	// ASCII names are folded here; returns null for anything else.
+	static Symbol fromLowerCaseChars(char[] chars, int offset, int length) {
+		int hash = 0;
+		for (int i = offset; i < offset + length; ++i) {
+			final char c = chars[i];
+			if (c >= 128) return null;
+			hash = 31 * hash + toLowerCase(c);
+		}
+
+		final SymbolReference ref = _table.get(new CharRange(chars, offset,
+				length, hash));
+		if (ref != null) {
+			final Symbol ret = ref.get();
+			if (ret != null) return ret;
+		}
+
+		final char[] name = new char[length];
+		for (int i = 0; i < length; ++i)
+			name[i] = toLowerCase(chars[offset + i]);
+		return fromString(new String(name));
+	}
+
+	private static char toLowerCase(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+
+	// Lookup key for a range of characters that are already known to be
+	// ASCII. Map.get() compares with key.equals(k), so this matches the
+	// String keys of _table without a String being built for it.
+	private static final class CharRange {
+		private final char[] _chars;
+		private final int _offset;
+		private final int _length;
+		private final int _hash;
+
+		CharRange(char[] chars, int offset, int length, int hash) {
+			_chars = chars;
+			_offset = offset;
+			_length = length;
+			_hash = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return _hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof String)) return false;
+			final String s = (String) o;
+			if (s.length() != _length) return false;
+			for (int i = 0; i < _length; ++i)
+				if (s.charAt(i) != toLowerCase(_chars[_offset + i]))
+					return false;
+			return true;
+		}
+	}
+
+	private static void removeCollectedSymbols() {
+		Reference<? extends Symbol> ref;
+		while ((ref = _collected.poll()) != null)
+			_table.remove(((SymbolReference) ref).name, ref);
 	}
 
 	@Override
@@ -16,6 +16,7 @@
 
 package org.lb.lbjscheme;
 
+import java.io.IOException;
 import java.util.*;
 
 public final class Vector extends SchemeObject {
@@ -57,26 +58,23 @@ public final class Vector extends SchemeObject {
 
 	@Override
 	public String toString(boolean forDisplay) {
-		final StringBuilder ret = new StringBuilder();
+		return writeToString(forDisplay);
+	}
 
+	@Override
+	public void write(Appendable out, boolean forDisplay) throws IOException {
 		if (forDisplay) {
 			for (SchemeObject o : _values)
-				ret.append(o.toString(true));
-			return ret.toString();
+				o.write(out, true);
+			return;
 		}
 
-		ret.append("#(");
-		for (SchemeObject c : _values) {
-			ret.append(c.toString(false));
-			ret.append(" ");
+		out.append("#(");
+		for (int i = 0; i < _values.length; ++i) {
+			if (i > 0) out.append(' ');
+			_values[i].write(out, false);
 		}
-
-		if (ret.length() > 2)
-			ret.setCharAt(ret.length() - 1, ')');
-		else
-			ret.append(')');
-
-		return ret.toString();
+		out.append(')');
 	}
 
 	@Override
@@ -16,13 +16,19 @@
 
 package org.lb.lbjscheme.ast;
 
+import java.util.List;
+import org.lb.lbjscheme.*;
+
 public final class Apply extends SyntaxTreeObject {
 	private final SyntaxTreeObject _procedure;
 	private final SyntaxTreeObject _parameters;
+	private final Analyzer _analyzer;
 
-	public Apply(SyntaxTreeObject procedure, SyntaxTreeObject parameters) {
+	public Apply(SyntaxTreeObject procedure, SyntaxTreeObject parameters,
+			Analyzer analyzer) {
 		_procedure = procedure;
 		_parameters = parameters;
+		_analyzer = analyzer;
 	}
 
 	public SyntaxTreeObject getProcedure() {
@@ -32,4 +38,38 @@ public final class Apply extends SyntaxTreeObject {
 	public SyntaxTreeObject getParameters() {
 		return _parameters;
 	}
+
+	// See Funcall.getAnalyzer
+	public Analyzer getAnalyzer() {
+		return _analyzer;
+	}
+
+	@Override
+	public SchemeObject execute(Frame frame, Environment env)
+			throws SchemeException {
+		return execute(frame, env, false);
+	}
+
+	@Override
+	public SchemeObject executeTail(Frame frame, Environment env)
+			throws SchemeException {
+		return execute(frame, env, true);
+	}
+
+	private SchemeObject execute(Frame frame, Environment env, boolean tail)
+			throws SchemeException {
+		final SchemeObject procedure = _procedure.execute(frame, env);
+		if (procedure.isNull())
+			throw new SchemeException("Empty list can not be applied");
+		final SchemeObject parameterList = _parameters.execute(frame, env);
+		if (!(parameterList instanceof SchemeList))
+			throw new SchemeException(
+					"Invalid apply form: Expected argument list, got "
+							+ parameterList.getClass());
+		final List<SchemeObject> parameters = ((SchemeList) parameterList)
+				.toJavaList();
+		return CallNode.apply(procedure,
+				parameters.toArray(new SchemeObject[parameters.size()]),
+				_analyzer, tail);
+	}
 }
@@ -17,6 +17,7 @@
 package org.lb.lbjscheme.ast;
 
 import java.util.List;
+import org.lb.lbjscheme.*;
 
 public final class BeginForm extends SyntaxTreeObject {
 	private final List<SyntaxTreeObject> _formsWithoutLast;
@@ -35,4 +36,28 @@ public final class BeginForm extends SyntaxTreeObject {
 	public SyntaxTreeObject getLastForm() {
 		return _lastForm;
 	}
+
+	@Override
+	public SchemeObject execute(Frame frame, Environment env)
+			throws SchemeException {
+		for (SyntaxTreeObject i : _formsWithoutLast)
+			i.execute(frame, env);
+		return _lastForm.execute(frame, env);
+	}
+
+	@Override
+	public SchemeObject executeTail(Frame frame, Environment env)
+			throws SchemeException {
+		for (SyntaxTreeObject i : _formsWithoutLast)
+			i.execute(frame, env);
+		return _lastForm.executeTail(frame, env);
+	}
+
+	@Override
+	SyntaxTreeObject executeToTail(Frame frame, Environment env)
+			throws SchemeException {
+		for (SyntaxTreeObject i : _formsWithoutLast)
+			i.execute(frame, env);
+		return _lastForm.executeToTail(frame, env);
+	}
 }
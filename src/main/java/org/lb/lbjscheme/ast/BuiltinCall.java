@@ -0,0 +1,59 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.ast;
+
+import org.lb.lbjscheme.*;
+
+// Calls builtins of a single class with up to three arguments, without
+// allocating an argument list.
+final class BuiltinCall extends CallNode {
+	private final Class<?> _builtinClass;
+
+	BuiltinCall(Class<?> builtinClass) {
+		_builtinClass = builtinClass;
+	}
+
+	boolean accepts(SchemeObject procedure) {
+		return procedure.getClass() == _builtinClass;
+	}
+
+	@Override
+	SchemeObject call(Funcall form, SchemeObject procedure, Frame frame,
+			Environment env, boolean tail) throws SchemeException {
+		if (!accepts(procedure))
+			return form.generalize().call(form, procedure, frame, env, tail);
+
+		final Builtin builtin = (Builtin) procedure;
+		final SyntaxTreeObject[] parameters = form.getParameterArray();
+		switch (parameters.length) {
+		case 0:
+			return builtin.apply0();
+		case 1:
+			return builtin.apply1(parameters[0].execute(frame, env));
+		case 2: {
+			final SchemeObject first = parameters[0].execute(frame, env);
+			return builtin.apply2(first, parameters[1].execute(frame, env));
+		}
+		default: {
+			final SchemeObject first = parameters[0].execute(frame, env);
+			final SchemeObject second = parameters[1].execute(frame, env);
+			return builtin.apply3(first, second,
+					parameters[2].execute(frame, env));
+		}
+		}
+	}
+}
@@ -0,0 +1,71 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.ast;
+
+import java.util.*;
+import org.lb.lbjscheme.*;
+
+// The part of a Funcall that actually calls the procedure. A Funcall starts
+// out with an UninitializedCall, which replaces itself with a call node
+// specialized for the kind of procedure seen on the first call. Each
+// specialization checks that it still applies and falls back to a
+// GenericCall for good otherwise.
+abstract class CallNode {
+	abstract SchemeObject call(Funcall form, SchemeObject procedure,
+			Frame frame, Environment env, boolean tail) throws SchemeException;
+
+	static SchemeObject[] evaluateArguments(SyntaxTreeObject[] parameters,
+			Frame frame, Environment env) throws SchemeException {
+		final SchemeObject[] ret = new SchemeObject[parameters.length];
+		for (int i = 0; i < parameters.length; ++i)
+			ret[i] = parameters[i].execute(frame, env);
+		return ret;
+	}
+
+	static SchemeObject apply(SchemeObject procedure,
+			SchemeObject[] arguments, Analyzer analyzer, boolean tail)
+			throws SchemeException {
+		if (procedure instanceof Builtin)
+			return ((Builtin) procedure).apply(Arrays.asList(arguments));
+
+		// Ugly hack: Can only happen on lambdas returned by (eval)
+		if (procedure instanceof Lambda)
+			procedure = AnalyzedLambda.fromLambda((Lambda) procedure,
+					analyzer);
+
+		if (procedure instanceof AnalyzedLambda) {
+			final AnalyzedLambda l = (AnalyzedLambda) procedure;
+			final Frame frame = new Frame(l.getCaptured(), l.getFrameSize());
+			frame.bindParameters(l.getParameterNames().size(),
+					l.hasRestParameter(), arguments, 0, arguments.length);
+			frame.box(l.getForm().getBoxedSlots());
+			return run(l, frame, tail);
+		}
+
+		throw new SchemeException("Don't know how to call object of type "
+				+ procedure.getClass());
+	}
+
+	// Outside of tail position the body is run right away, without
+	// allocating a TailCall; only tail calls made by the body bounce.
+	static SchemeObject run(AnalyzedLambda l, Frame frame, boolean tail)
+			throws SchemeException {
+		if (tail) return new TailCall(l.getForms(), frame, l.getEnvironment());
+		return SyntaxTreeObject.trampoline(TailCall.run(l.getForms(), frame,
+				l.getEnvironment()));
+	}
+}
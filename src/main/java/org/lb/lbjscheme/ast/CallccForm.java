@@ -16,6 +16,8 @@
 
 package org.lb.lbjscheme.ast;
 
+import org.lb.lbjscheme.*;
+
 public final class CallccForm extends SyntaxTreeObject {
 	private final SyntaxTreeObject _target;
 
@@ -26,4 +28,11 @@ public final class CallccForm extends SyntaxTreeObject {
 	public SyntaxTreeObject getTarget() {
 		return _target;
 	}
+
+	@Override
+	public SchemeObject execute(Frame frame, Environment env)
+			throws SchemeException {
+		throw new SchemeException(
+				"AnalyzingEvaluator doesn't support continuations");
+	}
 }
@@ -0,0 +1,113 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.ast;
+
+import java.util.*;
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.builtins.EqvP;
+
+// (case key ((datum ...) form ...) ... (else form ...)). The clause to run
+// is found by a single hash lookup of the key: data compared by identity
+// under eqv? are looked up as they are, fixnums and characters by their
+// value. Only other numbers are compared one by one.
+public final class CaseForm extends SyntaxTreeObject {
+	private final SyntaxTreeObject _key;
+	private final List<List<SchemeObject>> _data;
+	private final List<SyntaxTreeObject> _clauses;
+	private final SyntaxTreeObject _elseClause;
+	private final HashMap<Object, Integer> _clauseIndices = new HashMap<>();
+	private final List<SchemeNumber> _numbers = new ArrayList<>();
+	private final List<Integer> _numberClauseIndices = new ArrayList<>();
+
+	// data.get(i) holds the data of clauses.get(i)
+	public CaseForm(SyntaxTreeObject key, List<List<SchemeObject>> data,
+			List<SyntaxTreeObject> clauses, SyntaxTreeObject elseClause) {
+		_key = key;
+		_data = data;
+		_clauses = clauses;
+		_elseClause = elseClause;
+		for (int i = 0; i < data.size(); ++i) {
+			for (SchemeObject datum : data.get(i)) {
+				final Object hashKey = getHashKey(datum);
+				if (hashKey != null) {
+					if (!_clauseIndices.containsKey(hashKey))
+						_clauseIndices.put(hashKey, i);
+				} else {
+					_numbers.add((SchemeNumber) datum);
+					_numberClauseIndices.add(i);
+				}
+			}
+		}
+	}
+
+	private static Object getHashKey(SchemeObject datum) {
+		if (datum instanceof Fixnum) return ((Fixnum) datum).getValue();
+		if (datum instanceof SchemeCharacter)
+			return ((SchemeCharacter) datum).getValue();
+		if (datum instanceof SchemeNumber) return null;
+		return datum;
+	}
+
+	public SyntaxTreeObject getKey() {
+		return _key;
+	}
+
+	public List<List<SchemeObject>> getData() {
+		return _data;
+	}
+
+	public List<SyntaxTreeObject> getClauses() {
+		return _clauses;
+	}
+
+	public SyntaxTreeObject getElseClause() {
+		return _elseClause;
+	}
+
+	// The index of the clause to run for the given key; the else clause
+	// has index getClauses().size().
+	public int dispatch(SchemeObject key) throws SchemeException {
+		final Object hashKey = getHashKey(key);
+		if (hashKey != null) {
+			final Integer ret = _clauseIndices.get(hashKey);
+			if (ret != null) return ret;
+		} else {
+			for (int i = 0; i < _numbers.size(); ++i)
+				if (EqvP.isEqv(key, _numbers.get(i)))
+					return _numberClauseIndices.get(i);
+		}
+		return _clauses.size();
+	}
+
+	private SyntaxTreeObject select(Frame frame, Environment env)
+			throws SchemeException {
+		final int index = dispatch(_key.execute(frame, env));
+		return index < _clauses.size() ? _clauses.get(index) : _elseClause;
+	}
+
+	@Override
+	public SchemeObject execute(Frame frame, Environment env)
+			throws SchemeException {
+		return select(frame, env).execute(frame, env);
+	}
+
+	@Override
+	public SchemeObject executeTail(Frame frame, Environment env)
+			throws SchemeException {
+		return select(frame, env).executeTail(frame, env);
+	}
+}
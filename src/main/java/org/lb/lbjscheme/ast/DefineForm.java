@@ -16,9 +16,12 @@
 
 package org.lb.lbjscheme.ast;
 
-import org.lb.lbjscheme.Symbol;
+import org.lb.lbjscheme.*;
 
 public final class DefineForm extends SyntaxTreeObject {
+	private final static Symbol _undefinedSymbol = Symbol
+			.fromString("undefined");
+
 	private final Symbol _target;
 	private final SyntaxTreeObject _analyzedForm;
 
@@ -34,4 +37,11 @@ public final class DefineForm extends SyntaxTreeObject {
 	public SyntaxTreeObject getAnalyzedForm() {
 		return _analyzedForm;
 	}
+
+	@Override
+	public SchemeObject execute(Frame frame, Environment env)
+			throws SchemeException {
+		env.define(_target, _analyzedForm.execute(frame, env));
+		return _undefinedSymbol;
+	}
 }
@@ -17,14 +17,26 @@
 package org.lb.lbjscheme.ast;
 
 import java.util.List;
+import org.lb.lbjscheme.*;
 
 public final class Funcall extends SyntaxTreeObject {
 	private final SyntaxTreeObject _procedure;
 	private final List<SyntaxTreeObject> _parameters;
+	private final SyntaxTreeObject[] _parameterArray;
+	private final Analyzer _analyzer;
+	private CallNode _callNode = _uninitializedCall;
+	private LambdaForm _selfTailCallTarget;
 
-	public Funcall(SyntaxTreeObject procedure, List<SyntaxTreeObject> parameters) {
+	private static final CallNode _uninitializedCall = new UninitializedCall();
+	private static final CallNode _genericCall = new GenericCall();
+
+	public Funcall(SyntaxTreeObject procedure,
+			List<SyntaxTreeObject> parameters, Analyzer analyzer) {
 		_procedure = procedure;
 		_parameters = parameters;
+		_parameterArray = parameters.toArray(new SyntaxTreeObject[parameters
+				.size()]);
+		_analyzer = analyzer;
 	}
 
 	public SyntaxTreeObject getProcedure() {
@@ -34,4 +46,100 @@ public final class Funcall extends SyntaxTreeObject {
 	public List<SyntaxTreeObject> getParameters() {
 		return _parameters;
 	}
+
+	SyntaxTreeObject[] getParameterArray() {
+		return _parameterArray;
+	}
+
+	// The analyzer this call was analyzed by, which also analyzes the
+	// lambdas returned by eval that it calls, so they see the same macros
+	public Analyzer getAnalyzer() {
+		return _analyzer;
+	}
+
+	// Set by the analyzer if the procedure called is known to be the one
+	// whose body contains this call. In tail position, such a call reuses
+	// the frame of the running call and restarts the body.
+	public void setSelfTailCallTarget(LambdaForm target) {
+		_selfTailCallTarget = target;
+	}
+
+	public LambdaForm getSelfTailCallTarget() {
+		return _selfTailCallTarget;
+	}
+
+	void setCallNode(CallNode callNode) {
+		_callNode = callNode;
+	}
+
+	CallNode generalize() {
+		_callNode = _genericCall;
+		return _genericCall;
+	}
+
+	// Calls of closures, and of builtins in tail position, are made right
+	// here instead of in LambdaCall and BuiltinCall: every Java frame on
+	// these paths is paid once per level of non-tail recursion, as in
+	// (define (f n) (if (= n 0) 0 (+ 1 (f (- n 1))))).
+	@Override
+	public SchemeObject execute(Frame frame, Environment env)
+			throws SchemeException {
+		final SchemeObject procedure = _procedure.execute(frame, env);
+		final CallNode node = _callNode;
+		if (!(node instanceof LambdaCall))
+			return node.call(this, procedure, frame, env, false);
+		final Frame calleeFrame = ((LambdaCall) node).bind(this, procedure,
+				frame, env);
+		if (calleeFrame == null)
+			return node.call(this, procedure, frame, env, false);
+
+		// Inlined TailCall.run()
+		final BeginForm body = ((AnalyzedLambda) procedure).getForms();
+		final Environment calleeEnv = ((AnalyzedLambda) procedure)
+				.getEnvironment();
+		SchemeObject ret;
+		do
+			ret = body.executeToTail(calleeFrame, calleeEnv).executeTail(
+					calleeFrame, calleeEnv);
+		while (ret == TailCall.RESTART);
+		return trampoline(ret);
+	}
+
+	@Override
+	public SchemeObject executeTail(Frame frame, Environment env)
+			throws SchemeException {
+		if (_selfTailCallTarget != null) return restart(frame, env);
+		final SchemeObject procedure = _procedure.execute(frame, env);
+		final CallNode node = _callNode;
+		if (!(node instanceof BuiltinCall)
+				|| !((BuiltinCall) node).accepts(procedure))
+			return node.call(this, procedure, frame, env, true);
+
+		final Builtin builtin = (Builtin) procedure;
+		switch (_parameterArray.length) {
+		case 0:
+			return builtin.apply0();
+		case 1:
+			return builtin.apply1(_parameterArray[0].execute(frame, env));
+		case 2: {
+			final SchemeObject first = _parameterArray[0].execute(frame, env);
+			return builtin.apply2(first, _parameterArray[1].execute(frame, env));
+		}
+		default: {
+			final SchemeObject first = _parameterArray[0].execute(frame, env);
+			final SchemeObject second = _parameterArray[1].execute(frame, env);
+			return builtin.apply3(first, second,
+					_parameterArray[2].execute(frame, env));
+		}
+		}
+	}
+
+	private SchemeObject restart(Frame frame, Environment env)
+			throws SchemeException {
+		final int scratch = _selfTailCallTarget.getScratchIndex();
+		for (int i = 0; i < _parameterArray.length; ++i)
+			frame.set(0, scratch + i, _parameterArray[i].execute(frame, env));
+		_selfTailCallTarget.restart(frame);
+		return TailCall.RESTART;
+	}
 }
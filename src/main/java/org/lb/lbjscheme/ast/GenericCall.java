@@ -0,0 +1,33 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.ast;
+
+import org.lb.lbjscheme.*;
+
+final class GenericCall extends CallNode {
+	@Override
+	SchemeObject call(Funcall form, SchemeObject procedure, Frame frame,
+			Environment env, boolean tail) throws SchemeException {
+		if (procedure.isNull())
+			throw new SchemeException("Empty list can not be evaluated");
+		if (procedure.isVector())
+			throw new SchemeException("Vectors must be quoted");
+		return apply(procedure,
+				evaluateArguments(form.getParameterArray(), frame, env),
+				form.getAnalyzer(), tail);
+	}
+}
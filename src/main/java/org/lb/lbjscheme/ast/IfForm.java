@@ -16,6 +16,8 @@
 
 package org.lb.lbjscheme.ast;
 
+import org.lb.lbjscheme.*;
+
 public final class IfForm extends SyntaxTreeObject {
 	private final SyntaxTreeObject _condition;
 	private final SyntaxTreeObject _thenPart;
@@ -39,4 +41,25 @@ public final class IfForm extends SyntaxTreeObject {
 	public SyntaxTreeObject getElsePart() {
 		return _elsePart;
 	}
+
+	@Override
+	public SchemeObject execute(Frame frame, Environment env)
+			throws SchemeException {
+		return (_condition.execute(frame, env) != False.getInstance() ? _thenPart
+				: _elsePart).execute(frame, env);
+	}
+
+	@Override
+	public SchemeObject executeTail(Frame frame, Environment env)
+			throws SchemeException {
+		return (_condition.execute(frame, env) != False.getInstance() ? _thenPart
+				: _elsePart).executeTail(frame, env);
+	}
+
+	@Override
+	SyntaxTreeObject executeToTail(Frame frame, Environment env)
+			throws SchemeException {
+		return (_condition.execute(frame, env) != False.getInstance() ? _thenPart
+				: _elsePart).executeToTail(frame, env);
+	}
 }
@@ -0,0 +1,68 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.ast;
+
+import org.lb.lbjscheme.*;
+
+// A call of a global procedure whose body has been inlined by the
+// Optimizer. The inlined body runs only as long as the variable is still
+// bound to the procedure it was taken from; otherwise the original call is
+// made.
+public final class InlinedCall extends SyntaxTreeObject {
+	private final LiteralSymbol _procedure;
+	private final SchemeObject _expected;
+	private final SyntaxTreeObject _inlinedBody;
+	private final Funcall _call;
+
+	public InlinedCall(LiteralSymbol procedure, SchemeObject expected,
+			SyntaxTreeObject inlinedBody, Funcall call) {
+		_procedure = procedure;
+		_expected = expected;
+		_inlinedBody = inlinedBody;
+		_call = call;
+	}
+
+	public LiteralSymbol getProcedure() {
+		return _procedure;
+	}
+
+	public SchemeObject getExpected() {
+		return _expected;
+	}
+
+	public SyntaxTreeObject getInlinedBody() {
+		return _inlinedBody;
+	}
+
+	public Funcall getCall() {
+		return _call;
+	}
+
+	@Override
+	public SchemeObject execute(Frame frame, Environment env)
+			throws SchemeException {
+		return (_procedure.execute(frame, env) == _expected ? _inlinedBody
+				: _call).execute(frame, env);
+	}
+
+	@Override
+	public SchemeObject executeTail(Frame frame, Environment env)
+			throws SchemeException {
+		return (_procedure.execute(frame, env) == _expected ? _inlinedBody
+				: _call).executeTail(frame, env);
+	}
+}
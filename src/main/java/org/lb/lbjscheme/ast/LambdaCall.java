@@ -0,0 +1,56 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.ast;
+
+import org.lb.lbjscheme.*;
+
+// Calls closures of a single lambda form with a fixed number of
+// parameters, evaluating the arguments straight into the new frame.
+final class LambdaCall extends CallNode {
+	private final LambdaForm _lambdaForm;
+
+	LambdaCall(LambdaForm lambdaForm) {
+		_lambdaForm = lambdaForm;
+	}
+
+	@Override
+	SchemeObject call(Funcall form, SchemeObject procedure, Frame frame,
+			Environment env, boolean tail) throws SchemeException {
+		final Frame calleeFrame = bind(form, procedure, frame, env);
+		if (calleeFrame == null)
+			return form.generalize().call(form, procedure, frame, env, tail);
+		return run((AnalyzedLambda) procedure, calleeFrame, tail);
+	}
+
+	// Returns the frame for running the procedure with the arguments of
+	// form, or null if the procedure is not a closure of this lambda form.
+	Frame bind(Funcall form, SchemeObject procedure, Frame frame,
+			Environment env) throws SchemeException {
+		if (!(procedure instanceof AnalyzedLambda)
+				|| ((AnalyzedLambda) procedure).getForm() != _lambdaForm)
+			return null;
+
+		final AnalyzedLambda l = (AnalyzedLambda) procedure;
+		final SyntaxTreeObject[] parameters = form.getParameterArray();
+		final Frame calleeFrame = new Frame(l.getCaptured(),
+				_lambdaForm.getFrameSize());
+		for (int i = 0; i < parameters.length; ++i)
+			calleeFrame.set(0, i, parameters[i].execute(frame, env));
+		calleeFrame.box(_lambdaForm.getBoxedSlots());
+		return calleeFrame;
+	}
+}
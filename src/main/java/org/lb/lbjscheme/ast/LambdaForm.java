@@ -17,20 +17,38 @@
 package org.lb.lbjscheme.ast;
 
 import java.util.List;
-import org.lb.lbjscheme.Symbol;
+import org.lb.lbjscheme.*;
 
 public final class LambdaForm extends SyntaxTreeObject {
 	private final String _name;
 	private final List<Symbol> _parameterNames;
 	private final boolean _hasRestParameter;
+	private final int _frameSize;
 	private final BeginForm _analyzedForms;
 
+	// Where the free variables are found in the frame the closure is created
+	// in, and which slots of the procedure's own frame have to be boxed (see
+	// Frame).
+	private final int[] _captureDepths;
+	private final int[] _captureIndices;
+	private final int[] _boxedSlots;
+
+	// First of the slots self tail calls store their arguments in, or -1.
+	private final int _scratchIndex;
+
 	public LambdaForm(String name, List<Symbol> parameterNames,
-			boolean hasRestParameter, BeginForm analyzedForms) {
+			boolean hasRestParameter, int frameSize, BeginForm analyzedForms,
+			int[] captureDepths, int[] captureIndices, int[] boxedSlots,
+			int scratchIndex) {
 		_name = name;
 		_parameterNames = parameterNames;
 		_hasRestParameter = hasRestParameter;
+		_frameSize = frameSize;
 		_analyzedForms = analyzedForms;
+		_captureDepths = captureDepths;
+		_captureIndices = captureIndices;
+		_boxedSlots = boxedSlots;
+		_scratchIndex = scratchIndex;
 	}
 
 	public String getName() {
@@ -45,7 +63,49 @@ public final class LambdaForm extends SyntaxTreeObject {
 		return _hasRestParameter;
 	}
 
+	public int getFrameSize() {
+		return _frameSize;
+	}
+
 	public BeginForm getAnalyzedForms() {
 		return _analyzedForms;
 	}
+
+	public int getNumberOfFreeVariables() {
+		return _captureIndices.length;
+	}
+
+	public int[] getBoxedSlots() {
+		return _boxedSlots;
+	}
+
+	public int getScratchIndex() {
+		return _scratchIndex;
+	}
+
+	// The same procedure with another body, as produced by the Optimizer,
+	// which may need more slots for the procedures it inlined.
+	public LambdaForm withBody(BeginForm analyzedForms, int frameSize) {
+		return new LambdaForm(_name, _parameterNames, _hasRestParameter,
+				frameSize, analyzedForms, _captureDepths, _captureIndices,
+				_boxedSlots, _scratchIndex);
+	}
+
+	// Turns the frame of a running call into the frame of the next one
+	// after a self tail call has stored its arguments in the scratch slots.
+	public void restart(Frame frame) {
+		frame.rebindParameters(_parameterNames.size(), _scratchIndex);
+		frame.box(_boxedSlots);
+	}
+
+	// The outer frame of a closure created in the given frame.
+	public Frame capture(Frame frame) {
+		if (_captureIndices.length == 0) return null;
+		return frame.capture(_captureDepths, _captureIndices);
+	}
+
+	@Override
+	public SchemeObject execute(Frame frame, Environment env) {
+		return new AnalyzedLambda(this, capture(frame), env);
+	}
 }
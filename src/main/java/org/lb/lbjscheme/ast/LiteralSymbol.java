@@ -16,10 +16,11 @@
 
 package org.lb.lbjscheme.ast;
 
-import org.lb.lbjscheme.Symbol;
+import org.lb.lbjscheme.*;
 
 public final class LiteralSymbol extends SyntaxTreeObject {
 	private final Symbol _symbol;
+	private Cell _cell;
 
 	public LiteralSymbol(Symbol symbol) {
 		_symbol = symbol;
@@ -29,6 +30,19 @@ public final class LiteralSymbol extends SyntaxTreeObject {
 		return _symbol;
 	}
 
+	public Cell getCell(Environment env) throws SchemeException {
+		Cell cell = _cell;
+		if (cell == null || cell.getEnvironment() != env)
+			_cell = cell = env.getCell(_symbol);
+		return cell;
+	}
+
+	@Override
+	public SchemeObject execute(Frame frame, Environment env)
+			throws SchemeException {
+		return getCell(env).getValue();
+	}
+
 	@Override
 	public String toString() {
 		return _symbol.toString();
@@ -0,0 +1,60 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.ast;
+
+import org.lb.lbjscheme.*;
+
+public final class LocalSetForm extends SyntaxTreeObject {
+	private final static Symbol _undefinedSymbol = Symbol
+			.fromString("undefined");
+
+	private final Symbol _target;
+	private final int _depth;
+	private final int _index;
+	private final SyntaxTreeObject _value;
+
+	public LocalSetForm(Symbol target, int depth, int index,
+			SyntaxTreeObject value) {
+		_target = target;
+		_depth = depth;
+		_index = index;
+		_value = value;
+	}
+
+	public Symbol getTarget() {
+		return _target;
+	}
+
+	public int getDepth() {
+		return _depth;
+	}
+
+	public int getIndex() {
+		return _index;
+	}
+
+	public SyntaxTreeObject getValue() {
+		return _value;
+	}
+
+	@Override
+	public SchemeObject execute(Frame frame, Environment env)
+			throws SchemeException {
+		frame.set(_depth, _index, _value.execute(frame, env));
+		return _undefinedSymbol;
+	}
+}
@@ -0,0 +1,59 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.ast;
+
+import java.util.List;
+import org.lb.lbjscheme.*;
+
+// (or a b ...): the value of the first form that is not #f, evaluating no
+// further forms. The last form is in tail position.
+public final class OrForm extends SyntaxTreeObject {
+	private final List<SyntaxTreeObject> _forms;
+	private final SyntaxTreeObject[] _formsWithoutLast;
+	private final SyntaxTreeObject _lastForm;
+
+	public OrForm(List<SyntaxTreeObject> forms) {
+		_forms = forms;
+		_formsWithoutLast = forms.subList(0, forms.size() - 1).toArray(
+				new SyntaxTreeObject[forms.size() - 1]);
+		_lastForm = forms.get(forms.size() - 1);
+	}
+
+	public List<SyntaxTreeObject> getForms() {
+		return _forms;
+	}
+
+	@Override
+	public SchemeObject execute(Frame frame, Environment env)
+			throws SchemeException {
+		for (SyntaxTreeObject i : _formsWithoutLast) {
+			final SchemeObject value = i.execute(frame, env);
+			if (value != False.getInstance()) return value;
+		}
+		return _lastForm.execute(frame, env);
+	}
+
+	@Override
+	public SchemeObject executeTail(Frame frame, Environment env)
+			throws SchemeException {
+		for (SyntaxTreeObject i : _formsWithoutLast) {
+			final SchemeObject value = i.execute(frame, env);
+			if (value != False.getInstance()) return value;
+		}
+		return _lastForm.executeTail(frame, env);
+	}
+}
@@ -16,7 +16,7 @@
 
 package org.lb.lbjscheme.ast;
 
-import org.lb.lbjscheme.SchemeObject;
+import org.lb.lbjscheme.*;
 
 public final class SelfEvaluatingLiteral extends SyntaxTreeObject {
 	private final SchemeObject _value;
@@ -28,4 +28,9 @@ public final class SelfEvaluatingLiteral extends SyntaxTreeObject {
 	public SchemeObject getValue() {
 		return _value;
 	}
+
+	@Override
+	public SchemeObject execute(Frame frame, Environment env) {
+		return _value;
+	}
 }
@@ -16,11 +16,15 @@
 
 package org.lb.lbjscheme.ast;
 
-import org.lb.lbjscheme.Symbol;
+import org.lb.lbjscheme.*;
 
 public final class SetForm extends SyntaxTreeObject {
+	private final static Symbol _undefinedSymbol = Symbol
+			.fromString("undefined");
+
 	private final Symbol _target;
 	private final SyntaxTreeObject _value;
+	private Cell _cell;
 
 	public SetForm(Symbol target, SyntaxTreeObject value) {
 		_target = target;
@@ -34,4 +38,19 @@ public final class SetForm extends SyntaxTreeObject {
 	public SyntaxTreeObject getValue() {
 		return _value;
 	}
+
+	public Cell getCell(Environment env) throws SchemeException {
+		Cell cell = _cell;
+		if (cell == null || cell.getEnvironment() != env)
+			_cell = cell = env.getCell(_target);
+		return cell;
+	}
+
+	@Override
+	public SchemeObject execute(Frame frame, Environment env)
+			throws SchemeException {
+		final SchemeObject value = _value.execute(frame, env);
+		getCell(env).setValue(value);
+		return _undefinedSymbol;
+	}
 }
@@ -16,6 +16,38 @@
 
 package org.lb.lbjscheme.ast;
 
+import org.lb.lbjscheme.*;
+
+// Syntax tree objects are executable: AnalyzingEvaluator just calls
+// execute() on the analyzed form. Nodes may specialize themselves on their
+// first execution, so a tree can be shared by all evaluators, but every
+// specialization is guarded by checks that hold in any environment.
 public abstract class SyntaxTreeObject {
-	// TODO: Empty interface; could I just store the AST objects as Object?
+	public abstract SchemeObject execute(Frame frame, Environment env)
+			throws SchemeException;
+
+	// Like execute(), but a procedure call in tail position is not made:
+	// a TailCall describing it is returned instead, to be run by the caller
+	// via trampoline(). This keeps loops written as tail calls from growing
+	// the Java stack.
+	public SchemeObject executeTail(Frame frame, Environment env)
+			throws SchemeException {
+		return execute(frame, env);
+	}
+
+	// Executes the parts of this form that come before the form in tail
+	// position, and returns that form without executing it. The Java frames
+	// of conditionals and sequences are gone by the time the form in tail
+	// position runs, so they do not add up in non-tail recursion.
+	SyntaxTreeObject executeToTail(Frame frame, Environment env)
+			throws SchemeException {
+		return this;
+	}
+
+	static SchemeObject trampoline(SchemeObject result)
+			throws SchemeException {
+		while (result instanceof TailCall)
+			result = ((TailCall) result).run();
+		return result;
+	}
 }
@@ -0,0 +1,62 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.ast;
+
+import org.lb.lbjscheme.*;
+
+// A pending call of an analyzed procedure, returned by executeTail().
+final class TailCall extends SchemeObject {
+	// Returned by the body instead of a new TailCall when it calls itself in
+	// tail position: the frame has already been prepared for the next run.
+	static final SchemeObject RESTART = new TailCall(null, null, null);
+
+	private final BeginForm _body;
+	private final Frame _frame;
+	private final Environment _environment;
+
+	TailCall(BeginForm body, Frame frame, Environment environment) {
+		_body = body;
+		_frame = frame;
+		_environment = environment;
+	}
+
+	SchemeObject run() throws SchemeException {
+		return run(_body, _frame, _environment);
+	}
+
+	// Runs a procedure body up to the next call in tail position, which is
+	// returned as a TailCall unless the procedure calls itself.
+	static SchemeObject run(BeginForm body, Frame frame, Environment env)
+			throws SchemeException {
+		SchemeObject ret;
+		do
+			ret = body.executeToTail(frame, env).executeTail(frame, env);
+		while (ret == RESTART);
+		return ret;
+	}
+
+	@Override
+	public String toString(boolean forDisplay) {
+		return "<tail call>";
+	}
+
+	@Override
+	public Object toJavaObject() throws SchemeException {
+		throw new SchemeException(
+				"Internal error: Tail call escaped the evaluator");
+	}
+}
@@ -14,16 +14,25 @@
 // ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
 // OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
 
-package org.lb.lbjscheme.vm;
+package org.lb.lbjscheme.ast;
 
-public final class Continue extends Opcode {
-	@Override
-	public void execute() {
-		_vm.executeContinue();
-	}
+import org.lb.lbjscheme.*;
 
+final class UninitializedCall extends CallNode {
 	@Override
-	public String toString() {
-		return "CONTINUE";
+	SchemeObject call(Funcall form, SchemeObject procedure, Frame frame,
+			Environment env, boolean tail) throws SchemeException {
+		final SyntaxTreeObject[] parameters = form.getParameterArray();
+		CallNode specialized = new GenericCall();
+		if (procedure instanceof Builtin && parameters.length <= 3) {
+			specialized = new BuiltinCall(procedure.getClass());
+		} else if (procedure instanceof AnalyzedLambda) {
+			final AnalyzedLambda l = (AnalyzedLambda) procedure;
+			if (!l.hasRestParameter()
+					&& l.getParameterNames().size() == parameters.length)
+				specialized = new LambdaCall(l.getForm());
+		}
+		form.setCallNode(specialized);
+		return specialized.call(form, procedure, frame, env, tail);
 	}
 }
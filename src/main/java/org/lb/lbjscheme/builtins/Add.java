@@ -28,9 +28,15 @@ public final class Add extends Builtin {
 	@Override
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
-		SchemeNumber ret = new Fixnum(0);
+		SchemeNumber ret = Fixnum.valueOf(0);
 		for (SchemeObject o : parameters)
 			ret = ret.add(getNumber(o));
 		return ret;
 	}
+
+	@Override
+	public SchemeObject apply2(SchemeObject first, SchemeObject second)
+			throws SchemeException {
+		return getNumber(first).add(getNumber(second));
+	}
 }
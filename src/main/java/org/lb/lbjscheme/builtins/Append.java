@@ -0,0 +1,60 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.builtins;
+
+import java.util.List;
+import org.lb.lbjscheme.*;
+
+public final class Append extends Builtin {
+	@Override
+	public String getName() {
+		return "##append";
+	}
+
+	@Override
+	public SchemeObject apply(List<SchemeObject> parameters)
+			throws SchemeException {
+		if (parameters.isEmpty()) return Nil.getInstance();
+		SchemeObject ret = parameters.get(parameters.size() - 1);
+		for (int i = parameters.size() - 2; i >= 0; --i)
+			ret = copyOnto(parameters.get(i), ret);
+		return ret;
+	}
+
+	@Override
+	public SchemeObject apply2(SchemeObject first, SchemeObject second)
+			throws SchemeException {
+		return copyOnto(first, second);
+	}
+
+	private SchemeObject copyOnto(SchemeObject lst, SchemeObject tail)
+			throws SchemeException {
+		if (lst.isNull()) return tail;
+		lst.assertIsPair(getName());
+		final Pair ret = new Pair(((Pair) lst).getCar(), tail);
+		Pair last = ret;
+		lst = ((Pair) lst).getCdr();
+		while (!lst.isNull()) {
+			lst.assertIsPair(getName());
+			final Pair next = new Pair(((Pair) lst).getCar(), tail);
+			last.setCdr(next);
+			last = next;
+			lst = ((Pair) lst).getCdr();
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,46 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.builtins;
+
+import java.util.List;
+import org.lb.lbjscheme.*;
+
+public final class Assq extends Builtin {
+	@Override
+	public String getName() {
+		return "##assq";
+	}
+
+	@Override
+	public SchemeObject apply(List<SchemeObject> parameters)
+			throws SchemeException {
+		assertParameterCount(2, parameters);
+		return apply2(parameters.get(0), parameters.get(1));
+	}
+
+	@Override
+	public SchemeObject apply2(SchemeObject obj, SchemeObject lst)
+			throws SchemeException {
+		while (lst instanceof Pair) {
+			final SchemeObject entry = ((Pair) lst).getCar();
+			entry.assertIsPair(getName());
+			if (obj == ((Pair) entry).getCar()) return entry;
+			lst = ((Pair) lst).getCdr();
+		}
+		return _false;
+	}
+}
@@ -29,7 +29,11 @@ public final class Car extends Builtin {
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
 		assertParameterCount(1, parameters);
-		final SchemeObject o = parameters.get(0);
+		return apply1(parameters.get(0));
+	}
+
+	@Override
+	public SchemeObject apply1(SchemeObject o) throws SchemeException {
 		o.assertIsPair(getName());
 		return ((Pair) o).getCar();
 	}
@@ -28,7 +28,12 @@ public final class Cdr extends Builtin {
 	@Override
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
-		final SchemeObject o = parameters.get(0);
+		assertParameterCount(1, parameters);
+		return apply1(parameters.get(0));
+	}
+
+	@Override
+	public SchemeObject apply1(SchemeObject o) throws SchemeException {
 		o.assertIsPair(getName());
 		return ((Pair) o).getCdr();
 	}
@@ -29,6 +29,11 @@ public final class CharToInteger extends Builtin {
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
 		assertParameterCount(1, parameters);
-		return new Fixnum(getCharacter(parameters.get(0)));
+		return apply1(parameters.get(0));
+	}
+
+	@Override
+	public SchemeObject apply1(SchemeObject c) throws SchemeException {
+		return Fixnum.valueOf(getCharacter(c));
 	}
 }
@@ -29,6 +29,12 @@ public final class Cons extends Builtin {
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
 		assertParameterCount(2, parameters);
-		return new Pair(parameters.get(0), parameters.get(1));
+		return apply2(parameters.get(0), parameters.get(1));
+	}
+
+	@Override
+	public SchemeObject apply2(SchemeObject car, SchemeObject cdr)
+			throws SchemeException {
+		return new Pair(car, cdr);
 	}
 }
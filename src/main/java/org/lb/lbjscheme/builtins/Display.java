@@ -38,10 +38,9 @@ public final class Display extends Builtin {
 		assertParameterCountMax(2, parameters);
 		if (parameters.size() == 1) {
 			if (_global != null)
-				_global.getOutputPort().write(parameters.get(0).toString(true));
+				_global.getOutputPort().write(parameters.get(0), true);
 		} else {
-			getOutputPort(parameters.get(1)).write(
-					parameters.get(0).toString(true));
+			getOutputPort(parameters.get(1)).write(parameters.get(0), true);
 		}
 		return _undefined;
 	}
@@ -29,6 +29,12 @@ public final class EqP extends Builtin {
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
 		assertParameterCount(2, parameters);
-		return parameters.get(0) == parameters.get(1) ? _true : _false;
+		return apply2(parameters.get(0), parameters.get(1));
+	}
+
+	@Override
+	public SchemeObject apply2(SchemeObject first, SchemeObject second)
+			throws SchemeException {
+		return first == second ? _true : _false;
 	}
 }
@@ -0,0 +1,64 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.builtins;
+
+import java.util.*;
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.Vector;
+
+public final class EqualP extends Builtin {
+	@Override
+	public String getName() {
+		return "##equal?";
+	}
+
+	@Override
+	public SchemeObject apply(List<SchemeObject> parameters)
+			throws SchemeException {
+		assertParameterCount(2, parameters);
+		return apply2(parameters.get(0), parameters.get(1));
+	}
+
+	@Override
+	public SchemeObject apply2(SchemeObject first, SchemeObject second)
+			throws SchemeException {
+		return isEqual(first, second) ? _true : _false;
+	}
+
+	static boolean isEqual(SchemeObject a, SchemeObject b)
+			throws SchemeException {
+		while (a instanceof Pair && b instanceof Pair) {
+			if (!isEqual(((Pair) a).getCar(), ((Pair) b).getCar()))
+				return false;
+			a = ((Pair) a).getCdr();
+			b = ((Pair) b).getCdr();
+		}
+		if (EqvP.isEqv(a, b)) return true;
+		if (a instanceof SchemeString && b instanceof SchemeString)
+			return ((SchemeString) a).getValue().equals(
+					((SchemeString) b).getValue());
+		if (a instanceof Vector && b instanceof Vector) {
+			final Vector x = (Vector) a;
+			final Vector y = (Vector) b;
+			if (x.getLength() != y.getLength()) return false;
+			for (int i = 0; i < x.getLength(); ++i)
+				if (!isEqual(x.getAt(i), y.getAt(i))) return false;
+			return true;
+		}
+		return false;
+	}
+}
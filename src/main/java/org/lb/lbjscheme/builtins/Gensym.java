@@ -14,24 +14,28 @@
 // ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
 // OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
 
-package org.lb.lbjscheme.vm;
+package org.lb.lbjscheme.builtins;
 
+import java.util.List;
 import org.lb.lbjscheme.*;
 
-public final class GetVariable extends Opcode {
-	private final Symbol _variable;
+public final class Gensym extends Builtin {
+	private int _counter;
 
-	public GetVariable(Symbol variable) {
-		_variable = variable;
+	@Override
+	public String getName() {
+		return "##gensym";
 	}
 
 	@Override
-	public void execute() throws SchemeException {
-		_vm.executeGetVariable(_variable);
+	public SchemeObject apply(List<SchemeObject> parameters)
+			throws SchemeException {
+		assertParameterCount(0, parameters);
+		return apply0();
 	}
 
 	@Override
-	public String toString() {
-		return "GETVAR " + _variable.toString();
+	public synchronized SchemeObject apply0() {
+		return Symbol.fromString("##gensym##" + ++_counter);
 	}
 }
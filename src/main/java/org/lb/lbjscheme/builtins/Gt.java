@@ -37,4 +37,10 @@ public final class Gt extends Builtin {
 		}
 		return _true;
 	}
+
+	@Override
+	public SchemeObject apply2(SchemeObject first, SchemeObject second)
+			throws SchemeException {
+		return getNumber(first).le(getNumber(second)) ? _false : _true;
+	}
 }
@@ -37,4 +37,10 @@ public final class Le extends Builtin {
 		}
 		return _true;
 	}
+
+	@Override
+	public SchemeObject apply2(SchemeObject first, SchemeObject second)
+			throws SchemeException {
+		return getNumber(first).gt(getNumber(second)) ? _false : _true;
+	}
 }
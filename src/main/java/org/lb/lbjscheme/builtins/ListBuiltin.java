@@ -14,18 +14,20 @@
 // ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
 // OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
 
-package org.lb.lbjscheme.vm;
+package org.lb.lbjscheme.builtins;
 
-import org.lb.lbjscheme.SchemeException;
+import java.util.List;
+import org.lb.lbjscheme.*;
 
-public final class Call extends Opcode {
+public final class ListBuiltin extends Builtin {
 	@Override
-	public void execute() throws SchemeException {
-		_vm.executeCall();
+	public String getName() {
+		return "##list";
 	}
 
 	@Override
-	public String toString() {
-		return "CALL";
+	public SchemeObject apply(List<SchemeObject> parameters)
+			throws SchemeException {
+		return Pair.fromIterable(parameters);
 	}
 }
@@ -14,45 +14,39 @@
 // ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
 // OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
 
-package org.lb.lbjscheme.vm;
+package org.lb.lbjscheme.builtins;
 
 import java.util.List;
 import org.lb.lbjscheme.*;
 
-public final class MakeClosure extends LabeledOpcode {
-	private final String _name;
-	private final String _label;
-	private final boolean _hasRestParameter;
-	private final List<Symbol> _parameterNames;
-	private int _position;
-
-	public MakeClosure(String name, String closureLabel,
-			boolean hasRestParameter, List<Symbol> parameterNames) {
-		_name = name;
-		_label = closureLabel;
-		_hasRestParameter = hasRestParameter;
-		_parameterNames = parameterNames;
-		_position = -1;
-	}
-
+public final class ListTail extends Builtin {
 	@Override
-	public boolean isLabel(String label) {
-		return _label.equals(label);
+	public String getName() {
+		return "##list-tail";
 	}
 
 	@Override
-	public void setPosition(int value) {
-		_position = value;
+	public SchemeObject apply(List<SchemeObject> parameters)
+			throws SchemeException {
+		assertParameterCount(2, parameters);
+		return apply2(parameters.get(0), parameters.get(1));
 	}
 
 	@Override
-	public void execute() {
-		_vm.executeMakeClosure(_name, _position, _hasRestParameter,
-				_parameterNames);
+	public SchemeObject apply2(SchemeObject lst, SchemeObject k)
+			throws SchemeException {
+		return getTail(this, lst, getFixnum(k));
 	}
 
-	@Override
-	public String toString() {
-		return "MAKECLOSURE " + _name + " " + _position + "...";
+	static SchemeObject getTail(Builtin requester, SchemeObject lst, int k)
+			throws SchemeException {
+		if (k < 0)
+			throw new SchemeException(requester.getName()
+					+ ": Index out of bounds");
+		for (int i = 0; i < k; ++i) {
+			lst.assertIsPair(requester.getName());
+			lst = ((Pair) lst).getCdr();
+		}
+		return lst;
 	}
 }
@@ -28,7 +28,7 @@ public final class Mul extends Builtin {
 	@Override
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
-		SchemeNumber ret = new Fixnum(1);
+		SchemeNumber ret = Fixnum.valueOf(1);
 		for (SchemeObject o : parameters) {
 			final SchemeNumber number = getNumber(o);
 			if (number.isZero() && number.isExact()) return number;
@@ -36,4 +36,14 @@ public final class Mul extends Builtin {
 		}
 		return ret;
 	}
+
+	@Override
+	public SchemeObject apply2(SchemeObject first, SchemeObject second)
+			throws SchemeException {
+		final SchemeNumber x = getNumber(first);
+		if (x.isZero() && x.isExact()) return x;
+		final SchemeNumber y = getNumber(second);
+		if (y.isZero() && y.isExact()) return y;
+		return x.mul(y);
+	}
 }
@@ -14,24 +14,26 @@
 // ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
 // OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
 
-package org.lb.lbjscheme.vm;
+package org.lb.lbjscheme.builtins;
 
+import java.util.List;
 import org.lb.lbjscheme.*;
 
-public final class SetVariable extends Opcode {
-	private final Symbol _variable;
-
-	public SetVariable(Symbol variable) {
-		_variable = variable;
+public final class Not extends Builtin {
+	@Override
+	public String getName() {
+		return "##not";
 	}
 
 	@Override
-	public void execute() throws SchemeException {
-		_vm.executeSetVariable(_variable);
+	public SchemeObject apply(List<SchemeObject> parameters)
+			throws SchemeException {
+		assertParameterCount(1, parameters);
+		return apply1(parameters.get(0));
 	}
 
 	@Override
-	public String toString() {
-		return "SETVAR " + _variable.toString();
+	public SchemeObject apply1(SchemeObject o) {
+		return o == _false ? _true : _false;
 	}
 }
@@ -36,4 +36,10 @@ public final class NumEq extends Builtin {
 		}
 		return _true;
 	}
+
+	@Override
+	public SchemeObject apply2(SchemeObject first, SchemeObject second)
+			throws SchemeException {
+		return getNumber(first).eq(getNumber(second)) ? _true : _false;
+	}
 }
@@ -33,8 +33,7 @@ public final class OpenInputFile extends Builtin {
 		final SchemeObject o = parameters.get(0);
 		o.assertIsString(getName());
 		try {
-			return new InputPort(new java.io.FileReader(
-					((SchemeString) o).getValue()));
+			return InputPort.openFile(((SchemeString) o).getValue());
 		} catch (IOException e) {
 			throw new SchemeException(getName()
 					+ ": Error opening input file: " + e.getMessage());
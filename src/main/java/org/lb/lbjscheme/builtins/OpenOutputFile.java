@@ -21,6 +21,12 @@ import java.util.List;
 import org.lb.lbjscheme.*;
 
 public final class OpenOutputFile extends Builtin {
+	private final Environment _global;
+
+	public OpenOutputFile(Environment global) {
+		_global = global;
+	}
+
 	@Override
 	public String getName() {
 		return "##open-output-file";
@@ -33,8 +39,10 @@ public final class OpenOutputFile extends Builtin {
 		final SchemeObject o = parameters.get(0);
 		o.assertIsString(getName());
 		try {
-			return new OutputPort(new java.io.FileWriter(
+			final OutputPort ret = new OutputPort(new java.io.FileWriter(
 					((SchemeString) o).getValue()));
+			if (_global != null) _global.addOpenOutputPort(ret);
+			return ret;
 		} catch (IOException e) {
 			throw new SchemeException(getName()
 					+ ": Error opening output file: " + e.getMessage());
@@ -29,6 +29,11 @@ public final class PairP extends Builtin {
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
 		assertParameterCount(1, parameters);
-		return parameters.get(0).isPair() ? _true : _false;
+		return apply1(parameters.get(0));
+	}
+
+	@Override
+	public SchemeObject apply1(SchemeObject o) throws SchemeException {
+		return o.isPair() ? _true : _false;
 	}
 }
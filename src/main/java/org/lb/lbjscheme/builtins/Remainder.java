@@ -29,6 +29,12 @@ public final class Remainder extends Builtin {
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
 		assertParameterCount(2, parameters);
-		return getNumber(parameters.get(0)).mod(getNumber(parameters.get(1)));
+		return apply2(parameters.get(0), parameters.get(1));
+	}
+
+	@Override
+	public SchemeObject apply2(SchemeObject dividend, SchemeObject divisor)
+			throws SchemeException {
+		return getNumber(dividend).mod(getNumber(divisor));
 	}
 }
@@ -29,8 +29,12 @@ public final class SetCar extends Builtin {
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
 		assertParameterCount(2, parameters);
-		final SchemeObject o = parameters.get(0);
-		final SchemeObject newCar = parameters.get(1);
+		return apply2(parameters.get(0), parameters.get(1));
+	}
+
+	@Override
+	public SchemeObject apply2(SchemeObject o, SchemeObject newCar)
+			throws SchemeException {
 		o.assertIsPair(getName());
 		((Pair) o).setCar(newCar);
 		return newCar;
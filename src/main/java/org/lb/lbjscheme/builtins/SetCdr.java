@@ -29,8 +29,12 @@ public final class SetCdr extends Builtin {
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
 		assertParameterCount(2, parameters);
-		final SchemeObject o = parameters.get(0);
-		final SchemeObject newCdr = parameters.get(1);
+		return apply2(parameters.get(0), parameters.get(1));
+	}
+
+	@Override
+	public SchemeObject apply2(SchemeObject o, SchemeObject newCdr)
+			throws SchemeException {
 		o.assertIsPair(getName());
 		((Pair) o).setCdr(newCdr);
 		return newCdr;
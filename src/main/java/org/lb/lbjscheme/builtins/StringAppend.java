@@ -14,24 +14,23 @@
 // ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
 // OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
 
-package org.lb.lbjscheme.vm;
+package org.lb.lbjscheme.builtins;
 
+import java.util.List;
 import org.lb.lbjscheme.*;
 
-public final class DefineVariable extends Opcode {
-	private final Symbol _variable;
-
-	public DefineVariable(Symbol variable) {
-		_variable = variable;
-	}
-
+public final class StringAppend extends Builtin {
 	@Override
-	public void execute() throws SchemeException {
-		_vm.executeDefineVariable(_variable);
+	public String getName() {
+		return "##string-append";
 	}
 
 	@Override
-	public String toString() {
-		return "DEFVAR " + _variable.toString();
+	public SchemeObject apply(List<SchemeObject> parameters)
+			throws SchemeException {
+		final StringBuilder ret = new StringBuilder();
+		for (SchemeObject o : parameters)
+			ret.append(getString(o).getValue());
+		return new SchemeString(ret.toString());
 	}
 }
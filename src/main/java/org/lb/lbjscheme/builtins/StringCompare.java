@@ -0,0 +1,86 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.builtins;
+
+import java.util.List;
+import org.lb.lbjscheme.*;
+
+// string=?, string<?, ... and their -ci variants. Case folding only maps
+// A-Z, like char-downcase.
+public final class StringCompare extends Builtin {
+	public static final int EQ = 0;
+	public static final int LT = 1;
+	public static final int GT = 2;
+	public static final int LE = 3;
+	public static final int GE = 4;
+
+	private final String _name;
+	private final boolean _caseInsensitive;
+	private final int _mode;
+
+	public StringCompare(String name, boolean caseInsensitive, int mode) {
+		_name = name;
+		_caseInsensitive = caseInsensitive;
+		_mode = mode;
+	}
+
+	@Override
+	public String getName() {
+		return _name;
+	}
+
+	@Override
+	public SchemeObject apply(List<SchemeObject> parameters)
+			throws SchemeException {
+		assertParameterCount(2, parameters);
+		return apply2(parameters.get(0), parameters.get(1));
+	}
+
+	@Override
+	public SchemeObject apply2(SchemeObject first, SchemeObject second)
+			throws SchemeException {
+		final int cmp = compare(getString(first), getString(second));
+		switch (_mode) {
+		case EQ:
+			return cmp == 0 ? _true : _false;
+		case LT:
+			return cmp < 0 ? _true : _false;
+		case GT:
+			return cmp > 0 ? _true : _false;
+		case LE:
+			return cmp <= 0 ? _true : _false;
+		default:
+			return cmp >= 0 ? _true : _false;
+		}
+	}
+
+	private int compare(SchemeString a, SchemeString b)
+			throws SchemeException {
+		final int length = Math.min(a.getLength(), b.getLength());
+		for (int i = 0; i < length; ++i) {
+			final char x = fold(a.getAt(i));
+			final char y = fold(b.getAt(i));
+			if (x != y) return x - y;
+		}
+		return a.getLength() - b.getLength();
+	}
+
+	private char fold(char c) {
+		if (_caseInsensitive && c >= 'A' && c <= 'Z') return (char) (c + 32);
+		return c;
+	}
+}
@@ -14,34 +14,26 @@
 // ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
 // OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
 
-package org.lb.lbjscheme.vm;
+package org.lb.lbjscheme.builtins;
 
-public final class Jump extends LabeledOpcode {
-	private final String _label;
-	private int _position;
-
-	public Jump(String label) {
-		_label = label;
-		_position = -1;
-	}
-
-	@Override
-	public boolean isLabel(String label) {
-		return _label.equals(label);
-	}
+import java.util.List;
+import org.lb.lbjscheme.*;
 
+public final class StringCopy extends Builtin {
 	@Override
-	public void setPosition(int value) {
-		_position = value;
+	public String getName() {
+		return "##string-copy";
 	}
 
 	@Override
-	public void execute() {
-		_vm.executeJump(_position);
+	public SchemeObject apply(List<SchemeObject> parameters)
+			throws SchemeException {
+		assertParameterCount(1, parameters);
+		return apply1(parameters.get(0));
 	}
 
 	@Override
-	public String toString() {
-		return "JUMP " + _position;
+	public SchemeObject apply1(SchemeObject str) throws SchemeException {
+		return new SchemeString(getString(str).getValue());
 	}
 }
@@ -31,6 +31,6 @@ public final class StringLength extends Builtin {
 		assertParameterCount(1, parameters);
 		final SchemeObject o = parameters.get(0);
 		o.assertIsString(getName());
-		return new Fixnum(((SchemeString) o).getLength());
+		return Fixnum.valueOf(((SchemeString) o).getLength());
 	}
 }
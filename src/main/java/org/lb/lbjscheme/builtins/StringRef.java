@@ -29,9 +29,14 @@ public final class StringRef extends Builtin {
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
 		assertParameterCount(2, parameters);
-		final SchemeObject str = parameters.get(0);
+		return apply2(parameters.get(0), parameters.get(1));
+	}
+
+	@Override
+	public SchemeObject apply2(SchemeObject str, SchemeObject index)
+			throws SchemeException {
 		str.assertIsString(getName());
 		return new SchemeCharacter(
-				((SchemeString) str).getAt(getFixnum(parameters.get(1))));
+				((SchemeString) str).getAt(getFixnum(index)));
 	}
 }
@@ -33,8 +33,10 @@ public final class StringToNumber extends Builtin {
 			assertParameterCountMax(2, parameters);
 			SchemeObject value = parameters.get(0);
 			value.assertIsString(getName());
-			return SchemeNumber.fromString(((SchemeString) value).getValue(),
+			final SchemeNumber ret = SchemeNumber.parse(
+					((SchemeString) value).getValue(),
 					parameters.size() == 1 ? 10 : getFixnum(parameters.get(1)));
+			return ret == null ? _false : ret;
 		} catch (Exception ex) {
 			return _false;
 		}
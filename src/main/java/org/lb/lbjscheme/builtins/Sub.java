@@ -30,9 +30,20 @@ public final class Sub extends Builtin {
 			throws SchemeException {
 		assertParameterCountMin(1, parameters);
 		SchemeNumber ret = getNumber(parameters.get(0));
-		if (parameters.size() == 1) return new Fixnum(0).sub(ret);
+		if (parameters.size() == 1) return Fixnum.valueOf(0).sub(ret);
 		for (SchemeObject o : parameters.subList(1, parameters.size()))
 			ret = ret.sub(getNumber(o));
 		return ret;
 	}
+
+	@Override
+	public SchemeObject apply1(SchemeObject o) throws SchemeException {
+		return Fixnum.valueOf(0).sub(getNumber(o));
+	}
+
+	@Override
+	public SchemeObject apply2(SchemeObject first, SchemeObject second)
+			throws SchemeException {
+		return getNumber(first).sub(getNumber(second));
+	}
 }
@@ -29,6 +29,11 @@ public final class SymbolP extends Builtin {
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
 		assertParameterCount(1, parameters);
-		return parameters.get(0).isSymbol() ? _true : _false;
+		return apply1(parameters.get(0));
+	}
+
+	@Override
+	public SchemeObject apply1(SchemeObject o) throws SchemeException {
+		return o.isSymbol() ? _true : _false;
 	}
 }
@@ -29,6 +29,6 @@ public final class VectorLength extends Builtin {
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
 		assertParameterCount(1, parameters);
-		return new Fixnum(getVector(parameters.get(0)).getLength());
+		return Fixnum.valueOf(getVector(parameters.get(0)).getLength());
 	}
 }
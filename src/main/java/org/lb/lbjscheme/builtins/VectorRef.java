@@ -29,6 +29,12 @@ public final class VectorRef extends Builtin {
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
 		assertParameterCount(2, parameters);
-		return getVector(parameters.get(0)).getAt(getFixnum(parameters.get(1)));
+		return apply2(parameters.get(0), parameters.get(1));
+	}
+
+	@Override
+	public SchemeObject apply2(SchemeObject vector, SchemeObject index)
+			throws SchemeException {
+		return getVector(vector).getAt(getFixnum(index));
 	}
 }
@@ -29,9 +29,13 @@ public final class VectorSet extends Builtin {
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
 		assertParameterCount(3, parameters);
-		final SchemeObject valueToSet = parameters.get(2);
-		getVector(parameters.get(0)).setAt(getFixnum(parameters.get(1)),
-				valueToSet);
+		return apply3(parameters.get(0), parameters.get(1), parameters.get(2));
+	}
+
+	@Override
+	public SchemeObject apply3(SchemeObject vector, SchemeObject index,
+			SchemeObject valueToSet) throws SchemeException {
+		getVector(vector).setAt(getFixnum(index), valueToSet);
 		return valueToSet;
 	}
 }
@@ -38,11 +38,9 @@ public final class Write extends Builtin {
 		assertParameterCountMax(2, parameters);
 		if (parameters.size() == 1) {
 			if (_global != null)
-				_global.getOutputPort()
-						.write(parameters.get(0).toString(false));
+				_global.getOutputPort().write(parameters.get(0), false);
 		} else {
-			getOutputPort(parameters.get(1)).write(
-					parameters.get(0).toString(false));
+			getOutputPort(parameters.get(1)).write(parameters.get(0), false);
 		}
 		return _undefined;
 	}
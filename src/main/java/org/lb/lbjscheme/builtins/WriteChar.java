@@ -40,9 +40,9 @@ public final class WriteChar extends Builtin {
 
 		if (parameters.size() == 1) {
 			if (_global != null)
-				_global.getOutputPort().write(Character.toString(c));
+				_global.getOutputPort().write(c);
 		} else {
-			getOutputPort(parameters.get(1)).write(Character.toString(c));
+			getOutputPort(parameters.get(1)).write(c);
 		}
 		return _undefined;
 	}
@@ -29,6 +29,11 @@ public final class ZeroP extends Builtin {
 	public SchemeObject apply(List<SchemeObject> parameters)
 			throws SchemeException {
 		assertParameterCount(1, parameters);
-		return getNumber(parameters.get(0)).isZero() ? _true : _false;
+		return apply1(parameters.get(0));
+	}
+
+	@Override
+	public SchemeObject apply1(SchemeObject o) throws SchemeException {
+		return getNumber(o).isZero() ? _true : _false;
 	}
 }
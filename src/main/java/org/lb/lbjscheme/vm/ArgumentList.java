@@ -16,22 +16,33 @@
 
 package org.lb.lbjscheme.vm;
 
+import java.util.*;
 import org.lb.lbjscheme.SchemeObject;
 
-public final class Literal extends Opcode {
-	private final SchemeObject _value;
+// Read-only view of the arguments the VM has pushed for a builtin call. The
+// VM reuses a single instance, so builtins must not keep it beyond apply().
+final class ArgumentList extends AbstractList<SchemeObject> implements
+		RandomAccess {
+	private SchemeObject[] _values;
+	private int _offset;
+	private int _size;
 
-	public Literal(SchemeObject value) {
-		_value = value;
+	void reset(SchemeObject[] values, int offset, int size) {
+		_values = values;
+		_offset = offset;
+		_size = size;
 	}
 
 	@Override
-	public void execute() {
-		_vm.executeLiteral(_value);
+	public SchemeObject get(int index) {
+		if (index < 0 || index >= _size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+					+ _size);
+		return _values[_offset + index];
 	}
 
 	@Override
-	public String toString() {
-		return "LITERAL " + _value.toString();
+	public int size() {
+		return _size;
 	}
 }
@@ -0,0 +1,68 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.vm;
+
+import java.util.List;
+import org.lb.lbjscheme.CompiledProgram;
+import org.lb.lbjscheme.Symbol;
+import org.lb.lbjscheme.ast.LambdaForm;
+
+// Constant pool entry describing the procedures created by a MAKECLOSURE
+// instruction. It also carries the program holding their body, and the call
+// count and the native code of those procedures, as they all share the same
+// body.
+public final class ClosureTemplate {
+	public final String name;
+	public final List<Symbol> parameterNames;
+	public final boolean hasRestParameter;
+	public final int frameSize;
+	public final int[] boxedSlots;
+	public final LambdaForm form;
+	public final CompiledProgram program;
+	private int _position = -1;
+
+	int callCount;
+	JitProcedure nativeCode;
+	boolean isNativeCodeUnavailable;
+
+	public ClosureTemplate(LambdaForm form, CompiledProgram program) {
+		this.name = form.getName();
+		this.parameterNames = form.getParameterNames();
+		this.hasRestParameter = form.HasRestParameter();
+		this.frameSize = form.getFrameSize();
+		this.boxedSlots = form.getBoxedSlots();
+		this.form = form;
+		this.program = program;
+	}
+
+	public int getPosition() {
+		return _position;
+	}
+
+	public void setPosition(int position) {
+		_position = position;
+	}
+
+	public boolean hasNativeCode() {
+		return nativeCode != null;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
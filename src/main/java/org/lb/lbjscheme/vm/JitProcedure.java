@@ -0,0 +1,93 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.vm;
+
+import java.util.*;
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.ast.CaseForm;
+import org.lb.lbjscheme.ast.LambdaForm;
+
+// Base class of the native code generated by JvmEmitter for the body of a
+// procedure. Generated subclasses only implement invoke() and use the
+// helpers below for everything that needs the virtual machine.
+public abstract class JitProcedure {
+	protected static final SchemeObject FALSE = False.getInstance();
+
+	protected final Object[] _constants;
+	private final VirtualMachine _vm;
+	private final Cell[] _cells;
+
+	protected JitProcedure(VirtualMachine vm, Object[] constants) {
+		_vm = vm;
+		_constants = constants;
+		_cells = new Cell[constants.length];
+	}
+
+	public abstract SchemeObject invoke(Frame frame) throws SchemeException;
+
+	protected final SchemeObject getLocal(Frame frame, int depth, int index,
+			int symbol) throws SchemeException {
+		final SchemeObject ret = frame.get(depth, index);
+		if (ret == null)
+			throw new SchemeException("Unknown symbol " + _constants[symbol]);
+		return ret;
+	}
+
+	protected final Cell getCell(int symbol) throws SchemeException {
+		Cell cell = _cells[symbol];
+		if (cell == null)
+			_cells[symbol] = cell = _vm.getGlobalEnvironment().getCell(
+					(Symbol) _constants[symbol]);
+		return cell;
+	}
+
+	protected final void define(int symbol, SchemeObject value)
+			throws SchemeException {
+		_vm.getGlobalEnvironment().define((Symbol) _constants[symbol], value);
+	}
+
+	protected final SchemeObject makeClosure(int template, Frame frame) {
+		final ClosureTemplate t = (ClosureTemplate) _constants[template];
+		return new CompiledLambda(t, t.form.capture(frame), t.getPosition());
+	}
+
+	protected final void restart(int form, Frame frame) {
+		((LambdaForm) _constants[form]).restart(frame);
+	}
+
+	protected final int dispatch(int form, SchemeObject key)
+			throws SchemeException {
+		return ((CaseForm) _constants[form]).dispatch(key);
+	}
+
+	protected final SchemeObject call(SchemeObject procedure,
+			SchemeObject[] arguments) throws SchemeException {
+		return _vm.apply(procedure, arguments);
+	}
+
+	protected final SchemeObject tailCall(SchemeObject procedure,
+			SchemeObject[] arguments) throws SchemeException {
+		return _vm.tailCall(procedure, arguments);
+	}
+
+	protected static SchemeObject[] toArray(SchemeObject list) {
+		final List<SchemeObject> ret = new ArrayList<>();
+		for (SchemeObject o : (SchemeList) list)
+			ret.add(o);
+		return ret.toArray(new SchemeObject[ret.size()]);
+	}
+}
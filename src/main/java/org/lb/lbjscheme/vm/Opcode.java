@@ -16,14 +16,73 @@
 
 package org.lb.lbjscheme.vm;
 
-import org.lb.lbjscheme.SchemeException;
+// Instruction set of the virtual machine. An instruction is an opcode
+// followed by its operands in the program's int[] code; constant operands
+// are indices into the program's constant pool.
+public final class Opcode {
+	public static final int CALL = 0;
+	public static final int CONTINUE = 1;
+	public static final int DEFVAR = 2; // constant
+	public static final int GETLOCAL = 3; // constant, depth, index
+	public static final int GETVAR = 4; // constant
+	public static final int INITARGS = 5;
+	public static final int JMP = 6; // position
+	public static final int JMPF = 7; // position
+	public static final int LITERAL = 8; // constant
+	public static final int MAKECLOSURE = 9; // constant, position
+	public static final int POPALL = 10;
+	public static final int PUSHALL = 11;
+	public static final int PUSHARG = 12;
+	public static final int SETARGS = 13;
+	public static final int SETCONT = 14; // position
+	public static final int SETLOCAL = 15; // depth, index
+	public static final int SETVAR = 16; // constant
 
-public abstract class Opcode {
-	protected VirtualMachine _vm;
+	// Inlined calls to locked ## builtins. Unary ones take their argument
+	// from the value register, binary ones their first argument from the
+	// top of the argument stack.
+	public static final int CAR = 17;
+	public static final int CDR = 18;
+	public static final int CONS = 19;
+	public static final int EQ = 20;
+	public static final int NULLP = 21;
+	public static final int PAIRP = 22;
+	public static final int ZEROP = 23;
+	public static final int ADD2 = 24;
+	public static final int SUB2 = 25;
+	public static final int LT2 = 26;
+	public static final int GT2 = 27;
+	public static final int LE2 = 28;
+	public static final int GE2 = 29;
+	public static final int NUMEQ2 = 30;
 
-	public abstract void execute() throws SchemeException;
+	// Restarts the body of the running procedure after a self tail call has
+	// stored its arguments in the scratch slots of the frame. The constant
+	// is the procedure's ClosureTemplate.
+	public static final int SELFCALL = 31; // constant, position
 
-	public void setVm(VirtualMachine vm) {
-		_vm = vm;
+	// Dispatch of a case form (the constant): skips to the JMP selected by
+	// the value register in the jump table following the instruction.
+	public static final int SWITCH = 32; // constant
+
+	private static final String[] _names = { "CALL", "CONTINUE", "DEFVAR",
+			"GETLOCAL", "GETVAR", "INITARGS", "JMP", "JMPF", "LITERAL",
+			"MAKECLOSURE", "POPALL", "PUSHALL", "PUSHARG", "SETARGS",
+			"SETCONT", "SETLOCAL", "SETVAR", "CAR", "CDR", "CONS", "EQ",
+			"NULLP", "PAIRP", "ZEROP", "ADD2", "SUB2", "LT2", "GT2", "LE2",
+			"GE2", "NUMEQ2", "SELFCALL", "SWITCH" };
+	private static final int[] _operandCounts = { 0, 0, 1, 3, 1, 0, 1, 1, 1,
+			2, 0, 0, 0, 0, 1, 2, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+			2, 1 };
+
+	private Opcode() {
+	}
+
+	public static String getName(int opcode) {
+		return _names[opcode];
+	}
+
+	public static int getOperandCount(int opcode) {
+		return _operandCounts[opcode];
 	}
 }
@@ -0,0 +1,126 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package org.lb.lbjscheme.vm;
+
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.builtins.*;
+
+// Inlined primitives, shared by the virtual machine and native code. Fixnum
+// and pair operands take a fast path, everything else is left to the
+// corresponding builtin.
+public final class Primitives {
+	private static final False _false = False.getInstance();
+	private static final True _true = True.getInstance();
+
+	private static final Builtin _car = new Car();
+	private static final Builtin _cdr = new Cdr();
+	private static final Builtin _zeroP = new ZeroP();
+	private static final Builtin _add = new Add();
+	private static final Builtin _sub = new Sub();
+	private static final Builtin _lt = new Lt();
+	private static final Builtin _gt = new Gt();
+	private static final Builtin _le = new Le();
+	private static final Builtin _ge = new Ge();
+	private static final Builtin _numEq = new NumEq();
+
+	private Primitives() {
+	}
+
+	public static SchemeObject car(SchemeObject o) throws SchemeException {
+		return o instanceof Pair ? ((Pair) o).getCar() : _car.apply1(o);
+	}
+
+	public static SchemeObject cdr(SchemeObject o) throws SchemeException {
+		return o instanceof Pair ? ((Pair) o).getCdr() : _cdr.apply1(o);
+	}
+
+	public static SchemeObject cons(SchemeObject a, SchemeObject b) {
+		return new Pair(a, b);
+	}
+
+	public static SchemeObject eq(SchemeObject a, SchemeObject b) {
+		return a == b ? _true : _false;
+	}
+
+	public static SchemeObject nullP(SchemeObject o) {
+		return o.isNull() ? _true : _false;
+	}
+
+	public static SchemeObject pairP(SchemeObject o) {
+		return o.isPair() ? _true : _false;
+	}
+
+	public static SchemeObject zeroP(SchemeObject o) throws SchemeException {
+		if (o instanceof Fixnum)
+			return ((Fixnum) o).getValue() == 0 ? _true : _false;
+		return _zeroP.apply1(o);
+	}
+
+	public static SchemeObject add(SchemeObject a, SchemeObject b)
+			throws SchemeException {
+		if (a instanceof Fixnum && b instanceof Fixnum)
+			return ((Fixnum) a).add((Fixnum) b);
+		return _add.apply2(a, b);
+	}
+
+	public static SchemeObject sub(SchemeObject a, SchemeObject b)
+			throws SchemeException {
+		if (a instanceof Fixnum && b instanceof Fixnum)
+			return ((Fixnum) a).sub((Fixnum) b);
+		return _sub.apply2(a, b);
+	}
+
+	public static SchemeObject lt(SchemeObject a, SchemeObject b)
+			throws SchemeException {
+		if (a instanceof Fixnum && b instanceof Fixnum)
+			return ((Fixnum) a).getValue() < ((Fixnum) b).getValue() ? _true
+					: _false;
+		return _lt.apply2(a, b);
+	}
+
+	public static SchemeObject gt(SchemeObject a, SchemeObject b)
+			throws SchemeException {
+		if (a instanceof Fixnum && b instanceof Fixnum)
+			return ((Fixnum) a).getValue() > ((Fixnum) b).getValue() ? _true
+					: _false;
+		return _gt.apply2(a, b);
+	}
+
+	public static SchemeObject le(SchemeObject a, SchemeObject b)
+			throws SchemeException {
+		if (a instanceof Fixnum && b instanceof Fixnum)
+			return ((Fixnum) a).getValue() <= ((Fixnum) b).getValue() ? _true
+					: _false;
+		return _le.apply2(a, b);
+	}
+
+	public static SchemeObject ge(SchemeObject a, SchemeObject b)
+			throws SchemeException {
+		if (a instanceof Fixnum && b instanceof Fixnum)
+			return ((Fixnum) a).getValue() >= ((Fixnum) b).getValue() ? _true
+					: _false;
+		return _ge.apply2(a, b);
+	}
+
+	public static SchemeObject numEq(SchemeObject a, SchemeObject b)
+			throws SchemeException {
+		if (a instanceof Fixnum && b instanceof Fixnum)
+			return ((Fixnum) a).getValue() == ((Fixnum) b).getValue() ? _true
+					: _false;
+		return _numEq.apply2(a, b);
+	}
+}
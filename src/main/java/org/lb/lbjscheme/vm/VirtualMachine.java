@@ -18,40 +18,112 @@ package org.lb.lbjscheme.vm;
 
 import java.util.*;
 import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.Compiler;
+import org.lb.lbjscheme.ast.CaseForm;
 
 public final class VirtualMachine {
+	public static final int DEFAULT_JIT_THRESHOLD = 1000;
+
+	// Native code runs on the Java stack. Calls nested deeper than this are
+	// interpreted instead, as the interpreter keeps its stacks on the heap.
+	private static final int MAX_NATIVE_DEPTH = 200;
+
 	private static final False _false = False.getInstance();
+	private static final SchemeObject _tailCallMarker = new TailCallMarker();
+
 	private final Environment globalEnvironment;
-	private final Stack<Environment> _environmentStack = new Stack<Environment>();
-	private final Stack<Integer> _continueStack = new Stack<Integer>();
-	private final Stack<LinkedList<SchemeObject>> _argumentsStack = new Stack<LinkedList<SchemeObject>>();
+	private final ArgumentList _builtinArguments = new ArgumentList();
+
+	// Arguments of pending calls, laid out contiguously; the arguments of the
+	// call being set up start at argumentsRegister and end at _sp.
+	private SchemeObject[] _stack = new SchemeObject[256];
+	private int _sp;
+
+	// Saved registers of pending non-tail calls: frame, continuation (and
+	// the program it points into) and arguments base share the index _csp.
+	private Frame[] _frameStack = new Frame[64];
+	private int[] _continueStack = new int[64];
+	private CompiledProgram[] _continueProgramStack = new CompiledProgram[64];
+	private int[] _argumentsStack = new int[64];
+	private int _csp;
+
+	// Every top-level form is compiled into a program of its own; closures
+	// refer to the program holding their body. _program is the one currently
+	// executing.
+	private CompiledProgram _program;
+	private int _jitThreshold = DEFAULT_JIT_THRESHOLD;
+	private int _nativeDepth;
+
+	// A tail call made by native code, to be performed by its caller.
+	private SchemeObject _tailCallProcedure;
+	private SchemeObject[] _tailCallArguments;
 
-	private int ip;
-	private Environment environmentRegister;
+	private Frame frameRegister;
 	private int continueRegister;
+	private CompiledProgram continueProgramRegister;
 	private SchemeObject valueRegister;
-	private LinkedList<SchemeObject> argumentsRegister;
+	private int argumentsRegister;
 
 	public VirtualMachine(final Environment globalEnv) {
 		globalEnvironment = globalEnv;
 	}
 
-	void executeCall() throws SchemeException {
-		final List<SchemeObject> parameters = argumentsRegister;
+	Environment getGlobalEnvironment() {
+		return globalEnvironment;
+	}
 
-		if (valueRegister instanceof Builtin) {
-			valueRegister = ((Builtin) valueRegister).apply(parameters);
-			ip = continueRegister;
-			return;
-		}
+	// Procedures are compiled to native code once they have been called this
+	// many times; 0 disables the JIT compiler.
+	public void setJitThreshold(int value) {
+		_jitThreshold = value;
+	}
+
+	private int call(final int returnIp) throws SchemeException {
+		final int base = argumentsRegister;
+		final int count = _sp - base;
 
 		if (valueRegister instanceof CompiledLambda) {
 			final CompiledLambda closure = (CompiledLambda) valueRegister;
-			environmentRegister = new Environment(closure.captured);
-			environmentRegister.expand(closure.parameterNames,
-					closure.hasRestParameter, parameters);
-			ip = closure.pc;
-			return;
+			final Frame frame = new Frame(closure.captured, closure.frameSize);
+			frame.bindParameters(closure.parameterNames.size(),
+					closure.hasRestParameter, _stack, base, count);
+			frame.box(closure.template.boxedSlots);
+			clearArguments(base);
+
+			final JitProcedure nativeCode = getNativeCode(closure.template);
+			if (nativeCode != null && _nativeDepth < MAX_NATIVE_DEPTH) {
+				valueRegister = invokeNative(nativeCode, frame);
+				_program = continueProgramRegister;
+				return returnIp;
+			}
+			frameRegister = frame;
+			_program = closure.template.program;
+			return closure.pc;
+		}
+
+		if (valueRegister instanceof Builtin) {
+			final Builtin builtin = (Builtin) valueRegister;
+			switch (count) {
+			case 0:
+				valueRegister = builtin.apply0();
+				break;
+			case 1:
+				valueRegister = builtin.apply1(_stack[base]);
+				break;
+			case 2:
+				valueRegister = builtin.apply2(_stack[base], _stack[base + 1]);
+				break;
+			case 3:
+				valueRegister = builtin.apply3(_stack[base], _stack[base + 1],
+						_stack[base + 2]);
+				break;
+			default:
+				_builtinArguments.reset(_stack, base, count);
+				valueRegister = builtin.apply(_builtinArguments);
+			}
+			clearArguments(base);
+			_program = continueProgramRegister;
+			return returnIp;
 		}
 
 		// TODO: Lambdas from (eval)?
@@ -60,80 +132,216 @@ public final class VirtualMachine {
 				+ valueRegister.getClass().getSimpleName());
 	}
 
-	void executeContinue() {
-		ip = continueRegister;
+	// Prepares the frame for the next iteration of a self tail call. Loops
+	// count as calls for the JIT compiler; once native code is available,
+	// it runs the rest of the loop and true is returned.
+	private boolean selfCall(ClosureTemplate template) throws SchemeException {
+		template.form.restart(frameRegister);
+		final JitProcedure nativeCode = getNativeCode(template);
+		if (nativeCode == null || _nativeDepth >= MAX_NATIVE_DEPTH)
+			return false;
+		valueRegister = invokeNative(nativeCode, frameRegister);
+		return true;
 	}
 
-	void executeDefineVariable(Symbol variable) throws SchemeException {
-		environmentRegister.define(variable, valueRegister);
-		ip++;
+	// Entry point for calls made by native code.
+	SchemeObject apply(SchemeObject procedure, SchemeObject[] arguments)
+			throws SchemeException {
+		while (true) {
+			if (procedure instanceof Builtin)
+				return applyBuiltin((Builtin) procedure, arguments);
+			if (!(procedure instanceof CompiledLambda))
+				throw new SchemeException("Internal error: Invalid CALL target: "
+						+ procedure.getClass().getSimpleName());
+
+			final CompiledLambda closure = (CompiledLambda) procedure;
+			final Frame frame = new Frame(closure.captured, closure.frameSize);
+			frame.bindParameters(closure.parameterNames.size(),
+					closure.hasRestParameter, arguments, 0, arguments.length);
+			frame.box(closure.template.boxedSlots);
+
+			final JitProcedure nativeCode = getNativeCode(closure.template);
+			if (nativeCode == null || _nativeDepth >= MAX_NATIVE_DEPTH)
+				return runInterpreted(closure, frame);
+
+			++_nativeDepth;
+			final SchemeObject ret;
+			try {
+				ret = nativeCode.invoke(frame);
+			} finally {
+				--_nativeDepth;
+			}
+			if (ret != _tailCallMarker) return ret;
+			procedure = _tailCallProcedure;
+			arguments = _tailCallArguments;
+			_tailCallProcedure = null;
+			_tailCallArguments = null;
+		}
 	}
 
-	void executeGetVariable(Symbol variable) throws SchemeException {
-		valueRegister = environmentRegister.get(variable);
-		ip++;
+	// Tail calls of native code are returned to the caller instead of being
+	// made right away, so loops written as tail calls do not grow the Java
+	// stack.
+	SchemeObject tailCall(SchemeObject procedure, SchemeObject[] arguments)
+			throws SchemeException {
+		if (procedure instanceof Builtin)
+			return applyBuiltin((Builtin) procedure, arguments);
+		_tailCallProcedure = procedure;
+		_tailCallArguments = arguments;
+		return _tailCallMarker;
 	}
 
-	void executeInitArgs() {
-		argumentsRegister = new LinkedList<SchemeObject>();
-		ip++;
+	private SchemeObject invokeNative(JitProcedure nativeCode, Frame frame)
+			throws SchemeException {
+		++_nativeDepth;
+		final SchemeObject ret;
+		try {
+			ret = nativeCode.invoke(frame);
+		} finally {
+			--_nativeDepth;
+		}
+		if (ret != _tailCallMarker) return ret;
+		final SchemeObject procedure = _tailCallProcedure;
+		final SchemeObject[] arguments = _tailCallArguments;
+		_tailCallProcedure = null;
+		_tailCallArguments = null;
+		return apply(procedure, arguments);
 	}
 
-	void executeJump(int position) {
-		ip = position;
+	private static SchemeObject applyBuiltin(Builtin builtin,
+			SchemeObject[] arguments) throws SchemeException {
+		switch (arguments.length) {
+		case 0:
+			return builtin.apply0();
+		case 1:
+			return builtin.apply1(arguments[0]);
+		case 2:
+			return builtin.apply2(arguments[0], arguments[1]);
+		case 3:
+			return builtin.apply3(arguments[0], arguments[1], arguments[2]);
+		default:
+			return builtin.apply(Arrays.asList(arguments));
+		}
 	}
 
-	void executeJumpIfFalse(int position) {
-		ip = valueRegister == _false ? position : ip + 1;
+	// Runs an interpreted procedure called by native code, on top of
+	// whatever the interpreter is currently doing.
+	private SchemeObject runInterpreted(CompiledLambda closure, Frame frame)
+			throws SchemeException {
+		final Frame savedFrame = frameRegister;
+		final int savedContinue = continueRegister;
+		final CompiledProgram savedContinueProgram = continueProgramRegister;
+		final CompiledProgram savedProgram = _program;
+		final int savedArguments = argumentsRegister;
+		final int csp = _csp;
+		final int sp = _sp;
+
+		frameRegister = frame;
+		continueRegister = -1;
+		_program = closure.template.program;
+		continueProgramRegister = _program;
+		++_nativeDepth;
+		try {
+			execute(closure.pc);
+		} finally {
+			--_nativeDepth;
+			_program = savedProgram;
+		}
+		if (_csp != csp || _sp != sp)
+			throw new SchemeException(
+					"Bad program: Stack not balanced after procedure call");
+
+		frameRegister = savedFrame;
+		continueRegister = savedContinue;
+		continueProgramRegister = savedContinueProgram;
+		argumentsRegister = savedArguments;
+		return valueRegister;
 	}
 
-	void executeLiteral(SchemeObject value) {
-		valueRegister = value;
-		ip++;
+	private JitProcedure getNativeCode(ClosureTemplate template) {
+		if (template.nativeCode != null) return template.nativeCode;
+		if (_jitThreshold <= 0 || template.isNativeCodeUnavailable
+				|| ++template.callCount < _jitThreshold) return null;
+
+		try {
+			template.nativeCode = compileNative(template);
+		} catch (SchemeException ex) {
+			template.isNativeCodeUnavailable = true;
+		}
+		return template.nativeCode;
 	}
 
-	void executeMakeClosure(String name, int position,
-			boolean hasRestParameter, List<Symbol> parameterNames) {
-		valueRegister = new CompiledLambda(name, environmentRegister, position,
-				parameterNames, hasRestParameter);
-		ip++;
+	private JitProcedure compileNative(ClosureTemplate template)
+			throws SchemeException {
+		final JvmEmitter emitter = new JvmEmitter(template.program);
+		new Compiler(emitter).compileBody(template.form);
+		emitter.emitContinue();
+
+		// Every class gets a loader of its own, so it can be unloaded as soon
+		// as the template holding its only instance is gone.
+		final String className = "org.lb.lbjscheme.jit.Procedure";
+		final byte[] classFile = emitter.toClassFile(className);
+		try {
+			return (JitProcedure) new JitClassLoader(
+					VirtualMachine.class.getClassLoader())
+					.define(className, classFile)
+					.getConstructor(VirtualMachine.class, Object[].class)
+					.newInstance(this, emitter.getConstants());
+		} catch (ReflectiveOperationException | LinkageError ex) {
+			throw new SchemeException("Internal error: Unable to load native code for "
+					+ template.name + ": " + ex);
+		}
 	}
 
-	void executePopAll() {
-		environmentRegister = _environmentStack.pop();
-		continueRegister = _continueStack.pop();
-		argumentsRegister = _argumentsStack.pop();
-		ip++;
+	private void clearArguments(int base) {
+		while (_sp > base)
+			_stack[--_sp] = null;
 	}
 
-	void executePushAll() {
-		_argumentsStack.push(argumentsRegister);
-		_continueStack.push(continueRegister);
-		_environmentStack.push(environmentRegister);
-		ip++;
+	private void pushArgument(SchemeObject value) {
+		if (_sp == _stack.length) _stack = Arrays.copyOf(_stack, _sp * 2);
+		_stack[_sp++] = value;
 	}
 
-	void executePushArg() {
-		argumentsRegister.addFirst(valueRegister);
-		ip++;
+	private SchemeObject popArgument() {
+		final SchemeObject ret = _stack[--_sp];
+		_stack[_sp] = null;
+		return ret;
 	}
 
-	void executeSetArgumentRegisterToValue() {
-		// TODO: Check
-		argumentsRegister = new LinkedList<SchemeObject>();
-		for (SchemeObject i : (SchemeList) valueRegister)
-			argumentsRegister.add(i);
-		ip++;
+	private void pushAll() {
+		if (_csp == _frameStack.length) {
+			final int capacity = _csp * 2;
+			_frameStack = Arrays.copyOf(_frameStack, capacity);
+			_continueStack = Arrays.copyOf(_continueStack, capacity);
+			_continueProgramStack = Arrays.copyOf(_continueProgramStack,
+					capacity);
+			_argumentsStack = Arrays.copyOf(_argumentsStack, capacity);
+		}
+		_frameStack[_csp] = frameRegister;
+		_continueStack[_csp] = continueRegister;
+		_continueProgramStack[_csp] = continueProgramRegister;
+		_argumentsStack[_csp] = argumentsRegister;
+		++_csp;
 	}
 
-	void executeSetContinuationRegisterToPosition(int position) {
-		continueRegister = position;
-		ip++;
+	private void popAll() {
+		--_csp;
+		frameRegister = _frameStack[_csp];
+		_frameStack[_csp] = null;
+		continueRegister = _continueStack[_csp];
+		continueProgramRegister = _continueProgramStack[_csp];
+		_continueProgramStack[_csp] = null;
+		argumentsRegister = _argumentsStack[_csp];
 	}
 
-	void executeSetVariable(Symbol variable) throws SchemeException {
-		environmentRegister.set(variable, valueRegister);
-		ip++;
+	private Cell getCell(final Cell[] cells, final Object[] constants,
+			final int index) throws SchemeException {
+		Cell cell = cells[index];
+		if (cell == null || cell.getEnvironment() != globalEnvironment)
+			cells[index] = cell = globalEnvironment
+					.getCell((Symbol) constants[index]);
+		return cell;
 	}
 
 	public SchemeObject run(final CompiledProgram prog) throws SchemeException {
@@ -145,27 +353,230 @@ public final class VirtualMachine {
 		if (!prog.isRunnable())
 			throw new SchemeException(
 					"Internal error: Program is not runnable yet");
-		ip = initialIp;
-		environmentRegister = globalEnvironment;
+		frameRegister = null;
 		continueRegister = -1;
+		continueProgramRegister = prog;
 		valueRegister = Nil.getInstance();
-		argumentsRegister = new LinkedList<SchemeObject>();
-		_argumentsStack.clear();
-		_continueStack.clear();
-		_environmentStack.clear();
-		final int numStatements = prog.getNumberOfStatements();
-
-		prog.setVm(this);
-		while (ip < numStatements && ip >= 0)
-			prog.executeOpcode(ip);
-
-		if (!_argumentsStack.isEmpty() || !_continueStack.isEmpty()
-				|| !_environmentStack.isEmpty())
+		argumentsRegister = 0;
+		clearArguments(0);
+		while (_csp > 0) {
+			_frameStack[--_csp] = null;
+			_continueProgramStack[_csp] = null;
+		}
+		_program = prog;
+		_nativeDepth = 0;
+
+		execute(initialIp);
+
+		if (_csp != 0)
 			throw new SchemeException(
 					"Bad program: Stack not empty after last instruction");
-		if (!argumentsRegister.isEmpty())
+		if (_sp != 0)
 			throw new SchemeException(
 					"Bad program: Arguments register not empty after last instruction");
 		return valueRegister;
 	}
+
+	private void execute(int ip) throws SchemeException {
+		CompiledProgram program = _program;
+		int[] code = program.getCode();
+		Object[] constants = program.getConstants();
+		Cell[] cells = program.getCells();
+		int numStatements = program.getNumberOfStatements();
+
+		while (ip < numStatements && ip >= 0) {
+			switch (code[ip]) {
+			case Opcode.CALL:
+				ip = call(continueRegister);
+				if (_program != program) {
+					program = _program;
+					code = program.getCode();
+					constants = program.getConstants();
+					cells = program.getCells();
+					numStatements = program.getNumberOfStatements();
+				}
+				break;
+			case Opcode.SELFCALL:
+				if (!selfCall((ClosureTemplate) constants[code[ip + 1]])) {
+					ip = code[ip + 2];
+					break;
+				}
+				// The loop has been finished by native code: return its value
+				ip = continueRegister;
+				if (continueProgramRegister != program) {
+					_program = program = continueProgramRegister;
+					code = program.getCode();
+					constants = program.getConstants();
+					cells = program.getCells();
+					numStatements = program.getNumberOfStatements();
+				}
+				break;
+			case Opcode.CONTINUE:
+				ip = continueRegister;
+				if (continueProgramRegister != program) {
+					_program = program = continueProgramRegister;
+					code = program.getCode();
+					constants = program.getConstants();
+					cells = program.getCells();
+					numStatements = program.getNumberOfStatements();
+				}
+				break;
+			case Opcode.DEFVAR:
+				globalEnvironment.define((Symbol) constants[code[ip + 1]],
+						valueRegister);
+				ip += 2;
+				break;
+			case Opcode.GETLOCAL:
+				valueRegister = frameRegister.get(code[ip + 2], code[ip + 3]);
+				if (valueRegister == null)
+					throw new SchemeException("Unknown symbol "
+							+ constants[code[ip + 1]]);
+				ip += 4;
+				break;
+			case Opcode.GETVAR:
+				valueRegister = getCell(cells, constants, code[ip + 1])
+						.getValue();
+				ip += 2;
+				break;
+			case Opcode.INITARGS:
+				argumentsRegister = _sp;
+				ip++;
+				break;
+			case Opcode.JMP:
+				ip = code[ip + 1];
+				break;
+			case Opcode.JMPF:
+				ip = valueRegister == _false ? code[ip + 1] : ip + 2;
+				break;
+			case Opcode.SWITCH:
+				ip += 2 + 2 * ((CaseForm) constants[code[ip + 1]])
+						.dispatch(valueRegister);
+				break;
+			case Opcode.LITERAL:
+				valueRegister = (SchemeObject) constants[code[ip + 1]];
+				ip += 2;
+				break;
+			case Opcode.MAKECLOSURE: {
+				final ClosureTemplate t = (ClosureTemplate) constants[code[ip + 1]];
+				valueRegister = new CompiledLambda(t,
+						t.form.capture(frameRegister), code[ip + 2]);
+				ip += 3;
+				break;
+			}
+			case Opcode.POPALL:
+				popAll();
+				ip++;
+				break;
+			case Opcode.PUSHALL:
+				pushAll();
+				ip++;
+				break;
+			case Opcode.PUSHARG:
+				pushArgument(valueRegister);
+				ip++;
+				break;
+			case Opcode.SETARGS:
+				argumentsRegister = _sp;
+				for (SchemeObject i : (SchemeList) valueRegister)
+					pushArgument(i);
+				ip++;
+				break;
+			case Opcode.SETCONT:
+				continueRegister = code[ip + 1];
+				continueProgramRegister = program;
+				ip += 2;
+				break;
+			case Opcode.SETLOCAL:
+				frameRegister.set(code[ip + 1], code[ip + 2], valueRegister);
+				ip += 3;
+				break;
+			case Opcode.SETVAR:
+				getCell(cells, constants, code[ip + 1]).setValue(valueRegister);
+				ip += 2;
+				break;
+			case Opcode.CAR:
+				valueRegister = Primitives.car(valueRegister);
+				ip++;
+				break;
+			case Opcode.CDR:
+				valueRegister = Primitives.cdr(valueRegister);
+				ip++;
+				break;
+			case Opcode.CONS:
+				valueRegister = Primitives.cons(popArgument(), valueRegister);
+				ip++;
+				break;
+			case Opcode.EQ:
+				valueRegister = Primitives.eq(popArgument(), valueRegister);
+				ip++;
+				break;
+			case Opcode.NULLP:
+				valueRegister = Primitives.nullP(valueRegister);
+				ip++;
+				break;
+			case Opcode.PAIRP:
+				valueRegister = Primitives.pairP(valueRegister);
+				ip++;
+				break;
+			case Opcode.ZEROP:
+				valueRegister = Primitives.zeroP(valueRegister);
+				ip++;
+				break;
+			case Opcode.ADD2:
+				valueRegister = Primitives.add(popArgument(), valueRegister);
+				ip++;
+				break;
+			case Opcode.SUB2:
+				valueRegister = Primitives.sub(popArgument(), valueRegister);
+				ip++;
+				break;
+			case Opcode.LT2:
+				valueRegister = Primitives.lt(popArgument(), valueRegister);
+				ip++;
+				break;
+			case Opcode.GT2:
+				valueRegister = Primitives.gt(popArgument(), valueRegister);
+				ip++;
+				break;
+			case Opcode.LE2:
+				valueRegister = Primitives.le(popArgument(), valueRegister);
+				ip++;
+				break;
+			case Opcode.GE2:
+				valueRegister = Primitives.ge(popArgument(), valueRegister);
+				ip++;
+				break;
+			case Opcode.NUMEQ2:
+				valueRegister = Primitives.numEq(popArgument(), valueRegister);
+				ip++;
+				break;
+			default:
+				throw new SchemeException("Internal error: Invalid opcode "
+						+ code[ip] + " at " + ip);
+			}
+		}
+	}
+
+	private static final class TailCallMarker extends SchemeObject {
+		@Override
+		public String toString(boolean forDisplay) {
+			return "<tail call>";
+		}
+
+		@Override
+		public Object toJavaObject() throws SchemeException {
+			throw new SchemeException(
+					"Internal error: Tail call marker escaped native code");
+		}
+	}
+
+	private static final class JitClassLoader extends ClassLoader {
+		JitClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		Class<?> define(String name, byte[] classFile) {
+			return defineClass(name, classFile, 0, classFile.length);
+		}
+	}
 }
@@ -26,4 +26,98 @@ public final class AnalyzingEvaluatorTest extends EvaluatorTest {
 		global.setOutputPort(new OutputPort(new OutputStreamWriter(System.out)));
 		interp = new AnalyzingEvaluator(global);
 	}
+
+	@Override
+	protected void setOptimizationLevel(int level) {
+		((AnalyzingEvaluator) interp).setOptimizationLevel(level);
+	}
+
+	public void testPolymorphicCallSites() throws SchemeException {
+		interp.eval("(define (call f x) (f x))");
+		assertEquals("2", interp.eval("(call car '(2 3))").toString(false));
+		assertEquals("(3)", interp.eval("(call cdr '(2 3))").toString(false));
+		assertEquals("4", interp.eval("(call (lambda (x) (* x x)) 2)")
+				.toString(false));
+		assertEquals("9", interp.eval("(call (lambda (x) (* x x)) 3)")
+				.toString(false));
+		assertEquals("(1)", interp.eval("(call list 1)").toString(false));
+		assertEquals("(5)", interp.eval("(call (lambda x x) 5)")
+				.toString(false));
+	}
+
+	public void testArityErrorAfterSpecialization() throws SchemeException {
+		interp.eval("(define (call f) (f 1))");
+		assertEquals("1", interp.eval("(call (lambda (x) x))").toString(false));
+		try {
+			interp.eval("(call (lambda (x y) x))");
+			fail("Expected an exception");
+		} catch (SchemeException expected) {
+		}
+	}
+
+	// Each level of non-tail recursion takes only a few Java frames, so
+	// this fits into the default stack even before the JIT compiler kicks in
+	public void testDeepNonTailRecursion() throws SchemeException {
+		interp.eval("(define (deep n) (if (= n 0) 0 (+ 1 (deep (- n 1)))))");
+		assertEquals("2000", interp.eval("(deep 2000)").toString(false));
+	}
+
+	public void testNativeDerivedForms() throws SchemeException {
+		assertEquals("2", interp.eval(
+				"(cond ((assv 'b '((a 1) (b 2))) => cadr) (else #f))")
+				.toString(false));
+		assertEquals("#f", interp.eval("(or)").toString(false));
+		interp.eval("(defmacro unless (c . body) `(if ,c 'redefined #f))");
+		assertEquals("redefined", interp.eval("(unless #t 1)")
+				.toString(false));
+		for (String malformed : new String[] { "(and . 1)", "(and 1 . 2)",
+				"(cond (1 . 2))" }) {
+			try {
+				interp.eval(malformed);
+				fail("Expected an exception");
+			} catch (SchemeException expected) {
+				assertTrue(expected.getMessage().startsWith("Invalid"));
+			}
+		}
+	}
+
+	public void testInlinedProceduresFollowRedefinitions()
+			throws SchemeException {
+		setOptimizationLevel(Optimizer.INLINE);
+		interp.eval("(define (sq x) (* x x))");
+		interp.eval("(define (f y) (sq (+ y 1)))");
+		assertEquals("9", interp.eval("(f 2)").toString(false));
+		interp.eval("(define (sq x) (+ x x))");
+		assertEquals("6", interp.eval("(f 2)").toString(false));
+	}
+
+	public void testEnvironmentsDoNotShareAnalyzedLambdas()
+			throws SchemeException {
+		final AnalyzingEvaluator other = new AnalyzingEvaluator(
+				Environment.newInteractionEnvironment(null));
+		final AnalyzedLambda mine = (AnalyzedLambda) interp.eval("##cadr");
+		final AnalyzedLambda theirs = (AnalyzedLambda) other.eval("##cadr");
+		assertNotSame(mine.getForm(), theirs.getForm());
+		assertEquals("2", interp.eval("(##cadr '(1 2))").toString(false));
+		assertEquals("2", other.eval("(##cadr '(1 2))").toString(false));
+	}
+
+	public void testLambdasFromEvalSeeUserMacros() throws SchemeException {
+		interp.eval("(defmacro twice (x) (list 'begin x x))");
+		interp.eval("(define f (eval '(lambda () (twice 7))"
+				+ " (interaction-environment)))");
+		assertEquals("7", interp.eval("(f)").toString(false));
+		assertEquals("7", interp.eval("(apply f '())").toString(false));
+	}
+
+	public void testClosuresCaptureOnlyFreeVariables() throws SchemeException {
+		interp.eval("(define (f big unused) (lambda (x) (+ x big)))");
+		final AnalyzedLambda withFree = (AnalyzedLambda) interp
+				.eval("(f 1 (make-vector 1000))");
+		assertEquals(1, withFree.getForm().getNumberOfFreeVariables());
+		assertEquals("3", interp.eval("((f 1 2) 2)").toString(false));
+
+		interp.eval("(define (g big) (lambda (x) x))");
+		assertNull(((AnalyzedLambda) interp.eval("(g 1)")).getCaptured());
+	}
 }
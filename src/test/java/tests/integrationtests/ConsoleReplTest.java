@@ -0,0 +1,106 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.integrationtests;
+
+import java.io.*;
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+
+public final class ConsoleReplTest extends TestCase {
+	private File _file;
+
+	@Override
+	public void setUp() throws IOException {
+		_file = File.createTempFile("lbjscheme", ".scm");
+	}
+
+	@Override
+	public void tearDown() {
+		_file.delete();
+	}
+
+	private String runFile(String contents, String evaluatorSwitch)
+			throws Exception {
+		final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+		runFile(contents, evaluatorSwitch, captured);
+		return captured.toString();
+	}
+
+	private void runFile(String contents, String evaluatorSwitch,
+			OutputStream captured) throws Exception {
+		final Writer w = new FileWriter(_file);
+		w.write(contents);
+		w.close();
+
+		final PrintStream stdout = System.out;
+		System.setOut(new PrintStream(captured, true));
+		try {
+			ConsoleRepl.run(new String[] { evaluatorSwitch, _file.getPath() });
+		} finally {
+			System.setOut(stdout);
+		}
+	}
+
+	// The forms after the error span more than one buffer of the input port
+	public void testErrorStopsFile() throws Exception {
+		final StringBuilder sb = new StringBuilder("(car 5)\n");
+		for (int i = 0; sb.length() < 3 * 8192; ++i)
+			sb.append("(define x" + i + "-padding-padding-padding 'x)\n");
+		sb.append("(display \"done\")\n");
+		for (String evaluatorSwitch : new String[] { "-i", "-a", "-c" }) {
+			final String output = runFile(sb.toString(), evaluatorSwitch);
+			assertEquals(1, output.trim().split("\n").length);
+			assertFalse(output.contains("Unknown symbol"));
+			assertFalse(output.contains("done"));
+		}
+	}
+
+	public void testOutputIsFlushedOnStackOverflow() throws Exception {
+		for (String evaluatorSwitch : new String[] { "-i", "-a" }) {
+			final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+			try {
+				runFile("(display \"before\") (newline)"
+						+ "(define (deep n) (+ 1 (deep n))) (deep 0)",
+						evaluatorSwitch, captured);
+				fail();
+			} catch (StackOverflowError ex) {
+				// Expected
+			}
+			assertEquals("before", captured.toString().trim());
+		}
+	}
+
+	public void testOutputFilesAreFlushedOnExit() throws Exception {
+		final File outputFile = File.createTempFile("lbjscheme", ".txt");
+		try {
+			for (String evaluatorSwitch : new String[] { "-i", "-a", "-c" }) {
+				runFile("(define p (open-output-file \""
+						+ outputFile.getPath().replace("\\", "\\\\")
+						+ "\")) (display \"data\" p)", evaluatorSwitch);
+				final BufferedReader r = new BufferedReader(new FileReader(
+						outputFile));
+				try {
+					assertEquals("data", r.readLine());
+				} finally {
+					r.close();
+				}
+			}
+		} finally {
+			outputFile.delete();
+		}
+	}
+}
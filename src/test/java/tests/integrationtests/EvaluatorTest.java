@@ -111,6 +111,108 @@ public abstract class EvaluatorTest extends TestCase {
 		evalTest("asd", "3.1415");
 	}
 
+	public void testInternalDefinitions() throws SchemeException {
+		interp.eval("(define (foo x) (define (even? n) (if (= n 0) #t (odd? (- n 1)))) (define (odd? n) (if (= n 0) #f (even? (- n 1)))) (even? x))");
+		evalTest("(foo 10)", "#t");
+		evalTest("(foo 7)", "#f");
+	}
+
+	public void testClosuresShareCapturedVariables() throws SchemeException {
+		interp.eval("(define (make-counter) (let ((n 0)) (list (lambda () (set! n (+ n 1)) n) (lambda () n))))");
+		interp.eval("(define c (make-counter))");
+		evalTest("((car c))", "1");
+		evalTest("((car c))", "2");
+		evalTest("((cadr c))", "2");
+	}
+
+	public void testClosuresCaptureFromEnclosingProcedures()
+			throws SchemeException {
+		interp.eval("(define (make-account balance) (lambda (op) (lambda (amount) (if (eq? op 'deposit) (set! balance (+ balance amount)) (set! balance (- balance amount))) balance)))");
+		interp.eval("(define acc (make-account 10))");
+		evalTest("((acc 'deposit) 5)", "15");
+		evalTest("((acc 'withdraw) 3)", "12");
+		evalTest("(((make-account 1) 'deposit) 1)", "2");
+		evalTest("(let ((x 1)) (let ((f (lambda () x))) (set! x 2) (f)))", "2");
+	}
+
+	public void testSelfTailCalls() throws SchemeException {
+		evalTest("(let loop ((i 0) (acc 0)) (if (= i 1000000) acc (loop (+ i 1) (+ acc 1))))", "1000000");
+		evalTest("(let loop ((a 1) (b 2) (n 3)) (if (= n 0) (list a b) (loop b a (- n 1))))", "(2 1)");
+		evalTest("(let loop ((i 0) (acc '())) (if (= i 3) (map (lambda (f) (f)) acc) (loop (+ i 1) (cons (lambda () i) acc))))", "(2 1 0)");
+		evalTest("(let loop ((i 0) (acc '())) (if (= i 3) (map (lambda (f) (f)) acc) (let ((j i)) (set! i (+ i 1)) (loop i (cons (lambda () j) acc)))))", "(2 1 0)");
+		evalTest("(do ((i 0 (+ i 1)) (s '() (cons i s))) ((= i 3) s))", "(2 1 0)");
+		interp.eval("(define (count n) (let loop ((i 0) (acc 0)) (if (= i n) acc (loop (+ i 1) (+ acc 1)))))");
+		evalTest("(count 100000)", "100000");
+		interp.eval("(define (swap n) (let loop ((a 1) (b 2) (n n)) (if (= n 0) (list a b) (loop b a (- n 1)))))");
+		evalTest("(swap 3)", "(2 1)");
+		interp.eval("(define (thunks n) (do ((i 0 (+ i 1)) (acc '() (cons (lambda () i) acc))) ((= i n) (map (lambda (f) (f)) acc))))");
+		evalTest("(thunks 3)", "(2 1 0)");
+	}
+
+	public void testDerivedForms() throws SchemeException {
+		evalTest("(let ((x 2) (y 3)) (let ((x 7) (z (+ x y))) (* z x)))", "35");
+		evalTest("(let ((x 2) (y 3)) (let* ((x 7) (z (+ x y))) (* z x)))", "70");
+		evalTest("(letrec ((even? (lambda (n) (if (zero? n) #t (odd? (- n 1))))) (odd? (lambda (n) (if (zero? n) #f (even? (- n 1)))))) (even? 88))", "#t");
+		evalTest("(cond ((> 3 3) 'greater) ((< 3 3) 'less) (else 'equal))", "equal");
+		evalTest("(cond ((assv 'b '((a 1) (b 2))) => cadr) (else #f))", "2");
+		evalTest("(cond ((assv 'c '((a 1) (b 2))) => cadr) (else #f))", "#f");
+		evalTest("(cond (#f) ((memq 'b '(a b c))) (else 'none))", "(b c)");
+		evalTest("(cond (5))", "5");
+		evalTest("(case (* 2 3) ((2 3 5 7) 'prime) ((1 4 6 8 9) 'composite))", "composite");
+		evalTest("(case (car '(c d)) ((a e i o u) 'vowel) ((w y) 'semivowel) (else 'consonant))", "consonant");
+		evalTest("(case #\\b ((#\\a) 1) ((#\\b) 2) (else 3))", "2");
+		evalTest("(and 1 2 'c '(f g))", "(f g)");
+		evalTest("(or (memq 'b '(a b c)) (/ 3 0))", "(b c)");
+		evalTest("(when (> 1 0) 'a 'b)", "b");
+		interp.eval("(define (f x) (let ((y (* x 2))) (define z 1) (let ((x 10)) (+ x y z))))");
+		evalTest("(f 3)", "17");
+		interp.eval("(define (classify x) (case x ((1 2 3) 'small) ((#\\a a) 'letter) (else 'other)))");
+		evalTest("(map classify '(2 a #\\a 4))", "(small letter letter other)");
+		interp.eval("(define (second k l) (cond ((assv k l) => cadr) ((null? l) 'empty) (else #f)))");
+		evalTest("(list (second 'b '((a 1) (b 2))) (second 'c '()) (second 'c '((a 1))))", "(2 empty #f)");
+		interp.eval("(define (first-true l) (cond ((null? l) #f) ((car l)) (else (first-true (cdr l)))))");
+		evalTest("(list (first-true '(#f 5 6)) (first-true '(#f)))", "(5 #f)");
+		interp.eval("(define (any? l) (or (null? l) (and (car l) (any? (cdr l)))))");
+		evalTest("(any? '(1 2 #f))", "#f");
+		interp.eval("(define (sum v) (do ((i 0 (+ i 1)) (s 0 (+ s (vector-ref v i)))) ((= i (vector-length v)) s)))");
+		evalTest("(sum '#(1 2 3))", "6");
+		interp.eval("(define (shadow x) (let* ((y x) (x 2)) (letrec ((z (lambda () (+ x y)))) (z))))");
+		evalTest("(shadow 5)", "7");
+		for (String malformed : new String[] { "(cond (1 . 2))",
+				"(cond (1 2) . 3)", "(cond (1 => . 2))" }) {
+			try {
+				interp.eval(malformed);
+				fail("A malformed cond form should throw an error");
+			} catch (SchemeException ex) {
+				assertTrue(true);
+			}
+		}
+	}
+
+	// Evaluators without an optimizer run the same programs unchanged
+	protected void setOptimizationLevel(int level) {
+	}
+
+	public void testOptimizationLevels() throws SchemeException {
+		for (int level = Optimizer.NONE; level <= Optimizer.INLINE; ++level) {
+			setOptimizationLevel(level);
+			interp.eval("(define (sq x) (* x x))");
+			interp.eval("(define (f y) (let ((k 2)) (if (##< 1 k) (sq (##+ y k)) (g))))");
+			evalTest("(f 1)", "9");
+			interp.eval("(define (sq x) (+ x x))");
+			evalTest("(f 1)", "6");
+			interp.eval("(define (inc! x) (set! x (##+ x 1)) x)");
+			interp.eval("(define (p a) (list (inc! a) a))");
+			evalTest("(p 5)", "(6 5)");
+			interp.eval("(define (fails) (##car 1))");
+			try {
+				interp.eval("(fails)");
+				fail("Expected an exception");
+			} catch (SchemeException expected) {
+			}
+		}
+	}
+
 	public void testInexactRationals() throws SchemeException {
 		interp.eval("(define a 3/4)");
 		interp.eval("(define b (exact->inexact a))");
@@ -148,6 +250,58 @@ public abstract class EvaluatorTest extends TestCase {
 		}
 	}
 
+	public void testFixedArityBuiltinCalls() throws SchemeException {
+		evalTest("(- 5)", "-5");
+		evalTest("(- 5 3)", "2");
+		evalTest("(- 10 3 2 1)", "4");
+		evalTest("(* 0 'x)", "0");
+		evalTest("(< 1 2)", "#t");
+		evalTest("(< 1 2 2)", "#f");
+		evalTest("(let ((v (vector 1 2))) (vector-set! v 0 'a) v)", "#(a 2)");
+		try {
+			interp.eval("(cdr)");
+			fail("Calling a builtin with too few parameters should throw an error");
+		} catch (SchemeException ex) {
+			assertTrue(true);
+		}
+		try {
+			interp.eval("(cons 1 2 3)");
+			fail("Calling a builtin with too many parameters should throw an error");
+		} catch (SchemeException ex) {
+			assertTrue(true);
+		}
+	}
+
+	public void testListAndStringBuiltins() throws SchemeException {
+		interp.eval("(define tail (list 3 4))");
+		evalTest("(eq? (cddr (append '(1) '(2) tail)) tail)", "#t");
+		evalTest("(append '(1 2) 3)", "(1 2 . 3)");
+		evalTest("(length (reverse '(1 2 3)))", "3");
+		evalTest("(list-ref '(a b c) 2)", "c");
+		evalTest("(substring \"hello world\" 6 11)", "\"world\"");
+		evalTest("(string-append \"a\" \"bc\" \"\")", "\"abc\"");
+		evalTest("(string<? \"abc\" \"abd\")", "#t");
+		evalTest("(string<? \"ab\" \"ab\")", "#f");
+		evalTest("(string-ci=? \"HeLLo\" \"hello\")", "#t");
+		evalTest("(equal? '#(1 (2 \"x\")) '#(1 (2 \"x\")))", "#t");
+		evalTest("(assoc \"b\" '((\"a\" . 1) (\"b\" . 2)))", "(\"b\" . 2)");
+		evalTest("(max 1 2.0 3)", "3.0");
+		evalTest("(min 3 1 2)", "1");
+		evalTest("(list->vector '(1 2 3))", "#(1 2 3)");
+		try {
+			interp.eval("(length '(1 2 . 3))");
+			fail("length of an improper list should throw an error");
+		} catch (SchemeException ex) {
+			assertTrue(true);
+		}
+		try {
+			interp.eval("(substring \"abc\" 2 5)");
+			fail("substring out of bounds should throw an error");
+		} catch (SchemeException ex) {
+			assertTrue(true);
+		}
+	}
+
 	public void testValues() throws SchemeException {
 		evalTest("(call-with-values (lambda () (values 1 2)) +)", "3");
 		evalTest("(call-with-values * -)", "-1");
@@ -0,0 +1,92 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.integrationtests;
+
+import java.io.*;
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+
+public final class JitTest extends TestCase {
+	private CompilingEvaluator eval;
+
+	@Override
+	public void setUp() throws SchemeException {
+		eval = new CompilingEvaluator(new InputPort(new StringReader("")),
+				new OutputPort(new StringWriter()));
+		eval.setJitThreshold(1);
+	}
+
+	private void evalTest(String expression, String expected)
+			throws SchemeException {
+		assertEquals(expected, eval.eval(expression).toString(false));
+	}
+
+	public void testRecursion() throws SchemeException {
+		evalTest("(define (fib n) (if (< n 2) n (+ (fib (- n 1)) (fib (- n 2)))))"
+				+ "(fib 20)", "6765");
+		evalTest("(define (tak x y z) (if (not (< y x)) z"
+				+ " (tak (tak (- x 1) y z) (tak (- y 1) z x) (tak (- z 1) x y))))"
+				+ "(tak 18 12 6)", "7");
+	}
+
+	public void testDeepRecursion() throws SchemeException {
+		evalTest("(define (build n) (if (= n 0) '() (cons n (build (- n 1)))))"
+				+ "(length (build 100000))", "100000");
+	}
+
+	public void testTailCalls() throws SchemeException {
+		evalTest("(define (ev? n) (if (= n 0) #t (od? (- n 1))))"
+				+ "(define (od? n) (if (= n 0) #f (ev? (- n 1))))"
+				+ "(ev? 1000001)", "#f");
+	}
+
+	public void testClosures() throws SchemeException {
+		evalTest("(define (make-counter) (let ((n 0)) (lambda () (set! n (+ n 1)) n)))"
+				+ "(define c (make-counter)) (c) (c) (c)", "3");
+		evalTest("(define (rest a . r) r) (rest 1 2 3)", "(2 3)");
+		evalTest("(define (six a b c d e f) (list a b c d e f)) (six 1 2 3 4 5 6)",
+				"(1 2 3 4 5 6)");
+		evalTest("(map (lambda (x) (* x x)) '(1 2 3))", "(1 4 9)");
+		evalTest("(define (make-acc n) (lambda (d) (lambda () (set! n (+ n d)) n)))"
+				+ "(define inc (make-acc 0)) ((inc 2)) ((inc 3))", "5");
+	}
+
+	public void testErrors() throws SchemeException {
+		eval.eval("(define (first x) (car x))");
+		try {
+			eval.eval("(first 1)");
+			fail("Expected an exception");
+		} catch (SchemeException expected) {
+		}
+		evalTest("(first '(1 2))", "1");
+	}
+
+	public void testProceduresFromEarlierEvaluations() throws SchemeException {
+		eval.setJitThreshold(0);
+		eval.eval("(define (adder n) (lambda (x) (+ x n)))");
+		eval.eval("(define add2 (adder 2))");
+		evalTest("(add2 3)", "5");
+		evalTest("(list (add2 1) ((adder 10) 1))", "(3 11)");
+		eval.eval("(define (ev? n) (if (= n 0) #t (od? (- n 1))))");
+		eval.eval("(define (od? n) (if (= n 0) #f (ev? (- n 1))))");
+		evalTest("(ev? 100001)", "#f");
+		evalTest("(map add2 (list (if (ev? 10) 1 0) (add2 0)))", "(3 4)");
+		for (int i = 0; i < 1000; ++i)
+			eval.eval("(define (f" + i + ") " + i + ")");
+		evalTest("(+ (f0) (f999) (add2 0))", "1001");
+	}
+}
@@ -0,0 +1,68 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import java.io.StringWriter;
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+
+public final class EnvironmentTest extends TestCase {
+	private static String eval(Environment env, String expression)
+			throws SchemeException {
+		return new InterpretingEvaluator(env).eval(expression).toString(false);
+	}
+
+	public void testInteractionEnvironmentsAreIndependent()
+			throws SchemeException {
+		final Environment a = Environment.newInteractionEnvironment(null);
+		final Environment b = Environment.newInteractionEnvironment(null);
+		eval(a, "(define x 1)");
+		eval(a, "(define (map f lst) 'redefined)");
+		eval(a, "(set! last (lambda (lst) 'redefined))");
+		assertEquals("redefined", eval(a, "(map car '((1)))"));
+		assertEquals("redefined", eval(a, "(last '(1 2))"));
+		assertEquals("(1)", eval(b, "(map car '((1)))"));
+		assertEquals("2", eval(b, "(last '(1 2))"));
+		try {
+			eval(b, "x");
+			fail("Definition leaked into another environment");
+		} catch (SchemeException expected) {
+		}
+	}
+
+	public void testBuiltinsAreBoundToTheirOwnEnvironment()
+			throws SchemeException {
+		final Environment a = Environment.newInteractionEnvironment(null);
+		final Environment b = Environment.newInteractionEnvironment(null);
+		final StringWriter outA = new StringWriter();
+		final StringWriter outB = new StringWriter();
+		a.setOutputPort(new OutputPort(outA));
+		b.setOutputPort(new OutputPort(outB));
+		eval(a, "(display \"a\") (flush-output)");
+		eval(b, "(display \"b\") (flush-output)");
+		assertEquals("a", outA.toString());
+		assertEquals("b", outB.toString());
+	}
+
+	public void testInitScriptDefinitionsSeeTheirOwnEnvironment()
+			throws SchemeException {
+		final Environment a = Environment.newInteractionEnvironment(null);
+		assertEquals("(2 3)", eval(a, "(filter (lambda (x) (> x 1)) '(1 2 3))"));
+		assertEquals("#t", eval(a, "(eq? drop list-tail)"));
+		assertEquals("#t", eval(a, "(eq? map ##map)"));
+	}
+}
@@ -0,0 +1,65 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+
+public final class FixnumTest extends TestCase {
+	public void testSmallValuesAreShared() {
+		assertSame(Fixnum.valueOf(0), Fixnum.valueOf(0));
+		assertSame(Fixnum.valueOf(-1024), Fixnum.valueOf(-1024));
+		assertSame(Fixnum.valueOf(65535), Fixnum.valueOf(65535));
+		assertEquals(70000, Fixnum.valueOf(70000).getValue());
+	}
+
+	public void testArithmetic() throws SchemeException {
+		final Fixnum two = Fixnum.valueOf(2);
+		assertSame(Fixnum.valueOf(5), two.add(Fixnum.valueOf(3)));
+		assertSame(Fixnum.valueOf(-1), two.sub(Fixnum.valueOf(3)));
+		assertSame(Fixnum.valueOf(6), two.mul(Fixnum.valueOf(3)));
+		assertTrue(two.lt(Fixnum.valueOf(3)));
+		assertEquals(0, two.compareTo(new Real(2)));
+		assertEquals("5/2", two.add(Rational.valueOf("1/2", 10)).toString(false));
+	}
+
+	public void testOverflow() throws SchemeException {
+		final Fixnum max = Fixnum.valueOf(Long.MAX_VALUE);
+		final Fixnum min = Fixnum.valueOf(Long.MIN_VALUE);
+		assertTrue(max.add(Fixnum.valueOf(1)) instanceof Bignum);
+		assertEquals("18446744073709551614", max.add(max).toString(false));
+		assertTrue(min.sub(Fixnum.valueOf(1)) instanceof Bignum);
+		assertEquals("85070591730234615847396907784232501249", max.mul(max)
+				.toString(false));
+		assertEquals("9223372036854775808", min.mul(Fixnum.valueOf(-1))
+				.toString(false));
+		assertEquals("9223372036854775808", min.idiv(Fixnum.valueOf(-1))
+				.toString(false));
+		assertTrue(max.add(Fixnum.valueOf(1)).sub(Fixnum.valueOf(1))
+				instanceof Fixnum);
+	}
+
+	public void testLongRange() throws SchemeException {
+		final SchemeNumber n = SchemeNumber.fromString("4294967296", 10);
+		assertTrue(n instanceof Fixnum);
+		assertEquals(1L << 32, ((Fixnum) n).getValue());
+		assertEquals("18446744073709551616", n.mul(n).toString(false));
+		assertTrue(JvmBridge.fromJavaObject(1L << 40) instanceof Fixnum);
+		assertEquals(1L << 40, Fixnum.valueOf(1L << 40).toJavaObject());
+		assertEquals(42, Fixnum.valueOf(42).toJavaObject());
+	}
+}
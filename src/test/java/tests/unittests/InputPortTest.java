@@ -0,0 +1,103 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.Reader;
+
+public final class InputPortTest extends TestCase {
+	private File _file;
+
+	@Override
+	public void setUp() throws IOException {
+		_file = File.createTempFile("lbjscheme", ".scm");
+	}
+
+	@Override
+	public void tearDown() {
+		_file.delete();
+	}
+
+	private void writeFile(String contents) throws IOException {
+		final Writer w = new OutputStreamWriter(new FileOutputStream(_file),
+				Charset.defaultCharset());
+		w.write(contents);
+		w.close();
+	}
+
+	public void testSmallFile() throws IOException, SchemeException {
+		writeFile("(a b)");
+		final InputPort port = InputPort.openFile(_file.getPath());
+		assertEquals("(a b)", new Reader(port).read().toString(false));
+		assertEquals(-1, port.readChar());
+		port.close();
+	}
+
+	public void testMappedFile() throws IOException, SchemeException {
+		// Round trip through the default charset, which might not be able to
+		// represent the umlauts
+		final Charset cs = Charset.defaultCharset();
+		final String record = new String(
+				"(record \"\u00e4\u00f6\u00fc\" 12345 sym)\n".getBytes(cs), cs);
+		final int count = (int) (InputPort.MAPPED_FILE_THRESHOLD
+				/ record.length()) + 100;
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; ++i)
+			sb.append(record);
+		writeFile(sb.toString());
+
+		final InputPort port = InputPort.openFile(_file.getPath());
+		final Reader r = new Reader(port);
+		for (int i = 0; i < count; ++i)
+			assertEquals(record.trim(), r.read().toString(false));
+		assertEquals('\n', port.readChar());
+		assertEquals(-1, port.peekChar());
+		assertEquals(-1, port.readChar());
+		port.close();
+	}
+
+	public void testMappedFileWithCharacterOutsideBmp() throws IOException,
+			SchemeException {
+		// The refill after the first 8192 chars asks for a single char,
+		// which cannot hold the surrogate pair
+		final Charset utf8 = Charset.forName("UTF-8");
+		final StringBuilder sb = new StringBuilder("\"");
+		for (int i = 0; i < 8191; ++i)
+			sb.append('a');
+		final String string = sb.substring(1) + "\ud83d\ude00";
+		sb.append("\ud83d\ude00\"\n");
+		while (sb.length() < InputPort.MAPPED_FILE_THRESHOLD)
+			sb.append("               \n");
+		final OutputStream out = new FileOutputStream(_file);
+		out.write(sb.toString().getBytes(utf8));
+		out.close();
+
+		final InputPort port = InputPort.openFile(_file.getPath(), utf8);
+		final Reader r = new Reader(port);
+		assertEquals(string, ((SchemeString) r.read()).getValue());
+		try {
+			r.read();
+			fail();
+		} catch (EOFException ex) {
+			// The rest of the file is whitespace
+		}
+		port.close();
+	}
+}
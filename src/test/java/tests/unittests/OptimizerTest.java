@@ -0,0 +1,108 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import java.io.*;
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.Reader;
+import org.lb.lbjscheme.ast.*;
+
+public final class OptimizerTest extends TestCase {
+	private Environment _global;
+	private AnalyzingEvaluator _evaluator;
+	private Analyzer _analyzer;
+
+	@Override
+	public void setUp() throws SchemeException {
+		_global = Environment.newInteractionEnvironment(null);
+		_evaluator = new AnalyzingEvaluator(_global);
+		_analyzer = new Analyzer();
+	}
+
+	private SyntaxTreeObject optimize(String expression, int level)
+			throws SchemeException, EOFException {
+		final Reader r = new Reader(new InputPort(new StringReader(expression)));
+		return new Optimizer(_global, level).optimize(_analyzer.analyze(r
+				.read()));
+	}
+
+	private BeginForm optimizeBody(String lambda) throws SchemeException,
+			EOFException {
+		return ((LambdaForm) optimize(lambda, Optimizer.INLINE))
+				.getAnalyzedForms();
+	}
+
+	private static SchemeObject literalValue(SyntaxTreeObject form) {
+		assertTrue(form instanceof SelfEvaluatingLiteral);
+		return ((SelfEvaluatingLiteral) form).getValue();
+	}
+
+	public void testConstantFolding() throws Exception {
+		assertEquals("7", literalValue(optimize("(##+ 1 (##* 2 3))",
+				Optimizer.FOLD)).toString());
+		assertEquals("#t", literalValue(optimize("(##not #f)", Optimizer.FOLD))
+				.toString());
+		assertTrue(optimize("(##+ 1 2)", Optimizer.NONE) instanceof Funcall);
+		assertTrue(optimize("(+ 1 2)", Optimizer.FOLD) instanceof Funcall);
+		assertTrue(optimize("(##car 1)", Optimizer.FOLD) instanceof Funcall);
+	}
+
+	public void testDeadBranches() throws Exception {
+		assertEquals("a", literalValue(optimize("(if (##< 1 2) 'a (x))",
+				Optimizer.FOLD)).toString());
+		assertEquals("b", literalValue(optimize("(or #f 'b (x))",
+				Optimizer.FOLD)).toString());
+		assertEquals("two", literalValue(optimize(
+				"(case (##+ 1 1) ((1) 'one) ((2) 'two) (else (x)))",
+				Optimizer.FOLD)).toString());
+	}
+
+	public void testConstantPropagation() throws Exception {
+		final BeginForm body = optimizeBody(
+				"(lambda () (let ((x 2)) (##* x x)))");
+		assertEquals("4", literalValue(body.getLastForm()).toString());
+		assertTrue(optimizeBody("(lambda () (let ((x 2)) (set! x 3) x))")
+				.getLastForm() instanceof LocalSymbol);
+	}
+
+	public void testInlining() throws Exception {
+		final SyntaxTreeObject cadr = optimizeBody("(lambda (l) (##cadr l))")
+				.getLastForm();
+		assertTrue(cadr instanceof Funcall);
+		assertEquals("##car", ((Funcall) cadr).getProcedure().toString());
+		assertEquals("25", literalValue(optimize("(##square 5)",
+				Optimizer.INLINE)).toString());
+
+		_evaluator.eval("(define (sq x) (* x x))");
+		assertTrue(optimizeBody("(lambda (y) (sq y))").getLastForm() instanceof InlinedCall);
+		// ## procedures are locked and need no guard
+		assertTrue(optimizeBody("(lambda (y) (##cadr y))").getLastForm() instanceof Funcall);
+	}
+
+	public void testInliningKeepsArgumentsPassedBeforeAssignments()
+			throws Exception {
+		final String program = "(define (first a b) a)"
+				+ "(define (g) (let ((x 1)) (first x (begin (set! x 2) x))))"
+				+ "(g)";
+		assertEquals("1", _evaluator.eval(program).toString(false));
+		final CompilingEvaluator compiling = new CompilingEvaluator(
+				new InputPort(new StringReader("")), new OutputPort(
+						new StringWriter()));
+		assertEquals("1", compiling.eval(program).toString(false));
+	}
+}
@@ -0,0 +1,114 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import java.io.StringWriter;
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+
+public final class OutputPortTest extends TestCase {
+	public void testBuffering() throws SchemeException {
+		final StringWriter w = new StringWriter();
+		final OutputPort port = new OutputPort(w);
+		port.write("abc\n");
+		port.write('d');
+		assertEquals("", w.toString());
+		port.flush();
+		assertEquals("abc\nd", w.toString());
+	}
+
+	public void testLineBuffering() throws SchemeException {
+		final StringWriter w = new StringWriter();
+		final OutputPort port = new OutputPort(w, true);
+		port.write("abc");
+		assertEquals("", w.toString());
+		port.write('\n');
+		assertEquals("abc\n", w.toString());
+		port.write("d\ne");
+		assertEquals("abc\nd\ne", w.toString());
+	}
+
+	public void testLargeWrites() throws SchemeException {
+		final StringWriter w = new StringWriter();
+		final OutputPort port = new OutputPort(w);
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 10000; ++i) {
+			port.write(Integer.toString(i));
+			port.write(' ');
+			sb.append(i).append(' ');
+		}
+		final String large = sb.toString();
+		port.write(large);
+		port.close();
+		assertEquals(large + large, w.toString());
+	}
+
+	public void testWriteObjects() throws SchemeException {
+		final Environment env = Environment.newInteractionEnvironment(null);
+		final SchemeObject o = new InterpretingEvaluator(env)
+				.eval("(list 1 \"a\\nb\" #\\c (vector 'd \"e\")"
+						+ " '(f . g) '())");
+		final StringWriter w = new StringWriter();
+		final OutputPort port = new OutputPort(w);
+		port.write(o, false);
+		port.write(' ');
+		port.write(o, true);
+		port.flush();
+		assertEquals(o.toString(false) + " " + o.toString(true), w.toString());
+		assertEquals("(1 \"a\\nb\" #\\c #(d \"e\") (f . g) ())",
+				o.toString(false));
+	}
+
+	public void testWriteLongList() throws SchemeException {
+		SchemeObject list = Nil.getInstance();
+		for (int i = 0; i < 200000; ++i)
+			list = new Pair(Fixnum.valueOf(i % 10), list);
+		final StringWriter w = new StringWriter();
+		final OutputPort port = new OutputPort(w);
+		port.write(list, false);
+		port.flush();
+		assertEquals(400001, w.toString().length());
+	}
+
+	public void testWriteDeeplyNestedList() throws SchemeException {
+		SchemeObject list = Nil.getInstance();
+		for (int i = 0; i < 200000; ++i)
+			list = new Pair(list, new Pair(Fixnum.valueOf(i % 10),
+					Symbol.fromString("x")));
+		final StringWriter w = new StringWriter();
+		final OutputPort port = new OutputPort(w);
+		port.write(list, false);
+		port.flush();
+		final String written = w.toString();
+		assertEquals(1600002, written.length());
+		assertTrue(written.startsWith("((((("));
+		assertTrue(written.startsWith("(((", 199997));
+		assertTrue(written.startsWith("(() 0 . x) 1 . x) 2 . x)", 199999));
+		assertTrue(written.endsWith(" 8 . x) 9 . x)"));
+	}
+
+	public void testCloseOutputPort() throws SchemeException {
+		final Environment env = Environment.newInteractionEnvironment(null);
+		final StringWriter w = new StringWriter();
+		final OutputPort port = new OutputPort(w);
+		env.define(Symbol.fromString("port"), port);
+		new InterpretingEvaluator(env)
+				.eval("(write-char #\\a port) (display \"bc\" port)"
+						+ "(close-output-port port)");
+		assertEquals("abc", w.toString());
+	}
+}
@@ -0,0 +1,106 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import java.io.*;
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+import org.lb.lbjscheme.Reader;
+
+public final class ReaderTest extends TestCase {
+	// Hands out one character per read call, so that every token crosses a
+	// buffer boundary
+	private static final class TricklingReader extends StringReader {
+		public TricklingReader(String s) {
+			super(s);
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			return super.read(cbuf, off, Math.min(len, 1));
+		}
+	}
+
+	private static String readAll(java.io.Reader input)
+			throws SchemeException {
+		final Reader r = new Reader(new InputPort(input));
+		final StringBuilder sb = new StringBuilder();
+		while (true) {
+			try {
+				sb.append(r.read().toString(false)).append('|');
+			} catch (EOFException ex) {
+				return sb.toString();
+			}
+		}
+	}
+
+	private static final String _source = "(define (f x) ; comment\n"
+			+ "  (list 'Sym \"a \\\"quoted\\\" string\" #\\space #\\a\n"
+			+ "        #(1 2.5 -3/4) #t #x1F . end))\n" + "\"plain\" 42";
+
+	private static final String _expected = "(define (f x) (list (quote sym)"
+			+ " \"a \"quoted\" string\" #\\space #\\a #(1 2.5 -3/4) #t 31"
+			+ " . end))|\"plain\"|42|";
+
+	public void testRead() throws SchemeException {
+		assertEquals(_expected, readAll(new StringReader(_source)));
+	}
+
+	public void testReadAcrossBufferBoundaries() throws SchemeException {
+		assertEquals(_expected, readAll(new TricklingReader(_source)));
+	}
+
+	public void testLongTokens() throws SchemeException {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20000; ++i)
+			sb.append((char) ('a' + i % 26));
+		final String symbol = sb.toString();
+		assertEquals(symbol + "|\"" + symbol + "\"|", readAll(new StringReader(
+				symbol + " \"" + symbol + "\"")));
+	}
+
+	public void testSymbolsAreFoldedToLowerCase() throws SchemeException,
+			EOFException {
+		final String source = "FooBar foobar FOOBAR Stra\u00dfe STRASSE";
+		for (java.io.Reader input : new java.io.Reader[] {
+				new StringReader(source), new TricklingReader(source) }) {
+			final Reader r = new Reader(new InputPort(input));
+			final SchemeObject first = r.read();
+			assertSame(Symbol.fromString("foobar"), first);
+			assertSame(first, r.read());
+			assertSame(first, r.read());
+			assertSame(Symbol.fromString("stra\u00dfe"), r.read());
+			assertSame(Symbol.fromString("strasse"), r.read());
+		}
+	}
+
+	public void testReadLeavesRestOfInput() throws SchemeException,
+			EOFException {
+		final InputPort port = new InputPort(new StringReader("(a b)c"));
+		assertEquals("(a b)", new Reader(port).read().toString(false));
+		assertEquals('c', port.readChar());
+		assertEquals(-1, port.readChar());
+	}
+
+	public void testUnexpectedEnd() throws SchemeException {
+		try {
+			readAll(new StringReader("\"unterminated"));
+			fail("Expected an exception");
+		} catch (SchemeException expected) {
+		}
+	}
+}
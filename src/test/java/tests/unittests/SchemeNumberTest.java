@@ -0,0 +1,73 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+
+public final class SchemeNumberTest extends TestCase {
+	private static void parseTest(String value, String expected)
+			throws SchemeException {
+		assertEquals(expected, SchemeNumber.parse(value, 10).toString(false));
+	}
+
+	public void testIntegers() throws SchemeException {
+		parseTest("42", "42");
+		parseTest("+42", "42");
+		parseTest("-42", "-42");
+		parseTest("9223372036854775807", "9223372036854775807");
+		parseTest("-9223372036854775808", "-9223372036854775808");
+		parseTest("9223372036854775808", "9223372036854775808");
+		assertTrue(SchemeNumber.parse("-9223372036854775808", 10)
+				instanceof Fixnum);
+		assertTrue(SchemeNumber.parse("9223372036854775808", 10)
+				instanceof Bignum);
+		assertEquals("255", SchemeNumber.parse("ff", 16).toString(false));
+		assertEquals("5", SchemeNumber.parse("101", 2).toString(false));
+	}
+
+	public void testOtherNumbers() throws SchemeException {
+		parseTest("12/9", "4/3");
+		parseTest("-1/2", "-1/2");
+		parseTest("1.5", "1.5");
+		parseTest(".5", "0.5");
+		parseTest("-2.", "-2.0");
+		parseTest("1e3", "1000.0");
+		parseTest("1s3", "1000.0");
+		parseTest("12#.#", "120.0");
+		parseTest("1+2i", "1+2i");
+		parseTest("-3-12/3i", "-3-4i");
+	}
+
+	public void testSymbols() throws SchemeException {
+		final String[] symbols = { "define", "+", "-", "...", ".", "1+",
+				"-i", "pi", "1/0", "1/2/3", "1e", "e1", "#t", "1.2.3",
+				"a-1i", "" };
+		for (String s : symbols)
+			assertNull(s, SchemeNumber.parse(s, 10));
+		assertNull(SchemeNumber.parse("1.5", 16));
+		assertNull(SchemeNumber.parse("12", 2));
+	}
+
+	public void testFromStringThrows() {
+		try {
+			SchemeNumber.fromString("lambda", 10);
+			fail("Expected an exception");
+		} catch (SchemeException expected) {
+		}
+	}
+}
@@ -0,0 +1,77 @@
+// lbjScheme
+// An experimental Scheme subset interpreter in Java, based on SchemeNet.cs
+// Copyright (c) 2013, Leif Bruder <leifbruder@gmail.com>
+//
+// Permission to use, copy, modify, and/or distribute this software for any
+// purpose with or without fee is hereby granted, provided that the above
+// copyright notice and this permission notice appear in all copies.
+//
+// THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+// WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+// MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+// ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+// WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+// ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+// OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+
+package tests.unittests;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.*;
+import junit.framework.TestCase;
+import org.lb.lbjscheme.*;
+
+public final class SymbolTest extends TestCase {
+	public void testInterning() {
+		assertSame(Symbol.fromString("abc"), Symbol.fromString("abc"));
+		assertNotSame(Symbol.fromString("abc"), Symbol.fromString("abd"));
+	}
+
+	public void testConcurrentInterning() throws Exception {
+		final int threads = 8;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Future<Symbol[]>> results = new ArrayList<>();
+		for (int t = 0; t < threads; ++t)
+			results.add(executor.submit(new Callable<Symbol[]>() {
+				@Override
+				public Symbol[] call() throws InterruptedException {
+					start.await();
+					final Symbol[] ret = new Symbol[10000];
+					for (int i = 0; i < ret.length; ++i)
+						ret[i] = Symbol.fromString("concurrent-" + i);
+					return ret;
+				}
+			}));
+		start.countDown();
+		final Symbol[] first = results.get(0).get();
+		for (Future<Symbol[]> f : results) {
+			final Symbol[] other = f.get();
+			for (int i = 0; i < first.length; ++i)
+				assertSame(first[i], other[i]);
+		}
+		executor.shutdown();
+	}
+
+	public void testReferencedSymbolsAreKept() {
+		final String name = "keep-me-" + System.nanoTime();
+		final Symbol symbol = Symbol.fromString(name);
+		System.gc();
+		assertSame(symbol, Symbol.fromString(name));
+	}
+
+	// Whether the collector actually clears the symbol is up to the JVM, but
+	// either way interning the name again must give a single valid symbol
+	public void testInterningAfterCollection() {
+		final String name = "collect-me-" + System.nanoTime();
+		final WeakReference<Symbol> ref = new WeakReference<>(
+				Symbol.fromString(name));
+		System.gc();
+		final Symbol symbol = Symbol.fromString(name);
+		assertEquals(name, symbol.toString());
+		final Symbol old = ref.get();
+		if (old != null) assertSame(old, symbol);
+		assertSame(symbol, Symbol.fromString(name));
+	}
+}